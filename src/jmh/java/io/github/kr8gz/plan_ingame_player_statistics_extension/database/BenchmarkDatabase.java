@@ -0,0 +1,155 @@
+package io.github.kr8gz.plan_ingame_player_statistics_extension.database;
+
+import net.minecraft.Bootstrap;
+import net.minecraft.SharedConstants;
+import net.minecraft.registry.Registries;
+import net.minecraft.stat.ServerStatHandler;
+import net.minecraft.stat.Stat;
+import net.minecraft.stat.Stats;
+import org.apache.commons.io.FileUtils;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * A {@link DatabaseManager} backed by a temporary SQLite database, populated with synthetic statistics of a given
+ * number of players. Every player has a value for each custom statistic, such as play time or distance walked,
+ * plus randomly chosen block, item and mob statistics up to the given number of statistics per player.
+ * Values are skewed towards small numbers, like in real statistics files.
+ */
+public final class BenchmarkDatabase implements AutoCloseable {
+    private static final int POPULATE_BATCH_SIZE = 50_000;
+
+    static {
+        SharedConstants.createGameVersion();
+        Bootstrap.initialize();
+    }
+
+    private final Path directory;
+    private final SQLiteQueryService queryService;
+    private final DatabaseManager databaseManager;
+    private final List<ServerStatHandler> statHandlers;
+    private final List<Stat<?>> customStats;
+
+    private BenchmarkDatabase(Path directory, SQLiteQueryService queryService, DatabaseManager databaseManager,
+                              List<ServerStatHandler> statHandlers, List<Stat<?>> customStats) {
+        this.directory = directory;
+        this.queryService = queryService;
+        this.databaseManager = databaseManager;
+        this.statHandlers = statHandlers;
+        this.customStats = customStats;
+    }
+
+    /**
+     * Creates and populates a new benchmark database.
+     *
+     * @param playerCount the number of players
+     * @param statsPerPlayer the number of statistics of each player, at least the number of custom statistics
+     * @param seed the seed for generating the statistics
+     * @return the new {@code BenchmarkDatabase}, whose {@code DatabaseManager} is {@link DatabaseManager.State#READY}
+     */
+    @NotNull
+    public static BenchmarkDatabase create(int playerCount, int statsPerPlayer, long seed) throws Exception {
+        var directory = Files.createTempDirectory("plan-ingame-stats-benchmark");
+        var queryService = new SQLiteQueryService(directory.resolve("database.db"));
+
+        var databaseManager = new DatabaseManager(queryService, null);
+        databaseManager.initializeAsync().join();
+        if (databaseManager.getState() != DatabaseManager.State.READY) {
+            throw new IllegalStateException("Benchmark database failed to initialize");
+        }
+
+        var customStats = new ArrayList<Stat<?>>();
+        Registries.CUSTOM_STAT.forEach(identifier -> customStats.add(Stats.CUSTOM.getOrCreateStat(identifier)));
+
+        var otherStats = new ArrayList<Stat<?>>();
+        Registries.BLOCK.forEach(block -> otherStats.add(Stats.MINED.getOrCreateStat(block)));
+        Registries.ITEM.forEach(item -> {
+            otherStats.add(Stats.USED.getOrCreateStat(item));
+            otherStats.add(Stats.PICKED_UP.getOrCreateStat(item));
+        });
+        Registries.ENTITY_TYPE.forEach(entityType -> otherStats.add(Stats.KILLED.getOrCreateStat(entityType)));
+
+        var random = new Random(seed);
+        var statHandlers = new ArrayList<ServerStatHandler>(playerCount);
+        var statUpdates = new ArrayList<StatChangeTracker.StatUpdate>(POPULATE_BATCH_SIZE);
+
+        for (int i = 0; i < playerCount; i++) {
+            var playerUUID = new UUID(random.nextLong(), random.nextLong());
+            // the file doesn't exist, so nothing is read from it, but its name identifies the player
+            var statHandler = new ServerStatHandler(null, directory.resolve(playerUUID + ".json").toFile());
+            statHandlers.add(statHandler);
+
+            for (var stat : customStats) {
+                statHandler.statMap.put(stat, randomValue(random));
+            }
+            Collections.shuffle(otherStats, random);
+            for (var stat : otherStats.subList(0, Math.max(0, Math.min(otherStats.size(), statsPerPlayer - customStats.size())))) {
+                statHandler.statMap.put(stat, randomValue(random));
+            }
+
+            for (var statEntry : statHandler.statMap.object2IntEntrySet()) {
+                statUpdates.add(new StatChangeTracker.StatUpdate(playerUUID, statEntry.getKey(), statEntry.getIntValue()));
+                if (statUpdates.size() >= POPULATE_BATCH_SIZE) {
+                    writeAll(databaseManager, statUpdates);
+                }
+            }
+        }
+        writeAll(databaseManager, statUpdates);
+
+        return new BenchmarkDatabase(directory, queryService, databaseManager, statHandlers, customStats);
+    }
+
+    private static int randomValue(Random random) {
+        return (int) (random.nextDouble() * random.nextDouble() * random.nextDouble() * 10_000_000);
+    }
+
+    private static void writeAll(DatabaseManager databaseManager, List<StatChangeTracker.StatUpdate> statUpdates) throws ExecutionException, InterruptedException {
+        if (statUpdates.isEmpty()) return;
+        databaseManager.writeStatUpdates(List.copyOf(statUpdates)).get();
+        statUpdates.clear();
+    }
+
+    /**
+     * @return the {@code DatabaseManager} backed by this benchmark database
+     */
+    @NotNull
+    public DatabaseManager getDatabaseManager() {
+        return databaseManager;
+    }
+
+    /**
+     * @return the {@code ServerStatHandler}s of all players, containing the values that were written to the database
+     */
+    @NotNull
+    public List<ServerStatHandler> getStatHandlers() {
+        return statHandlers;
+    }
+
+    /**
+     * @return the custom statistics, which every player has a value for
+     */
+    @NotNull
+    public List<Stat<?>> getCustomStats() {
+        return customStats;
+    }
+
+    @Override
+    public void close() throws Exception {
+        databaseManager.close();
+        queryService.close();
+        try {
+            FileUtils.deleteDirectory(directory.toFile());
+        } catch (IOException ignored) {
+            // leftover temporary files are not worth failing a benchmark over
+        }
+    }
+}
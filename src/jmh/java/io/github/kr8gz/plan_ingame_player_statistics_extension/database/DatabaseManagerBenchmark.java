@@ -0,0 +1,118 @@
+package io.github.kr8gz.plan_ingame_player_statistics_extension.database;
+
+import net.minecraft.stat.ServerStatHandler;
+import net.minecraft.stat.Stat;
+import net.minecraft.stat.Stats;
+import org.apache.commons.io.FilenameUtils;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+
+/**
+ * Benchmarks the hot paths of {@link DatabaseManager}: collecting statistic updates on the server thread,
+ * writing them to the database, and the queries behind the web pages and in-game commands.
+ */
+@State(Scope.Benchmark)
+public class DatabaseManagerBenchmark {
+    /**
+     * The number of players whose statistics are updated together, like the online players during an autosave.
+     */
+    private static final int ONLINE_PLAYERS = 100;
+
+    /**
+     * The number of statistics of each online player that change between two updates.
+     */
+    private static final int CHANGED_STATS_PER_UPDATE = 10;
+
+    @Param({"1000", "10000", "100000"})
+    public int playerCount;
+
+    @Param({"150"})
+    public int statsPerPlayer;
+
+    private BenchmarkDatabase database;
+    private DatabaseManager databaseManager;
+    private List<ServerStatHandler> onlinePlayers;
+    private List<UUID> playerUUIDs;
+    private Stat<?> playTimeStat;
+    private final Random random = new Random(0);
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        database = BenchmarkDatabase.create(playerCount, statsPerPlayer, 0);
+        databaseManager = database.getDatabaseManager();
+
+        var statHandlers = database.getStatHandlers();
+        onlinePlayers = statHandlers.subList(0, Math.min(ONLINE_PLAYERS, statHandlers.size()));
+        playerUUIDs = new ArrayList<>(statHandlers.size());
+        for (var statHandler : statHandlers) {
+            playerUUIDs.add(UUID.fromString(FilenameUtils.getBaseName(statHandler.file.toString())));
+        }
+        playTimeStat = Stats.CUSTOM.getOrCreateStat(Stats.PLAY_TIME);
+
+        // start tracking the online players, so that only changed values are collected afterwards
+        databaseManager.updatePlayerStats(onlinePlayers);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        database.close();
+    }
+
+    /**
+     * Increments random custom statistics of each online player, like playing on the server would.
+     *
+     * @return the changed values
+     */
+    private List<StatChangeTracker.StatUpdate> changeOnlinePlayerStats() {
+        var customStats = database.getCustomStats();
+        var statUpdates = new ArrayList<StatChangeTracker.StatUpdate>(onlinePlayers.size() * CHANGED_STATS_PER_UPDATE);
+        for (int player = 0; player < onlinePlayers.size(); player++) {
+            var statMap = onlinePlayers.get(player).statMap;
+            for (int i = 0; i < CHANGED_STATS_PER_UPDATE; i++) {
+                var stat = customStats.get(random.nextInt(customStats.size()));
+                int value = statMap.mergeInt(stat, 1 + random.nextInt(100), Integer::sum);
+                statUpdates.add(new StatChangeTracker.StatUpdate(playerUUIDs.get(player), stat, value));
+            }
+        }
+        return statUpdates;
+    }
+
+    /**
+     * Collects the changed statistics of the online players and adds them to the write buffer, which is
+     * the work done on the server thread during an autosave.
+     */
+    @Benchmark
+    public void updatePlayerStats() {
+        changeOnlinePlayerStats();
+        databaseManager.updatePlayerStats(onlinePlayers);
+    }
+
+    /**
+     * Writes the changed statistics of the online players to the database and waits for the write to finish,
+     * which is the work done on the database thread for each flush of the write buffer.
+     */
+    @Benchmark
+    public void writeStatUpdates() throws Exception {
+        databaseManager.writeStatUpdates(changeOnlinePlayerStats()).get();
+    }
+
+    /**
+     * Reads the values of a statistic that every player has, as done by the in-game test command.
+     */
+    @Benchmark
+    public Object getStatForAllPlayers() {
+        return databaseManager.getStatForAllPlayers(playTimeStat);
+    }
+
+    /**
+     * Reads the best ranked statistics of a random player, as shown on the player page.
+     */
+    @Benchmark
+    public Object getPlayerTopStats() {
+        return databaseManager.getPlayerTopStats(playerUUIDs.get(random.nextInt(playerUUIDs.size())));
+    }
+}
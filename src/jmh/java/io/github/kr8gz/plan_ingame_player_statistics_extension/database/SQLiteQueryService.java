@@ -0,0 +1,116 @@
+package io.github.kr8gz.plan_ingame_player_statistics_extension.database;
+
+import com.djrapitops.plan.query.CommonQueries;
+import com.djrapitops.plan.query.QueryService;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+
+/**
+ * A stand-in for Plan's {@link QueryService} backed by an embedded SQLite database, mirroring how Plan executes
+ * statements: writes run as transactions on a single database thread and return a {@link CompletableFuture},
+ * while queries run on the calling thread. All access goes through a single connection.
+ */
+final class SQLiteQueryService implements QueryService, AutoCloseable {
+    /**
+     * The server UUID reported to the {@code DatabaseManager}, which partitions the statistic values by server.
+     */
+    private static final UUID SERVER_UUID = UUID.nameUUIDFromBytes("benchmark".getBytes(StandardCharsets.UTF_8));
+
+    private final Connection connection;
+    private final ExecutorService databaseExecutor = Executors.newSingleThreadExecutor(runnable -> {
+        var thread = new Thread(runnable, "Benchmark Database Thread");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    SQLiteQueryService(Path databaseFile) throws SQLException {
+        this.connection = DriverManager.getConnection("jdbc:sqlite:" + databaseFile);
+        try (var statement = connection.createStatement()) {
+            statement.execute("PRAGMA journal_mode=WAL");
+        }
+    }
+
+    @Override
+    public String getDBType() {
+        return "SQLite";
+    }
+
+    @Override
+    public <T> T query(String sql, ThrowingFunction<PreparedStatement, T> performQuery) {
+        synchronized (connection) {
+            try (var statement = connection.prepareStatement(sql)) {
+                return performQuery.apply(statement);
+            } catch (SQLException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+
+    @Override
+    public Future<?> execute(String sql, ThrowingConsumer<PreparedStatement> performStatement) {
+        return CompletableFuture.runAsync(() -> {
+            synchronized (connection) {
+                try {
+                    connection.setAutoCommit(false);
+                    try (var statement = connection.prepareStatement(sql)) {
+                        performStatement.accept(statement);
+                    }
+                    connection.commit();
+                } catch (SQLException e) {
+                    try {
+                        connection.rollback();
+                    } catch (SQLException rollbackException) {
+                        e.addSuppressed(rollbackException);
+                    }
+                    throw new CompletionException(e);
+                } finally {
+                    try {
+                        connection.setAutoCommit(true);
+                    } catch (SQLException ignored) {
+                    }
+                }
+            }
+        }, databaseExecutor);
+    }
+
+    @Override
+    public void subscribeToPlayerRemoveEvent(Consumer<UUID> eventListener) {
+        // benchmarks don't remove players through Plan
+    }
+
+    @Override
+    public void subscribeDataClearEvent(VoidFunction eventListener) {
+        // benchmarks don't clear data through Plan
+    }
+
+    @Override
+    public Optional<UUID> getServerUUID() {
+        return Optional.of(SERVER_UUID);
+    }
+
+    @Override
+    public CommonQueries getCommonQueries() {
+        throw new UnsupportedOperationException("Not available in benchmarks");
+    }
+
+    @Override
+    public void close() throws SQLException {
+        databaseExecutor.shutdown();
+        synchronized (connection) {
+            connection.close();
+        }
+    }
+}
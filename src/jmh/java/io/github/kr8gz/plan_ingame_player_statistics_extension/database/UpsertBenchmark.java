@@ -0,0 +1,131 @@
+package io.github.kr8gz.plan_ingame_player_statistics_extension.database;
+
+import org.apache.commons.io.FileUtils;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Compares the write throughput of {@code REPLACE INTO}, which statistic values used to be written with,
+ * against the native upsert built by {@link SQLDialect#upsertSql} on an SQLite database. Each operation writes
+ * a batch of existing rows in one transaction, like a flush of the write buffer, where only some of the values
+ * actually differ from the stored ones. Unlike the other benchmarks, this doesn't need Minecraft or Plan.
+ */
+@State(Scope.Benchmark)
+public class UpsertBenchmark {
+    private static final String TABLE_NAME = "upsert_benchmark";
+    private static final TableColumn SERVER_ID_COLUMN = new TableColumn("server_id", "int");
+    private static final TableColumn PLAYER_ID_COLUMN = new TableColumn("player_id", "int");
+    private static final TableColumn STAT_ID_COLUMN = new TableColumn("stat_id", "int");
+    private static final TableColumn VALUE_COLUMN = new TableColumn("value", "int");
+
+    private static final String REPLACE_SQL =
+            "REPLACE INTO " + TABLE_NAME + " (" + SERVER_ID_COLUMN + ", " + PLAYER_ID_COLUMN + ", " + STAT_ID_COLUMN + ", " + VALUE_COLUMN + ")" +
+            " VALUES (?, ?, ?, ?)";
+
+    private static final String UPSERT_SQL = SQLDialect.SQLITE.upsertSql(TABLE_NAME,
+            List.of(SERVER_ID_COLUMN, PLAYER_ID_COLUMN, STAT_ID_COLUMN), List.of(VALUE_COLUMN));
+
+    /**
+     * The number of rows written per operation, like a flush of the changed statistics of the online players.
+     */
+    private static final int BATCH_SIZE = 1000;
+
+    private static final int STATS_PER_PLAYER = 100;
+
+    @Param({"100000"})
+    public int rowCount;
+
+    /**
+     * The percentage of the written values that differ from the stored values.
+     */
+    @Param({"0", "10", "100"})
+    public int changedPercent;
+
+    private Path directory;
+    private Connection connection;
+    private int[] values;
+    private final Random random = new Random(0);
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        directory = Files.createTempDirectory("plan-ingame-stats-upsert-benchmark");
+        connection = DriverManager.getConnection("jdbc:sqlite:" + directory.resolve("database.db"));
+        connection.setAutoCommit(false);
+
+        try (var statement = connection.createStatement()) {
+            statement.executeUpdate("CREATE TABLE " + TABLE_NAME + "(" +
+                    SERVER_ID_COLUMN.withType() + ", " +
+                    PLAYER_ID_COLUMN.withType() + ", " +
+                    STAT_ID_COLUMN.withType() + ", " +
+                    VALUE_COLUMN.withType() + ", " +
+                    "PRIMARY KEY(" + SERVER_ID_COLUMN + ", " + PLAYER_ID_COLUMN + ", " + STAT_ID_COLUMN + ")" +
+            ")");
+        }
+
+        values = new int[rowCount];
+        try (var statement = connection.prepareStatement(REPLACE_SQL)) {
+            for (int row = 0; row < rowCount; row++) {
+                values[row] = random.nextInt(1_000_000);
+                setRow(statement, row);
+                statement.addBatch();
+            }
+            statement.executeBatch();
+        }
+        connection.commit();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws SQLException {
+        connection.close();
+        try {
+            FileUtils.deleteDirectory(directory.toFile());
+        } catch (IOException ignored) {
+            // leftover temporary files are not worth failing a benchmark over
+        }
+    }
+
+    private void setRow(PreparedStatement statement, int row) throws SQLException {
+        statement.setInt(1, 1);
+        statement.setInt(2, row / STATS_PER_PLAYER);
+        statement.setInt(3, row % STATS_PER_PLAYER);
+        statement.setInt(4, values[row]);
+    }
+
+    private void writeBatch(String sql) throws SQLException {
+        try (var statement = connection.prepareStatement(sql)) {
+            for (int i = 0; i < BATCH_SIZE; i++) {
+                int row = random.nextInt(rowCount);
+                if (random.nextInt(100) < changedPercent) values[row]++;
+                setRow(statement, row);
+                statement.addBatch();
+            }
+            statement.executeBatch();
+        }
+        connection.commit();
+    }
+
+    /**
+     * Writes a batch with {@code REPLACE INTO}, which deletes and re-inserts every row, even if its value is the same.
+     */
+    @Benchmark
+    public void replaceInto() throws SQLException {
+        writeBatch(REPLACE_SQL);
+    }
+
+    /**
+     * Writes a batch with the native upsert, which updates rows in place and skips rows whose value is the same.
+     */
+    @Benchmark
+    public void upsert() throws SQLException {
+        writeBatch(UPSERT_SQL);
+    }
+}
@@ -0,0 +1,61 @@
+package io.github.kr8gz.plan_ingame_player_statistics_extension.web;
+
+import io.github.kr8gz.plan_ingame_player_statistics_extension.database.BenchmarkDatabase;
+import io.github.kr8gz.plan_ingame_player_statistics_extension.database.DatabaseManager;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Collection;
+
+/**
+ * Benchmarks creating the JSON responses of the web pages, bypassing the response cache.
+ */
+@State(Scope.Benchmark)
+public class ServerIngameStatsJSONCreatorBenchmark {
+    private static final DatabaseManager.StatPage FIRST_PAGE = new DatabaseManager.StatPage(0, 100, false);
+
+    @Param({"1000", "10000", "100000"})
+    public int playerCount;
+
+    @Param({"150"})
+    public int statsPerPlayer;
+
+    private BenchmarkDatabase database;
+    private DatabaseManager databaseManager;
+    private Collection<ServerIngameStatsJSONCreator> movementViews;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        database = BenchmarkDatabase.create(playerCount, statsPerPlayer, 0);
+        databaseManager = database.getDatabaseManager();
+        movementViews = ServerIngameStatsJSONCreator.getByKeyPrefix("movement.");
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        database.close();
+    }
+
+    /**
+     * Creates the JSON of a view with all values of each statistic.
+     */
+    @Benchmark
+    public byte[] createJSON() {
+        return ServerIngameStatsJSONCreator.GeneralCategory.PLAYTIME.createJSON(databaseManager, DatabaseManager.StatPage.ALL, DatabaseManager.StatScope.SERVER);
+    }
+
+    /**
+     * Creates the JSON of a view with the first page of values of each statistic.
+     */
+    @Benchmark
+    public byte[] createJSONFirstPage() {
+        return ServerIngameStatsJSONCreator.GeneralCategory.PLAYTIME.createJSON(databaseManager, FIRST_PAGE, DatabaseManager.StatScope.SERVER);
+    }
+
+    /**
+     * Creates the JSON of all movement views at once, as requested by the bulk endpoint.
+     */
+    @Benchmark
+    public byte[] createBulkJSON() {
+        return ServerIngameStatsJSONCreator.createBulkJSON(databaseManager, movementViews, FIRST_PAGE, DatabaseManager.StatScope.SERVER);
+    }
+}
@@ -1,9 +1,14 @@
 package io.github.kr8gz.plan_ingame_player_statistics_extension;
 
 import io.github.kr8gz.plan_ingame_player_statistics_extension.common.PlanHook;
+import io.github.kr8gz.plan_ingame_player_statistics_extension.ingame.CommandQueryExecutor;
+import io.github.kr8gz.plan_ingame_player_statistics_extension.ingame.MetricsCommand;
+import io.github.kr8gz.plan_ingame_player_statistics_extension.ingame.StatsCommand;
 import io.github.kr8gz.plan_ingame_player_statistics_extension.ingame.TestCommand;
 import net.fabricmc.api.DedicatedServerModInitializer;
 import net.fabricmc.fabric.api.command.v2.CommandRegistrationCallback;
+import net.fabricmc.fabric.api.event.lifecycle.v1.ServerLifecycleEvents;
+import net.fabricmc.fabric.api.networking.v1.ServerPlayConnectionEvents;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
@@ -14,6 +19,12 @@ public class PlanInGamePlayerStatisticsExtension implements DedicatedServerModIn
     @Override
     public void onInitializeServer() {
         PlanHook.hookIntoPlan();
-        CommandRegistrationCallback.EVENT.register((dispatcher, registryAccess, environment) -> TestCommand.register(dispatcher));
+        CommandRegistrationCallback.EVENT.register((dispatcher, registryAccess, environment) -> {
+            TestCommand.register(dispatcher);
+            StatsCommand.register(dispatcher);
+            MetricsCommand.register(dispatcher);
+        });
+        ServerPlayConnectionEvents.DISCONNECT.register((handler, server) -> CommandQueryExecutor.cancelQueries(handler.player.getUuid()));
+        ServerLifecycleEvents.SERVER_STOPPING.register(server -> CommandQueryExecutor.shutdown());
     }
 }
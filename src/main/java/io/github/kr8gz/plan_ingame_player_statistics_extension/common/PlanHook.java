@@ -4,9 +4,16 @@ import com.djrapitops.plan.capability.CapabilityService;
 import com.djrapitops.plan.delivery.web.ResolverService;
 import io.github.kr8gz.plan_ingame_player_statistics_extension.PlanInGamePlayerStatisticsExtension;
 import io.github.kr8gz.plan_ingame_player_statistics_extension.database.DatabaseManager;
+import io.github.kr8gz.plan_ingame_player_statistics_extension.web.IngameStatsAggregatesJSONResolver;
+import io.github.kr8gz.plan_ingame_player_statistics_extension.web.IngameStatsBulkJSONResolver;
+import io.github.kr8gz.plan_ingame_player_statistics_extension.web.IngameStatsDistributionJSONResolver;
+import io.github.kr8gz.plan_ingame_player_statistics_extension.web.IngameStatsHistoryJSONResolver;
 import io.github.kr8gz.plan_ingame_player_statistics_extension.web.IngameStatsJSONResolver;
+import io.github.kr8gz.plan_ingame_player_statistics_extension.web.IngameStatsMetricsJSONResolver;
+import io.github.kr8gz.plan_ingame_player_statistics_extension.web.IngameStatsPlayerJSONResolver;
 import net.fabricmc.fabric.api.event.lifecycle.v1.ServerLifecycleEvents;
 import net.minecraft.server.MinecraftServer;
+import net.minecraft.server.network.ServerPlayerEntity;
 
 import java.util.Arrays;
 import java.util.Optional;
@@ -24,12 +31,13 @@ public class PlanHook {
 
     private static boolean isPlanEnabled;
     private static MinecraftServer server;
-    private static DatabaseManager databaseManager;
+    private static volatile DatabaseManager databaseManager;
 
     public static void hookIntoPlan() {
         if (areRequiredCapabilitiesAvailable()) {
             CapabilityService.getInstance().registerEnableListener(isPlanEnabled -> tryRegisterPlanExtensions(isPlanEnabled, server));
             ServerLifecycleEvents.SERVER_STARTING.register(server -> tryRegisterPlanExtensions(isPlanEnabled, server));
+            ServerLifecycleEvents.SERVER_STOPPING.register(PlanHook::stopDatabaseManager);
         }
     }
 
@@ -44,23 +52,54 @@ public class PlanHook {
         });
     }
 
-    private static void tryRegisterPlanExtensions(boolean isPlanEnabled, MinecraftServer server) {
+    private static synchronized void tryRegisterPlanExtensions(boolean isPlanEnabled, MinecraftServer server) {
         PlanHook.isPlanEnabled = isPlanEnabled;
         PlanHook.server = server;
+
+        // Plan notifies the enable listener again whenever it is reloaded or disabled, so the previous
+        // DatabaseManager has to stop writing before another one starts using the same tables
+        closeDatabaseManager();
         if (!isPlanEnabled || server == null) return;
 
         try {
             // registerPageExtension("index.html", "example.js");
 
             var resolverService = ResolverService.getInstance();
+            // resolvers are matched by path prefix, so more specific paths have to be registered first
+            resolverService.registerResolver(PlanInGamePlayerStatisticsExtension.NAME, "/v1/ingameStats/bulk", new IngameStatsBulkJSONResolver());
+            resolverService.registerResolver(PlanInGamePlayerStatisticsExtension.NAME, "/v1/ingameStats/aggregates", new IngameStatsAggregatesJSONResolver());
+            resolverService.registerResolver(PlanInGamePlayerStatisticsExtension.NAME, "/v1/ingameStats/metrics", new IngameStatsMetricsJSONResolver());
+            resolverService.registerResolver(PlanInGamePlayerStatisticsExtension.NAME, "/v1/ingameStats/distribution", new IngameStatsDistributionJSONResolver());
+            resolverService.registerResolver(PlanInGamePlayerStatisticsExtension.NAME, "/v1/ingameStats/player", new IngameStatsPlayerJSONResolver());
+            resolverService.registerResolver(PlanInGamePlayerStatisticsExtension.NAME, "/v1/ingameStats/history", new IngameStatsHistoryJSONResolver());
             resolverService.registerResolver(PlanInGamePlayerStatisticsExtension.NAME, "/v1/ingameStats", new IngameStatsJSONResolver());
 
-            databaseManager = new DatabaseManager(server); // run this last as it may take a long time to initialize
+            databaseManager = new DatabaseManager(server);
+            databaseManager.initializeAsync(); // importing statistics files may take a long time, so don't block server startup
         } catch (Exception e) {
             PlanInGamePlayerStatisticsExtension.LOGGER.error("Exception occurred while initializing extension", e);
         }
     }
 
+    private static void closeDatabaseManager() {
+        var previousDatabaseManager = databaseManager;
+        if (previousDatabaseManager == null) return;
+
+        databaseManager = null;
+        previousDatabaseManager.close();
+    }
+
+    private static synchronized void stopDatabaseManager(MinecraftServer server) {
+        if (databaseManager == null) return;
+
+        // write the latest statistics of online players while Plan's database is still available
+        var statHandlers = server.getPlayerManager().getPlayerList().stream()
+                .map(ServerPlayerEntity::getStatHandler)
+                .toList();
+        databaseManager.updatePlayerStats(statHandlers);
+        databaseManager.close();
+    }
+
     // private static void registerPageExtension(String target, String resource) throws IOException {
     //     var path = PAGE_EXTENSIONS_PATH + resource;
     //     try (var inputStream = PlanHook.class.getResourceAsStream(path)) {
@@ -0,0 +1,301 @@
+package io.github.kr8gz.plan_ingame_player_statistics_extension.database;
+
+import it.unimi.dsi.fastutil.ints.Int2IntOpenHashMap;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Arrays;
+
+/**
+ * An in-memory copy of a table of statistic values, such as this server's partition of the statistic values table
+ * or the network-wide totals, which answers all reads of statistic values and ranks without accessing the database.
+ * The table remains the durable copy: this store is loaded from it during initialization and updated whenever
+ * statistic values are written to or removed from it.
+ * <p>
+ * Players and statistics are referenced by their dictionary IDs, which serve as ordinals. The values of each statistic
+ * are stored in a column, which keeps
+ * <ul>
+ *     <li>a primitive hash map from player IDs to values, which answers a player's value in constant time.</li>
+ *     <li>an {@link OrderStatisticTree} of its entries, each encoding the value in the upper and the player ID in the
+ *     lower 32 bits, so that the entries are sorted by value and then by player ID. It is updated in {@code O(log n)}
+ *     time on every change, and answers a player's rank, quantiles and histogram buckets in {@code O(log n)} time.
+ *     Ranks follow the semantics of the SQL {@code RANK()} window function ordered by value in descending order,
+ *     so players with equal values share a rank. Any page of the column is read by walking the tree in order,
+ *     in time proportional to the size of the page plus {@code O(log n)}, regardless of how often the column changes.</li>
+ *     <li>the sum of its values, which is adjusted on every change, so that the count, sum, mean, minimum and
+ *     maximum of a statistic can be read without iterating over its values.</li>
+ * </ul>
+ * Each column is guarded by its own lock, so updates and reads of different statistics don't block each other.
+ * Memory usage grows linearly with the number of stored statistic values, at about 55 bytes per value.
+ */
+final class ColumnarStatStore {
+    /**
+     * Receives the value and rank a player has on the leaderboard of a statistic.
+     */
+    @FunctionalInterface
+    interface RankedValueConsumer {
+        void accept(int statId, int value, int rank);
+    }
+
+    /**
+     * Receives a single value of a statistic.
+     */
+    @FunctionalInterface
+    interface ValueConsumer {
+        void accept(int playerId, int value);
+    }
+
+    /**
+     * The values of a single statistic.
+     */
+    private static final class Column {
+        private final Int2IntOpenHashMap values = new Int2IntOpenHashMap();
+
+        /**
+         * The entries of this column, encoded by {@link #encodeEntry(int, int)}.
+         */
+        private final OrderStatisticTree entries = new OrderStatisticTree();
+
+        /**
+         * The sum of all values, adjusted by the difference between the old and the new value on every change.
+         */
+        private long sum;
+
+        /**
+         * Encodes an entry, such that entries sort by value first and then by player ID, as player IDs are positive.
+         */
+        private static long encodeEntry(int value, int playerId) {
+            return ((long) value << Integer.SIZE) | playerId;
+        }
+
+        private static int decodeValue(long entry) {
+            return (int) (entry >> Integer.SIZE);
+        }
+
+        synchronized void put(int playerId, int value) {
+            if (values.containsKey(playerId)) {
+                int oldValue = values.get(playerId);
+                if (oldValue == value) return;
+                entries.remove(encodeEntry(oldValue, playerId));
+                sum += (long) value - oldValue;
+            } else {
+                sum += value;
+            }
+            values.put(playerId, value);
+            entries.add(encodeEntry(value, playerId));
+        }
+
+        synchronized void remove(int playerId) {
+            if (!values.containsKey(playerId)) return;
+
+            int value = values.remove(playerId);
+            entries.remove(encodeEntry(value, playerId));
+            sum -= value;
+        }
+
+        synchronized int get(int playerId, int defaultValue) {
+            return values.getOrDefault(playerId, defaultValue);
+        }
+
+        synchronized void acceptRankedValue(int statId, int playerId, RankedValueConsumer consumer) {
+            if (values.containsKey(playerId)) {
+                int value = values.get(playerId);
+                consumer.accept(statId, value, getRank(value));
+            }
+        }
+
+        synchronized int getRank(int value) {
+            // the largest entry with this value has the largest possible player ID bits
+            return entries.countGreaterThan(((long) value << Integer.SIZE) | 0xFFFFFFFFL) + 1;
+        }
+
+        synchronized DatabaseManager.StatAggregate getAggregate() {
+            if (values.isEmpty()) return DatabaseManager.StatAggregate.EMPTY;
+            return new DatabaseManager.StatAggregate(values.size(), sum, decodeValue(entries.min()), decodeValue(entries.max()));
+        }
+
+        synchronized DatabaseManager.StatDistribution getDistribution(double[] quantiles) {
+            int size = values.size();
+            var quantileValues = new int[quantiles.length];
+            if (size > 0) {
+                for (int index = 0; index < quantiles.length; index++) {
+                    // nearest-rank definition: the smallest value such that at least the quantile of all values is at most it
+                    int position = (int) Math.ceil(quantiles[index] * size) - 1;
+                    quantileValues[index] = decodeValue(entries.select(Math.min(Math.max(position, 0), size - 1)));
+                }
+            }
+
+            var bucketCounts = new int[DatabaseManager.StatDistribution.HISTOGRAM_BUCKETS];
+            int countBelow = 0;
+            for (int bucket = 0; bucket < bucketCounts.length - 1; bucket++) {
+                // the smallest entry with the upper bound as its value has the smallest player ID bits
+                int countBelowUpperBound = entries.countLessThan((long) DatabaseManager.StatDistribution.getBucketLowerBound(bucket + 1) << Integer.SIZE);
+                bucketCounts[bucket] = countBelowUpperBound - countBelow;
+                countBelow = countBelowUpperBound;
+            }
+            bucketCounts[bucketCounts.length - 1] = size - countBelow;
+
+            return new DatabaseManager.StatDistribution(size, quantileValues, bucketCounts);
+        }
+
+        /**
+         * Copies a page of the entries, so that it can be passed on without holding the lock.
+         * Only the entries of the page are visited and allocated.
+         */
+        synchronized long[] getPage(DatabaseManager.StatPage page) {
+            int count = (int) Math.min(page.limit(), Math.max(0, (long) values.size() - page.offset()));
+            var pageEntries = new long[count];
+            if (count > 0) {
+                var index = new int[1];
+                entries.forEachInOrder(page.offset(), count, page.ascending(), entry -> pageEntries[index[0]++] = entry);
+            }
+            return pageEntries;
+        }
+    }
+
+    /**
+     * The columns of all statistics, indexed by statistic ID. Statistic IDs are assigned sequentially by the
+     * database, so the array is dense. It is replaced with a larger copy whenever a new statistic ID exceeds its length,
+     * which allows iterating over all columns without locking or copying.
+     */
+    private volatile Column[] columns = new Column[0];
+
+    @NotNull
+    private Column getOrCreateColumn(int statId) {
+        var currentColumns = columns;
+        if (statId < currentColumns.length && currentColumns[statId] != null) {
+            return currentColumns[statId];
+        }
+
+        synchronized (this) {
+            if (statId >= columns.length || columns[statId] == null) {
+                var newColumns = statId < columns.length
+                        ? columns.clone()
+                        : Arrays.copyOf(columns, Math.max(statId + 1, columns.length * 2));
+                newColumns[statId] = new Column();
+                columns = newColumns;
+            }
+            return columns[statId];
+        }
+    }
+
+    /**
+     * Sets the value a player has for a statistic.
+     *
+     * @param statId the ID of the statistic
+     * @param playerId the ID of the player
+     * @param value the new value
+     */
+    void put(int statId, int playerId, int value) {
+        getOrCreateColumn(statId).put(playerId, value);
+    }
+
+    /**
+     * Returns the value a player has for a statistic.
+     *
+     * @param statId the ID of the statistic
+     * @param playerId the ID of the player
+     * @param defaultValue the value to return if the player has no value for the statistic
+     * @return the value of the statistic, or the {@code defaultValue}
+     */
+    int get(int statId, int playerId, int defaultValue) {
+        var currentColumns = columns;
+        if (statId < 0 || statId >= currentColumns.length || currentColumns[statId] == null) return defaultValue;
+        return currentColumns[statId].get(playerId, defaultValue);
+    }
+
+    /**
+     * Removes all values of a player.
+     *
+     * @param playerId the ID of the player to remove
+     */
+    void removePlayer(int playerId) {
+        for (var column : columns) {
+            if (column != null) column.remove(playerId);
+        }
+    }
+
+    /**
+     * Passes the value and rank of every statistic a player has a value for to the {@code consumer}.
+     *
+     * @param playerId the ID of the player
+     * @param consumer the consumer receiving the statistic ID, value and rank
+     */
+    void forEachRankedValue(int playerId, @NotNull RankedValueConsumer consumer) {
+        var currentColumns = columns;
+        for (int statId = 0; statId < currentColumns.length; statId++) {
+            if (currentColumns[statId] != null) {
+                currentColumns[statId].acceptRankedValue(statId, playerId, consumer);
+            }
+        }
+    }
+
+    /**
+     * Returns the rank a value has on the leaderboard of a statistic, which is one more than the number of greater values.
+     *
+     * @param statId the ID of the statistic
+     * @param value the value to rank
+     * @return the rank of the value
+     */
+    int getRank(int statId, int value) {
+        var currentColumns = columns;
+        if (statId < 0 || statId >= currentColumns.length || currentColumns[statId] == null) return 1;
+        return currentColumns[statId].getRank(value);
+    }
+
+    /**
+     * Returns the number, sum, minimum and maximum of the values of a statistic, which are kept up to date
+     * on every change, so this takes {@code O(log n)} time for the minimum and maximum and constant time otherwise.
+     *
+     * @param statId the ID of the statistic
+     * @return the aggregate of the values, or {@link DatabaseManager.StatAggregate#EMPTY} if the statistic has no values
+     */
+    @NotNull
+    DatabaseManager.StatAggregate getAggregate(int statId) {
+        var currentColumns = columns;
+        if (statId < 0 || statId >= currentColumns.length || currentColumns[statId] == null) return DatabaseManager.StatAggregate.EMPTY;
+        return currentColumns[statId].getAggregate();
+    }
+
+    /**
+     * Returns the exact quantiles and the histogram of the values of a statistic, which are read from the
+     * {@link OrderStatisticTree} of its column in {@code O(log n)} time per quantile and histogram bucket,
+     * without sorting or copying the values.
+     *
+     * @param statId the ID of the statistic
+     * @param quantiles the quantiles to read, each between {@code 0} and {@code 1}
+     * @return the distribution of the values
+     */
+    @NotNull
+    DatabaseManager.StatDistribution getDistribution(int statId, double @NotNull [] quantiles) {
+        var currentColumns = columns;
+        if (statId < 0 || statId >= currentColumns.length || currentColumns[statId] == null) {
+            return new DatabaseManager.StatDistribution(0, new int[quantiles.length], new int[DatabaseManager.StatDistribution.HISTOGRAM_BUCKETS]);
+        }
+        return currentColumns[statId].getDistribution(quantiles);
+    }
+
+    /**
+     * Passes a page of the values of a statistic to the {@code consumer}, sorted by value and then by player ID,
+     * in ascending or descending order. The consumer is called without holding any lock, and sees the values
+     * as they were when this method was called.
+     *
+     * @param statId the ID of the statistic
+     * @param page the page of the values to read
+     * @param consumer the consumer receiving the player ID and value
+     */
+    void forEachValue(int statId, @NotNull DatabaseManager.StatPage page, @NotNull ValueConsumer consumer) {
+        var currentColumns = columns;
+        if (statId < 0 || statId >= currentColumns.length || currentColumns[statId] == null) return;
+
+        for (long entry : currentColumns[statId].getPage(page)) {
+            consumer.accept((int) entry, Column.decodeValue(entry));
+        }
+    }
+
+    /**
+     * Removes all values.
+     */
+    synchronized void clear() {
+        columns = new Column[0];
+    }
+}
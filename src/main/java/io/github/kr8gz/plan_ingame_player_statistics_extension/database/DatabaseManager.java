@@ -2,62 +2,66 @@ package io.github.kr8gz.plan_ingame_player_statistics_extension.database;
 
 import com.djrapitops.plan.query.QueryService;
 import io.github.kr8gz.plan_ingame_player_statistics_extension.PlanInGamePlayerStatisticsExtension;
+import io.github.kr8gz.plan_ingame_player_statistics_extension.metrics.ExtensionMetrics;
+import io.github.kr8gz.plan_ingame_player_statistics_extension.metrics.Histogram;
+import io.github.kr8gz.plan_ingame_player_statistics_extension.metrics.Meter;
 import it.unimi.dsi.fastutil.objects.Object2IntMap;
 import it.unimi.dsi.fastutil.objects.Object2IntOpenHashMap;
+import it.unimi.dsi.fastutil.objects.ObjectOpenHashSet;
 import net.minecraft.server.MinecraftServer;
 import net.minecraft.stat.ServerStatHandler;
 import net.minecraft.stat.Stat;
 import net.minecraft.util.WorldSavePath;
-import org.apache.commons.io.FilenameUtils;
 import org.apache.logging.log4j.core.config.plugins.validation.constraints.NotBlank;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 import java.io.IOException;
 import java.nio.file.Files;
-import java.sql.PreparedStatement;
+import java.nio.file.Path;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.Supplier;
 
 /**
  * Manages the database responsible for storing in-game statistics of players,
  * and provides access to the database through methods for updating
  * player statistics, as well as retrieving data using predefined queries.
+ * <p>
+ * Statistic names and player UUIDs are stored once in dictionary tables and referenced by integer IDs
+ * in the statistic values table, which keeps the rows and the primary key index of the values table small.
+ * <p>
+ * Several servers can share Plan's database. The statistic values table is partitioned by server, identified by
+ * Plan's server UUID, so that each server only writes its own values. The sum of each player's values over all servers
+ * is kept in a totals table, which every write adjusts by the difference to the server's previous value, so that
+ * network-wide values and ranks never need to be summed when they are read.
  */
 public final class DatabaseManager {
-    /**
-     * Represents a table column in the database with a name and an SQL data type.
-     *
-     * @param name the name of the table column
-     * @param type the SQL data type of the table column
-     */
-    private record TableColumn(@NotBlank String name, @NotBlank String type) {
-        /**
-         * Returns the name of this table column, for convenient usage in string concatenations.
-         *
-         * @return the name of this table column
-         */
-        @Override
-        public String toString() {
-            return name;
-        }
-
-        /**
-         * Returns a formatted string containing the name and SQL data type of this table column, separated by a space.
-         * This method is useful for generating SQL statements such as those for creating tables,
-         * where both the column name and data type need to be specified.
-         *
-         * @return the name and SQL data type of this table column separated by space
-         */
-        public String withType() {
-            return "%s %s".formatted(name, type);
-        }
-    }
+    static final String STAT_VALUES_TABLE = "plan_ingame_stat_values";
+    private static final TableColumn SERVER_ID_COLUMN = new TableColumn("server_id", "int");
+    private static final TableColumn PLAYER_ID_COLUMN = new TableColumn("player_id", "int");
+    private static final TableColumn STAT_ID_COLUMN = new TableColumn("stat_id", "int");
+    static final TableColumn VALUE_COLUMN = new TableColumn("value", "int");
 
-    private static final String INGAME_STATS_TABLE = "plan_ingame_player_statistics";
+    static final String PLAYERS_TABLE = "plan_ingame_players";
     private static final TableColumn PLAYER_UUID_COLUMN = new TableColumn("player_uuid", "char(36)");
+
+    static final String STAT_NAMES_TABLE = "plan_ingame_stat_names";
     private static final TableColumn STAT_NAME_COLUMN = new TableColumn("stat_name", "varchar(255)");
-    private static final TableColumn VALUE_COLUMN = new TableColumn("value", "int");
+
+    static final String SERVERS_TABLE = "plan_ingame_servers";
+    private static final TableColumn SERVER_UUID_COLUMN = new TableColumn("server_uuid", "char(36)");
+
+    static final String STATS_FILES_TABLE = "plan_ingame_stats_files";
+    private static final TableColumn FILE_SIZE_COLUMN = new TableColumn("file_size", "bigint");
+    private static final TableColumn LAST_MODIFIED_COLUMN = new TableColumn("last_modified", "bigint");
 
     /**
      * The {@link QueryService} instance for accessing and interacting with Plan's database,
@@ -72,158 +76,1035 @@ public final class DatabaseManager {
     /**
      * The {@link MinecraftServer} instance on which the extension is running.
      * The database is initialized using this server's player statistics files.
+     * Only {@code null} in benchmarks, which don't import any player statistics files.
      */
-    private final @NotNull MinecraftServer server;
+    private final @Nullable MinecraftServer server;
 
     /**
-     * Creates a new {@code DatabaseManager} instance, setting up the necessary database tables
-     * and populating them with existing player statistics from the {@link MinecraftServer} instance.
-     * <p>
-     * Also registers listeners for Plan database events through the {@link QueryService} instance
-     * to stay in sync with Plan's database.
+     * The SQL dialect of the database Plan is using.
+     */
+    private final @NotNull SQLDialect dialect;
+
+    /**
+     * Maps player UUIDs to the player IDs referenced by the statistic values table.
+     */
+    private final @NotNull DictionaryTable playerDictionary;
+
+    /**
+     * Maps statistic names to the statistic IDs referenced by the statistic values table.
+     */
+    private final @NotNull DictionaryTable statDictionary;
+
+    /**
+     * Maps Plan server UUIDs to the server IDs partitioning the statistic values table.
+     */
+    private final @NotNull DictionaryTable serverDictionary;
+
+    /**
+     * The UUID Plan has assigned to the server this extension is running on.
+     */
+    private final @NotNull UUID serverUUID;
+
+    /**
+     * The ID of this server's partition of the statistic values table, resolved during initialization.
+     */
+    private volatile int serverId = -1;
+
+    /**
+     * Applies the migrations of the database schema used by this extension.
+     */
+    private final @NotNull SchemaMigrator schemaMigrator;
+
+    /**
+     * Inserts a statistic value, or updates the existing row of the server, player and statistic if its value differs.
+     * Parameters: server ID, player ID, statistic ID, value.
+     */
+    private final @NotNull String updatePlayerStatsSql;
+
+    /**
+     * Inserts or updates the import manifest entry of a player's statistics file on a server.
+     * Parameters: server ID, player ID, file size, last modified time.
+     */
+    private final @NotNull String updateStatsFileSql;
+
+    /**
+     * Adds to the network-wide total of a player's statistic, inserting it if it doesn't exist yet.
+     * Parameters: player ID, statistic ID, amount to add, modification time.
+     */
+    private final @NotNull String incrementStatTotalSql;
+
+    /**
+     * Tracks the statistic values that were last written for online players,
+     * so that {@link #updatePlayerStats(Collection)} only needs to write changed values.
+     */
+    private final StatChangeTracker changeTracker = new StatChangeTracker();
+
+    /**
+     * Mirrors this server's partition of the statistic values table in memory to answer all reads of statistic values
+     * and ranks without accessing the database, which remains the durable copy. Loaded after the import during
+     * initialization, and updated whenever statistic values are written or removed.
+     */
+    private final ColumnarStatStore statStore = new ColumnarStatStore();
+
+    /**
+     * Mirrors the network-wide totals in memory to answer reads of network-wide values and ranks like the {@link #statStore},
+     * and reads the totals changed by other servers sharing the database.
+     */
+    private final @NotNull NetworkTotals networkTotals;
+
+    /**
+     * Records the growth of the statistics over time from the differences written by {@link #writeStatUpdates(List)}.
+     */
+    private final @NotNull StatHistory history;
+
+    /**
+     * Orders the writes that resolve dictionary IDs against discarding the IDs. Each write holds a read lock from before
+     * it resolves IDs until it has completed, while {@link #reloadClearedData()} and {@link #clearData()} hold the write lock,
+     * so that no write can store values under IDs that were discarded in the meantime. A {@code StampedLock} is used,
+     * as the read lock is released by the database thread once the write has completed rather than by the thread
+     * that submitted it.
+     */
+    private final StampedLock idLock = new StampedLock();
+
+    /**
+     * A number that advances whenever a write to the statistic values table has been executed, so that
+     * data derived from the table can be invalidated. Starts at the current time so that versions of
+     * different server runs don't repeat.
+     */
+    private final AtomicLong dataVersion = new AtomicLong(System.currentTimeMillis());
+
+    /**
+     * The {@link #dataVersion} at which the statistic values of each player were last written or removed,
+     * for players whose values have changed since the data of all players last changed.
+     */
+    private final Map<UUID, Long> playerDataVersions = new ConcurrentHashMap<>();
+
+    /**
+     * The {@link #dataVersion} at which the data of all players last changed, such as when the data was cleared.
+     */
+    private volatile long allPlayersDataVersion = dataVersion.get();
+
+    /**
+     * Imports player statistics files during initialization, and reports the progress of the import.
+     */
+    private final StatsFileImporter statsFileImporter;
+
+    /**
+     * Represents the lifecycle of a {@code DatabaseManager}. Player statistics can only be read
+     * while the {@code DatabaseManager} is {@link #READY}.
+     */
+    public enum State {
+        /**
+         * The database tables are being set up or migrated.
+         */
+        INITIALIZING,
+        /**
+         * Player statistics files are being imported into the database.
+         */
+        IMPORTING,
+        /**
+         * The database is fully initialized and can be used.
+         */
+        READY,
+        /**
+         * Initialization failed and the database can't be used.
+         */
+        FAILED,
+    }
+
+    private volatile @NotNull State state = State.INITIALIZING;
+
+    /**
+     * Whether this {@code DatabaseManager} has been closed, after which initialization no longer starts writing
+     * statistic updates, capturing changes or reading the totals changed by other servers.
+     * Only accessed while holding the lock of this {@code DatabaseManager}.
+     */
+    private boolean closed;
+
+    /**
+     * The maximum time to wait for buffered statistic updates to be written when this {@code DatabaseManager} is closed.
+     */
+    private static final long CLOSE_TIMEOUT_SECONDS = 10;
+
+    /**
+     * Coalesces statistic updates collected by {@link #updatePlayerStats(Collection)} before they are written.
+     * Only started once initialization has finished, so that the imported statistics files don't overwrite
+     * the newer values collected in the meantime.
+     */
+    private final StatWriteBuffer writeBuffer = new StatWriteBuffer(this::writeStatUpdates);
+
+    /**
+     * Captures statistic changes as they happen and adds them to the {@link #writeBuffer} every few seconds,
+     * so that the database doesn't lag behind by a full autosave interval. Only started once this
+     * {@code DatabaseManager} is {@link State#READY}, as changes from before are collected by {@link #updatePlayerStats(Collection)}.
+     */
+    private final StatEventCapture eventCapture = new StatEventCapture(writeBuffer::add);
+
+    private static final Histogram COLLECT_TIME = ExtensionMetrics.timer("db.collect.time");
+    private static final Histogram WRITE_TIME = ExtensionMetrics.timer("db.write.time");
+    private static final Histogram WRITE_BATCH_SIZE = ExtensionMetrics.histogram("db.write.batch_size", "rows");
+    private static final Meter ROWS_WRITTEN = ExtensionMetrics.meter("db.write.rows");
+    private static final Histogram GET_STATS_FOR_ALL_PLAYERS_TIME = ExtensionMetrics.timer("db.query.getStatsForAllPlayers.time");
+    private static final Histogram FOR_EACH_STAT_VALUE_TIME = ExtensionMetrics.timer("db.query.forEachStatValue.time");
+    private static final Histogram GET_PLAYER_TOP_STATS_TIME = ExtensionMetrics.timer("db.query.getPlayerTopStats.time");
+    private static final Histogram GET_STAT_AGGREGATES_TIME = ExtensionMetrics.timer("db.query.getStatAggregates.time");
+    private static final Histogram GET_STAT_DISTRIBUTION_TIME = ExtensionMetrics.timer("db.query.getStatDistribution.time");
+
+    /**
+     * Creates a new {@code DatabaseManager} instance. The database is not usable until {@link #initializeAsync()}
+     * has been called and the {@code DatabaseManager} is {@link State#READY}.
      *
      * @param server the Minecraft server on which the extension is running
      * @throws IllegalStateException if the {@code QueryService} instance is not available yet because Plan is not enabled
-     * @throws DatabaseInitializationException if an exception occurs during database initialization
+     * @throws DatabaseInitializationException if Plan's database type is not supported or the server UUID is not available
      *
      * @see <a href="https://github.com/plan-player-analytics/Plan/wiki/Query-API-Getting-started" target=_"blank">Plan Query API – Getting started</a>
      */
     public DatabaseManager(@NotNull final MinecraftServer server) throws DatabaseInitializationException {
-        this.queryService = QueryService.getInstance();
+        this(QueryService.getInstance(), server);
+    }
+
+    /**
+     * Creates a new {@code DatabaseManager} instance using the specified {@code QueryService}, which allows
+     * benchmarks to run against a stand-in database without Plan.
+     *
+     * @param queryService the {@code QueryService} instance for accessing the database
+     * @param server the Minecraft server on which the extension is running, or {@code null} to skip importing player statistics files
+     * @throws DatabaseInitializationException if the database type is not supported or the server UUID is not available
+     */
+    DatabaseManager(@NotNull final QueryService queryService, @Nullable final MinecraftServer server) throws DatabaseInitializationException {
+        this.queryService = queryService;
         this.server = server;
+        this.dialect = SQLDialect.of(queryService);
+        this.playerDictionary = new DictionaryTable(PLAYERS_TABLE, PLAYER_UUID_COLUMN, dialect);
+        this.statDictionary = new DictionaryTable(STAT_NAMES_TABLE, STAT_NAME_COLUMN, dialect);
+        this.serverDictionary = new DictionaryTable(SERVERS_TABLE, SERVER_UUID_COLUMN, dialect);
+        this.serverUUID = queryService.getServerUUID()
+                .orElseThrow(() -> new DatabaseInitializationException("Plan server UUID is not available", null));
+        this.schemaMigrator = new SchemaMigrator(dialect,
+                new SchemaMigrations(dialect, playerDictionary, statDictionary, serverDictionary, serverUUID).getMigrations());
+        this.updatePlayerStatsSql = dialect.upsertSql(STAT_VALUES_TABLE, List.of(SERVER_ID_COLUMN, PLAYER_ID_COLUMN, STAT_ID_COLUMN), List.of(VALUE_COLUMN));
+        this.updateStatsFileSql = dialect.upsertSql(STATS_FILES_TABLE, List.of(SERVER_ID_COLUMN, PLAYER_ID_COLUMN), List.of(FILE_SIZE_COLUMN, LAST_MODIFIED_COLUMN));
+        this.incrementStatTotalSql = dialect.incrementSql(NetworkTotals.STAT_TOTALS_TABLE,
+                List.of(PLAYER_ID_COLUMN, STAT_ID_COLUMN), NetworkTotals.TOTAL_COLUMN, List.of(NetworkTotals.UPDATED_AT_COLUMN));
+        this.statsFileImporter = new StatsFileImporter(this::importPlayerStats);
+        this.history = new StatHistory(queryService, dialect, () -> serverId, playerDictionary, statDictionary);
+        this.networkTotals = new NetworkTotals(queryService, playerDictionary, statDictionary, this::checkIdsCurrent, this::advanceDataVersion);
+    }
+
+    /**
+     * Starts setting up the necessary database tables and populating them with existing player statistics
+     * from the {@link MinecraftServer} instance on a separate thread, so that the server can keep starting meanwhile.
+     * Once finished, registers listeners for Plan database events through the {@link QueryService} instance
+     * to stay in sync with Plan's database, transitions to {@link State#READY} and starts writing statistic updates,
+     * including those that were collected in the meantime, as well as reading the totals changed by other servers,
+     * or transitions to {@link State#FAILED} if an exception occurs.
+     *
+     * @return a {@code CompletableFuture} that completes once initialization has finished or failed
+     */
+    @NotNull
+    public CompletableFuture<Void> initializeAsync() {
+        return CompletableFuture.runAsync(() -> {
+            try {
+                initializeDatabase();
+            } catch (DatabaseInitializationException e) {
+                fail(e);
+                return;
+            }
+
+            synchronized (this) {
+                // a replaced DatabaseManager must not start writing to the tables of its successor
+                if (closed) return;
+
+                queryService.subscribeDataClearEvent(this::clearData);
+                queryService.subscribeToPlayerRemoveEvent(this::removePlayer);
+
+                state = State.READY;
+                writeBuffer.start();
+                eventCapture.start();
+                history.start();
+                networkTotals.start();
+            }
+            PlanInGamePlayerStatisticsExtension.LOGGER.info("In-game player statistics database is ready");
+        }, runnable -> {
+            var thread = new Thread(runnable, PlanInGamePlayerStatisticsExtension.NAME + " Initializer");
+            thread.setDaemon(true);
+            thread.start();
+        }).exceptionally(throwable -> {
+            fail(throwable);
+            return null;
+        });
+    }
+
+    private void fail(Throwable cause) {
+        state = State.FAILED;
+        networkTotals.close();
+        eventCapture.close();
+        writeBuffer.close(0, TimeUnit.SECONDS);
+        history.close();
+        PlanInGamePlayerStatisticsExtension.LOGGER.error("Exception occurred while initializing in-game player statistics database", cause);
+    }
+
+    /**
+     * @return the current {@link State} of this {@code DatabaseManager}
+     */
+    @NotNull
+    public State getState() {
+        return state;
+    }
+
+    /**
+     * @return the {@link StatHistory} recording the growth of the statistics over time
+     */
+    @NotNull
+    public StatHistory getHistory() {
+        return history;
+    }
+
+    /**
+     * Returns the current data version, which advances whenever player statistics in the database have changed.
+     * Data read from this {@code DatabaseManager} can be reused for as long as the data version stays the same.
+     * The data version should be read before reading the data, so that concurrent changes are never missed.
+     *
+     * @return the current data version
+     */
+    public long getDataVersion() {
+        return dataVersion.get();
+    }
+
+    /**
+     * Returns the data version at which the statistic values of a player last changed. Unlike {@link #getDataVersion()},
+     * it doesn't advance when only other players' values change, even though this may change the player's ranks.
+     * Like the data version, it should be read before reading the data.
+     *
+     * @param playerUUID the UUID of the player
+     * @return the data version at which the player's values last changed
+     */
+    public long getPlayerDataVersion(@NotNull UUID playerUUID) {
+        long allPlayersVersion = allPlayersDataVersion;
+        return Math.max(allPlayersVersion, playerDataVersions.getOrDefault(playerUUID, allPlayersVersion));
+    }
+
+    /**
+     * Advances the {@link #dataVersion} once a write to the database has been committed, so that no data can be read
+     * and cached under the new data version before the write is visible. Plan executes transactions as
+     * {@link CompletableFuture}s; for other {@code Future}s, the data version is advanced immediately instead.
+     *
+     * @param future the {@code Future} tracking the execution of the write
+     * @param playerUUIDs the players whose values are written, or {@code null} if the write affects all players
+     * @return the same {@code future}
+     */
+    @NotNull
+    private Future<?> advanceDataVersionOnCompletion(@NotNull Future<?> future, @Nullable Collection<UUID> playerUUIDs) {
+        if (future instanceof CompletableFuture<?> completableFuture) {
+            completableFuture.whenComplete((result, throwable) -> advanceDataVersion(playerUUIDs));
+        } else {
+            advanceDataVersion(playerUUIDs);
+        }
+        return future;
+    }
+
+    /**
+     * Runs an action once a write has been committed, and not at all if it fails. Plan executes transactions as
+     * {@link CompletableFuture}s; for other {@code Future}s, the action is run immediately instead.
+     *
+     * @param future the {@code Future} tracking the execution of the write
+     * @param action the action to run once the write has been committed
+     * @return a {@code Future} that completes once the action has run, or fails if the write failed
+     */
+    @NotNull
+    private static Future<?> runOnSuccess(@NotNull Future<?> future, @NotNull Runnable action) {
+        if (future instanceof CompletableFuture<?> completableFuture) {
+            return completableFuture.thenRun(action);
+        }
+        action.run();
+        return future;
+    }
+
+    /**
+     * Submits a write that resolves dictionary IDs while holding a read lock of the {@link #idLock},
+     * which is released once the write has completed. Plan executes transactions as {@link CompletableFuture}s;
+     * for other {@code Future}s, the lock is released as soon as the write has been submitted instead.
+     *
+     * @param write submits the write, returning a {@code Future} tracking its execution
+     * @return the {@code Future} returned by {@code write}
+     */
+    @NotNull
+    private Future<?> executeHoldingIdLock(@NotNull Supplier<Future<?>> write) {
+        long stamp = idLock.readLock();
+        Future<?> future;
+        try {
+            future = write.get();
+        } catch (RuntimeException e) {
+            idLock.unlockRead(stamp);
+            throw e;
+        }
 
-        initializeDatabase();
+        if (future instanceof CompletableFuture<?> completableFuture) {
+            completableFuture.whenComplete((result, throwable) -> idLock.unlockRead(stamp));
+        } else {
+            idLock.unlockRead(stamp);
+        }
+        return future;
+    }
 
-        queryService.subscribeDataClearEvent(this::clearData);
-        queryService.subscribeToPlayerRemoveEvent(this::removePlayer);
+    private void advanceDataVersion(@Nullable Collection<UUID> playerUUIDs) {
+        long version = dataVersion.incrementAndGet();
+        if (playerUUIDs == null) {
+            allPlayersDataVersion = version;
+            playerDataVersions.clear();
+        } else {
+            for (var playerUUID : playerUUIDs) {
+                playerDataVersions.put(playerUUID, version);
+            }
+        }
     }
 
     /**
-     * Ensures that the necessary database tables are created, and inserts player statistics from the save files
-     * of this {@code DatabaseManager}'s {@link #server} for players that have no existing entries in the database.
+     * Returns the progress of the initialization as a percentage. Only advances while {@link State#IMPORTING},
+     * based on the number of player statistics files that have been imported.
+     *
+     * @return the initialization progress between {@code 0} and {@code 100}
+     */
+    public int getInitializationProgress() {
+        return switch (state) {
+            case INITIALIZING, FAILED -> 0;
+            case IMPORTING -> statsFileImporter.getProgressPercent();
+            case READY -> 100;
+        };
+    }
+
+    /**
+     * Brings the database schema up to date, which creates the necessary database tables and migrates data from the
+     * legacy table of earlier versions if it exists, and imports player statistics from the save files of this {@code DatabaseManager}'s
+     * {@link #server} that are new or have changed since they were last imported.
      *
      * @throws DatabaseInitializationException if an exception occurs during database initialization
      */
     private void initializeDatabase() throws DatabaseInitializationException {
-        queryService.execute(CREATE_TABLE_SQL, PreparedStatement::executeUpdate);
+        try {
+            schemaMigrator.migrate(queryService).get();
+        } catch (InterruptedException | ExecutionException e) {
+            throw new DatabaseInitializationException("Exception occurred while migrating database schema", e);
+        }
 
-        try (var playerStatsFiles = Files.list(server.getSavePath(WorldSavePath.STATS))) {
-            var existingUUIDs = getExistingUUIDs();
+        try {
+            registerServer();
+        } catch (InterruptedException | ExecutionException e) {
+            throw new DatabaseInitializationException("Exception occurred while registering server " + serverUUID, e);
+        }
 
-            var statHandlers = playerStatsFiles
-                    .filter(path -> {
-                        var playerUUID = FilenameUtils.getBaseName(path.toString());
-                        return !existingUUIDs.contains(playerUUID);
-                    })
-                    .map(path -> new ServerStatHandler(server, path.toFile()))
-                    .toList();
+        playerDictionary.load(queryService);
+        statDictionary.load(queryService);
 
-            var future = updatePlayerStats(statHandlers).orElse(null);
-            if (future == null) return;
+        if (server != null) {
+            state = State.IMPORTING;
+            importChangedStatsFiles(server);
+        }
 
-            try {
-                future.get();
-                PlanInGamePlayerStatisticsExtension.LOGGER.info("Successfully loaded {} player statistics files from server into database", statHandlers.size());
-            } catch (InterruptedException | ExecutionException e) {
-                throw new DatabaseInitializationException("Exception occurred while writing player statistics to database", e);
+        loadStatStore();
+        networkTotals.load();
+    }
+
+    /**
+     * Registers this server in the {@link #serverDictionary} if it isn't known yet and looks up its ID,
+     * which is only cached once the registration has been committed.
+     *
+     * @throws InterruptedException if interrupted while waiting for the registration
+     * @throws ExecutionException if an exception occurs while registering the server
+     */
+    private void registerServer() throws InterruptedException, ExecutionException {
+        var serverUUIDString = serverUUID.toString();
+        var resolvedIds = new AtomicReference<DictionaryTable.ResolvedIds>();
+        queryService.execute(serverDictionary.insertKeySql(), statement -> {
+            statement.setString(1, serverUUIDString);
+            statement.executeUpdate();
+            resolvedIds.set(serverDictionary.resolveIds(statement.getConnection(), List.of(serverUUIDString)));
+        }).get();
+
+        serverDictionary.cacheNewIds(resolvedIds.get());
+        serverId = resolvedIds.get().getInt(serverUUIDString);
+    }
+
+    /**
+     * Imports the player statistics files of the server that are new or have changed since they were last imported.
+     *
+     * @param server the server whose player statistics files to import
+     * @throws DatabaseInitializationException if the player statistics files can't be listed
+     */
+    private void importChangedStatsFiles(@NotNull MinecraftServer server) throws DatabaseInitializationException {
+        var importedFileStates = getImportedStatsFileStates();
+        var changedStatsFiles = new ArrayList<StatsFileImporter.StatsFile>();
+        try (var playerStatsFiles = Files.newDirectoryStream(server.getSavePath(WorldSavePath.STATS), "*.json")) {
+            for (Path path : playerStatsFiles) {
+                StatsFileImporter.StatsFile statsFile;
+                try {
+                    statsFile = StatsFileImporter.StatsFile.read(path);
+                } catch (IllegalArgumentException e) {
+                    PlanInGamePlayerStatisticsExtension.LOGGER.warn("Skipping statistics file {} not named after a player UUID", path);
+                    continue;
+                }
+
+                if (!statsFile.state().equals(importedFileStates.get(statsFile.playerUUID().toString()))) {
+                    changedStatsFiles.add(statsFile);
+                }
             }
         } catch (IOException e) {
             throw new DatabaseInitializationException("I/O exception occurred while getting player statistics files", e);
         }
+
+        PlanInGamePlayerStatisticsExtension.LOGGER.info("Found {} new or changed player statistics files", changedStatsFiles.size());
+        statsFileImporter.importFiles(server, changedStatsFiles);
+    }
+
+    /**
+     * Fills the {@link #statStore} with all statistic values of this server currently stored in the database.
+     */
+    private void loadStatStore() {
+        int valueCount = queryService.query(GET_ALL_STAT_VALUES_SQL, statement -> {
+            statement.setInt(1, serverId);
+            try (var resultSet = statement.executeQuery()) {
+                int count = 0;
+                while (resultSet.next()) {
+                    statStore.put(resultSet.getInt(STAT_ID_COLUMN.name()), resultSet.getInt(PLAYER_ID_COLUMN.name()), resultSet.getInt(VALUE_COLUMN.name()));
+                    count++;
+                }
+                return count;
+            }
+        });
+        PlanInGamePlayerStatisticsExtension.LOGGER.info("Loaded {} player statistic values into memory", valueCount);
+    }
+
+    private static final String GET_ALL_STAT_VALUES_SQL =
+            "SELECT " + PLAYER_ID_COLUMN + ", " + STAT_ID_COLUMN + ", " + VALUE_COLUMN +
+            " FROM " + STAT_VALUES_TABLE +
+            " WHERE " + SERVER_ID_COLUMN + " = ?";
+
+    /**
+     * Checks whether the IDs cached in memory are still valid before the {@link #networkTotals} are refreshed,
+     * and reloads all data from the database if they aren't, as the data was cleared without this server being notified.
+     *
+     * @return {@code true} if the cached IDs are still valid, or {@code false} if the data was reloaded instead
+     */
+    private boolean checkIdsCurrent() {
+        if (isServerIdCurrent()) return true;
+
+        PlanInGamePlayerStatisticsExtension.LOGGER.warn("Server {} is no longer registered with ID {}, as the data was cleared; reloading from the database", serverUUID, serverId);
+        try {
+            reloadClearedData();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            PlanInGamePlayerStatisticsExtension.LOGGER.error("Exception occurred while reloading in-game player statistics database", e);
+        }
+        return false;
+    }
+
+    /**
+     * Checks whether the {@link #serverDictionary} still maps this server to its cached {@link #serverId}.
+     * When Plan's data is cleared, only the server receiving the clear event is notified, while the dictionaries
+     * are recreated for all servers sharing the database, so the IDs cached by the other servers become invalid.
+     *
+     * @return {@code true} if this server is still registered with its cached ID
+     */
+    private boolean isServerIdCurrent() {
+        return queryService.query(GET_SERVER_ID_SQL, statement -> {
+            statement.setString(1, serverUUID.toString());
+            try (var resultSet = statement.executeQuery()) {
+                return resultSet.next() && resultSet.getInt(1) == serverId;
+            }
+        });
+    }
+
+    private static final String GET_SERVER_ID_SQL =
+            "SELECT " + DictionaryTable.ID_COLUMN + " FROM " + SERVERS_TABLE + " WHERE " + SERVER_UUID_COLUMN + " = ?";
+
+    /**
+     * Discards all cached data and IDs after the data was cleared without this server being notified,
+     * then registers this server again and reloads the data written since. Holds the write lock of the {@link #idLock}
+     * throughout, so that writes in flight complete before and pending writes resolve their IDs after the reload.
+     *
+     * @throws InterruptedException if interrupted while registering the server
+     * @throws ExecutionException if an exception occurs while registering the server
+     */
+    private void reloadClearedData() throws InterruptedException, ExecutionException {
+        long stamp = idLock.writeLock();
+        try {
+            clearCachedData();
+
+            registerServer();
+            playerDictionary.load(queryService);
+            statDictionary.load(queryService);
+            loadStatStore();
+            networkTotals.load();
+            advanceDataVersion(null);
+        } finally {
+            idLock.unlockWrite(stamp);
+        }
     }
 
-    private static final String CREATE_TABLE_SQL =
-            "CREATE TABLE IF NOT EXISTS " + INGAME_STATS_TABLE + "(" +
-                    PLAYER_UUID_COLUMN.withType() + ", " +
-                    STAT_NAME_COLUMN.withType() + ", " +
-                    VALUE_COLUMN.withType() + ", " +
-                    "PRIMARY KEY(" + PLAYER_UUID_COLUMN + ", " + STAT_NAME_COLUMN + ")" +
-            ")";
+    /**
+     * Discards all values waiting to be written and all data and IDs cached in memory.
+     * Must be called while holding the write lock of the {@link #idLock}.
+     */
+    private void clearCachedData() {
+        eventCapture.clear();
+        writeBuffer.clear();
+        changeTracker.clear();
+        statStore.clear();
+        networkTotals.clear();
+        history.clear();
+        playerDictionary.clear();
+        statDictionary.clear();
+        serverDictionary.clear();
+    }
 
     /**
-     * Deletes the database tables entirely.
+     * Deletes the database tables entirely and creates empty tables in their place by migrating the schema again,
+     * waiting for both before any other write can resolve IDs, as it holds the write lock of the {@link #idLock}.
+     * This and all other servers sharing the database register themselves again on their next refresh of the network-wide totals.
      */
     private void clearData() {
-        queryService.execute(DROP_TABLE_SQL, PreparedStatement::executeUpdate);
+        long stamp = idLock.writeLock();
+        try {
+            clearCachedData();
+            try {
+                advanceDataVersionOnCompletion(queryService.execute(DROP_STAT_VALUES_TABLE_SQL, statement -> {
+                    statement.executeUpdate();
+                    try (var dropStatement = statement.getConnection().createStatement()) {
+                        dropStatement.executeUpdate(playerDictionary.dropTableSql());
+                        dropStatement.executeUpdate(statDictionary.dropTableSql());
+                        dropStatement.executeUpdate(serverDictionary.dropTableSql());
+                        dropStatement.executeUpdate(NetworkTotals.DROP_STAT_TOTALS_TABLE_SQL);
+                        dropStatement.executeUpdate(StatHistory.DROP_HISTORY_TABLE_SQL);
+                        dropStatement.executeUpdate(DROP_STATS_FILES_TABLE_SQL);
+                        dropStatement.executeUpdate(schemaMigrator.dropTableSql());
+                    }
+                }), null).get();
+                schemaMigrator.migrate(queryService).get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (ExecutionException e) {
+                PlanInGamePlayerStatisticsExtension.LOGGER.error("Exception occurred while clearing in-game player statistics database", e);
+            }
+        } finally {
+            idLock.unlockWrite(stamp);
+        }
     }
 
-    private static final String DROP_TABLE_SQL =
-            "DROP TABLE IF EXISTS " + INGAME_STATS_TABLE;
+    private static final String DROP_STAT_VALUES_TABLE_SQL =
+            "DROP TABLE IF EXISTS " + STAT_VALUES_TABLE;
+
+    private static final String DROP_STATS_FILES_TABLE_SQL =
+            "DROP TABLE IF EXISTS " + STATS_FILES_TABLE;
 
     /**
-     * Removes all entries for the specified player UUID from the database.
+     * Removes all entries for the specified player UUID from the database, on all servers sharing the database.
+     * The player's statistics file is also removed from the import manifests,
+     * so it will be imported again on the next initialization if it still exists.
      *
      * @param playerUUID the UUID of the player to be removed
      */
     private void removePlayer(UUID playerUUID) {
-        queryService.execute(REMOVE_PLAYER_ENTRIES_SQL, statement -> {
+        eventCapture.removePlayer(playerUUID);
+        writeBuffer.removePlayer(playerUUID);
+        changeTracker.forgetPlayer(playerUUID);
+        advanceDataVersionOnCompletion(executeHoldingIdLock(() -> runOnSuccess(queryService.execute(REMOVE_PLAYER_ENTRIES_SQL, statement -> {
             statement.setString(1, playerUUID.toString());
             statement.executeUpdate();
-        });
+            try (var removeFileStatement = statement.getConnection().prepareStatement(REMOVE_PLAYER_STATS_FILE_SQL)) {
+                removeFileStatement.setString(1, playerUUID.toString());
+                removeFileStatement.executeUpdate();
+            }
+            try (var removeTotalsStatement = statement.getConnection().prepareStatement(REMOVE_PLAYER_STAT_TOTALS_SQL)) {
+                removeTotalsStatement.setString(1, playerUUID.toString());
+                removeTotalsStatement.executeUpdate();
+            }
+            var playerId = playerDictionary.getId(playerUUID.toString());
+            if (playerId.isPresent()) {
+                history.removePlayer(statement.getConnection(), playerId.getAsInt());
+            }
+        }), () -> playerDictionary.getId(playerUUID.toString()).ifPresent(playerId -> {
+            statStore.removePlayer(playerId);
+            networkTotals.removePlayer(playerId);
+        }))), List.of(playerUUID));
     }
 
-    private static final String REMOVE_PLAYER_ENTRIES_SQL =
-            "DELETE FROM " + INGAME_STATS_TABLE +
+    private static final String PLAYER_ID_BY_UUID_SQL =
+            "SELECT " + DictionaryTable.ID_COLUMN + " FROM " + PLAYERS_TABLE +
             " WHERE " + PLAYER_UUID_COLUMN + " = ?";
 
+    private static final String REMOVE_PLAYER_ENTRIES_SQL =
+            "DELETE FROM " + STAT_VALUES_TABLE +
+            " WHERE " + PLAYER_ID_COLUMN + " = (" + PLAYER_ID_BY_UUID_SQL + ")";
+
+    private static final String REMOVE_PLAYER_STATS_FILE_SQL =
+            "DELETE FROM " + STATS_FILES_TABLE +
+            " WHERE " + PLAYER_ID_COLUMN + " = (" + PLAYER_ID_BY_UUID_SQL + ")";
+
+    private static final String REMOVE_PLAYER_STAT_TOTALS_SQL =
+            "DELETE FROM " + NetworkTotals.STAT_TOTALS_TABLE +
+            " WHERE " + PLAYER_ID_COLUMN + " = (" + PLAYER_ID_BY_UUID_SQL + ")";
+
     /**
-     * Fetches a list of player UUIDs that are currently stored in the database.
+     * Fetches the state each player statistics file of this server had when it was last imported into the database.
      * UUIDs are intentionally kept as {@code String}s for internal processing.
      *
-     * @return a list containing all stored player UUIDs as {@code String}s
+     * @return a map containing the imported {@code StatsFileState} for each player UUID as {@code String}
      */
     @NotNull
-    private List<String> getExistingUUIDs() {
-        return queryService.query(GET_EXISTING_UUIDS_SQL, statement -> {
+    private Map<String, StatsFileImporter.StatsFileState> getImportedStatsFileStates() {
+        return queryService.query(GET_STATS_FILE_STATES_SQL, statement -> {
+            statement.setInt(1, serverId);
             try (var resultSet = statement.executeQuery()) {
-                var existingUUIDs = new ArrayList<String>();
+                var fileStates = new HashMap<String, StatsFileImporter.StatsFileState>();
                 while (resultSet.next()) {
-                    existingUUIDs.add(resultSet.getString(PLAYER_UUID_COLUMN.name));
+                    var fileState = new StatsFileImporter.StatsFileState(
+                            resultSet.getLong(FILE_SIZE_COLUMN.name()),
+                            resultSet.getLong(LAST_MODIFIED_COLUMN.name())
+                    );
+                    fileStates.put(resultSet.getString(PLAYER_UUID_COLUMN.name()), fileState);
+                }
+                return fileStates;
+            }
+        });
+    }
+
+    private static final String GET_STATS_FILE_STATES_SQL =
+            "SELECT " + PLAYER_UUID_COLUMN.of("p") + ", " + FILE_SIZE_COLUMN.of("f") + ", " + LAST_MODIFIED_COLUMN.of("f") +
+            " FROM " + STATS_FILES_TABLE + " f" +
+            " JOIN " + PLAYERS_TABLE + " p ON " + DictionaryTable.ID_COLUMN.of("p") + " = " + PLAYER_ID_COLUMN.of("f") +
+            " WHERE " + SERVER_ID_COLUMN.of("f") + " = ?";
+
+    /**
+     * Replaces all statistics of the players whose statistics files are provided with the parsed values in this server's
+     * partition, records the state of the files in the import manifest and sums the players' totals again from all
+     * servers' values, all within a single transaction.
+     * Used for importing statistics files that are new or have changed since they were last imported,
+     * which is why these players are not tracked by the {@link #changeTracker}.
+     *
+     * @param statsFiles a {@code Collection} of parsed statistics files containing the player statistics to be imported
+     * @return an optional {@code Future} for tracking the execution of the SQL statements,
+     *         or an empty optional if {@code statsFiles} is empty
+     */
+    @NotNull
+    private Optional<Future<?>> importPlayerStats(@NotNull final Collection<StatsFileImporter.ParsedStatsFile> statsFiles) {
+        if (statsFiles.isEmpty()) return Optional.empty();
+
+        var playerUUIDs = new ObjectOpenHashSet<String>();
+        var statNames = new ObjectOpenHashSet<String>();
+        for (var statsFile : statsFiles) {
+            playerUUIDs.add(statsFile.file().playerUUID().toString());
+            for (Stat<?> stat : statsFile.statHandler().statMap.keySet()) {
+                statNames.add(stat.getName());
+            }
+        }
+
+        var resolvedPlayerIds = new AtomicReference<DictionaryTable.ResolvedIds>();
+        var resolvedStatIds = new AtomicReference<DictionaryTable.ResolvedIds>();
+        Future<?> future = runOnSuccess(queryService.execute(updatePlayerStatsSql, statement -> {
+            var connection = statement.getConnection();
+            var playerIds = playerDictionary.resolveIds(connection, playerUUIDs);
+            var statIds = statDictionary.resolveIds(connection, statNames);
+            resolvedPlayerIds.set(playerIds);
+            resolvedStatIds.set(statIds);
+
+            // statistics missing from the files must not survive the import, so the old values are removed first
+            try (var deleteStatement = connection.prepareStatement(DELETE_PLAYER_STATS_SQL)) {
+                for (String playerUUID : playerUUIDs) {
+                    deleteStatement.setInt(1, serverId);
+                    deleteStatement.setInt(2, playerIds.getInt(playerUUID));
+                    deleteStatement.addBatch();
+                }
+                deleteStatement.executeBatch();
+            }
+
+            try (var manifestStatement = connection.prepareStatement(updateStatsFileSql)) {
+                for (var statsFile : statsFiles) {
+                    int playerId = playerIds.getInt(statsFile.file().playerUUID().toString());
+                    statement.setInt(1, serverId);
+                    statement.setInt(2, playerId);
+                    for (var statEntry : statsFile.statHandler().statMap.object2IntEntrySet()) {
+                        statement.setInt(3, statIds.getInt(statEntry.getKey().getName()));
+                        statement.setInt(4, statEntry.getIntValue());
+                        statement.addBatch();
+                    }
+
+                    manifestStatement.setInt(1, serverId);
+                    manifestStatement.setInt(2, playerId);
+                    manifestStatement.setLong(3, statsFile.file().state().fileSize());
+                    manifestStatement.setLong(4, statsFile.file().state().lastModified());
+                    manifestStatement.addBatch();
                 }
-                return existingUUIDs;
+                statement.executeBatch();
+                manifestStatement.executeBatch();
             }
+
+            // the old values are no longer known once they have been deleted, so the totals are summed again
+            long updatedAt = System.currentTimeMillis();
+            try (var deleteTotalsStatement = connection.prepareStatement(DELETE_PLAYER_STAT_TOTALS_SQL);
+                 var fillTotalsStatement = connection.prepareStatement(NetworkTotals.fillStatTotalsSql(dialect, PLAYER_ID_COLUMN + " = ?"))) {
+                for (String playerUUID : playerUUIDs) {
+                    deleteTotalsStatement.setInt(1, playerIds.getInt(playerUUID));
+                    deleteTotalsStatement.addBatch();
+                    fillTotalsStatement.setLong(1, updatedAt);
+                    fillTotalsStatement.setInt(2, playerIds.getInt(playerUUID));
+                    fillTotalsStatement.addBatch();
+                }
+                deleteTotalsStatement.executeBatch();
+                fillTotalsStatement.executeBatch();
+            }
+        }), () -> {
+            playerDictionary.cacheNewIds(resolvedPlayerIds.get());
+            statDictionary.cacheNewIds(resolvedStatIds.get());
         });
+
+        return Optional.of(advanceDataVersionOnCompletion(future, null));
     }
 
-    private static final String GET_EXISTING_UUIDS_SQL =
-            "SELECT DISTINCT " + PLAYER_UUID_COLUMN + " FROM " + INGAME_STATS_TABLE;
+    private static final String DELETE_PLAYER_STATS_SQL =
+            "DELETE FROM " + STAT_VALUES_TABLE +
+            " WHERE " + SERVER_ID_COLUMN + " = ? AND " + PLAYER_ID_COLUMN + " = ?";
+
+    private static final String DELETE_PLAYER_STAT_TOTALS_SQL =
+            "DELETE FROM " + NetworkTotals.STAT_TOTALS_TABLE +
+            " WHERE " + PLAYER_ID_COLUMN + " = ?";
 
     /**
-     * Inserts player statistics provided by the {@code statHandlers} into the database.
-     * Existing entries for player UUID and statistic names are replaced.
+     * Writes the player statistics provided by the {@code statHandlers} to the database.
+     * Only statistics whose values changed since they were last written are included;
+     * existing entries for player UUID and statistic names are updated in place.
+     * <p>
+     * The changed values are collected on the calling thread, so this method should be called from the thread
+     * that modifies the {@code statHandlers}. They are then added to a write buffer, which keeps only the latest value
+     * of each statistic of each player and writes them shortly after, or once initialization has finished if this
+     * {@code DatabaseManager} is not {@link State#READY} yet. After this {@code DatabaseManager} has been closed,
+     * the changed values are written immediately instead.
      * <p>
-     * This method returns an optional {@code Future} that can be used to block the thread with {@link Future#get()}
-     * until the SQL statement has executed, or an empty optional if {@code statHandlers} is empty.
+     * Changes of the same players captured by the {@link #eventCapture} before this call are discarded,
+     * as they may be older than the collected values.
      *
      * @param statHandlers a {@code Collection} of {@link ServerStatHandler}s containing the player statistics to be updated
-     * @return an optional {@code Future} for tracking the execution of the SQL statement,
-     *         or an empty optional if {@code statHandlers} is empty
+     */
+    public void updatePlayerStats(@NotNull final Collection<ServerStatHandler> statHandlers) {
+        if (state == State.FAILED) return;
+
+        long startTime = System.nanoTime();
+        var playerUUIDs = new ArrayList<UUID>(statHandlers.size());
+        var statUpdates = new ArrayList<StatChangeTracker.StatUpdate>();
+        for (ServerStatHandler statHandler : statHandlers) {
+            playerUUIDs.add(StatChangeTracker.getPlayerUUID(statHandler));
+            statUpdates.addAll(changeTracker.collectChanges(statHandler));
+        }
+        COLLECT_TIME.record(System.nanoTime() - startTime);
+
+        eventCapture.runCollected(playerUUIDs, () -> {
+            if (statUpdates.isEmpty()) return;
+            if (!writeBuffer.add(statUpdates) && state == State.READY) {
+                writeStatUpdates(statUpdates);
+            }
+        });
+    }
+
+    /**
+     * Stops capturing and buffering statistic updates and waits a bounded time for the buffered updates
+     * and the pending statistics history to be written. If initialization hasn't finished yet,
+     * it won't start writing once it does.
+     * Should be called when the server is stopping or this {@code DatabaseManager} is replaced,
+     * while Plan's database is still available.
+     */
+    public void close() {
+        synchronized (this) {
+            closed = true;
+        }
+        networkTotals.close();
+        eventCapture.close();
+        writeBuffer.close(CLOSE_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        history.close();
+    }
+
+    /**
+     * Writes the given statistic updates to this server's partition of the database and marks them as written
+     * in the {@link #changeTracker}. The network-wide totals are adjusted by the difference of each value to
+     * this server's previous value, which is known from the {@link #statStore}, as only this server writes to its partition.
+     * The same differences are recorded in the {@link #history}. The in-memory stores, the history and the
+     * {@code changeTracker} are only updated once the transaction has been committed.
+     *
+     * @param statUpdates the statistic updates to be written
+     * @return a {@code Future} for tracking the execution of the SQL statement
      */
     @NotNull
-    public Optional<Future<?>> updatePlayerStats(@NotNull final Collection<ServerStatHandler> statHandlers) {
-        if (statHandlers.isEmpty()) return Optional.empty();
+    Future<?> writeStatUpdates(@NotNull final List<StatChangeTracker.StatUpdate> statUpdates) {
+        return writeStatUpdates(statUpdates, Map.of());
+    }
+
+    /**
+     * Writes the given statistic updates like {@link #writeStatUpdates(List)}, and records the given states of saved
+     * player statistics files in the import manifest in the same transaction, so that files whose values have been
+     * written are not imported again on the next initialization.
+     *
+     * @param statUpdates the statistic updates to be written
+     * @param fileStates the state of each player's statistics file after it was last saved
+     * @return a {@code Future} for tracking the execution of the SQL statement
+     */
+    @NotNull
+    private Future<?> writeStatUpdates(@NotNull final List<StatChangeTracker.StatUpdate> statUpdates,
+                                       @NotNull final Map<UUID, StatsFileImporter.StatsFileState> fileStates) {
+        var updatedPlayers = new ObjectOpenHashSet<UUID>();
+        var playerUUIDs = new ObjectOpenHashSet<String>();
+        var statNames = new ObjectOpenHashSet<String>();
+        for (var statUpdate : statUpdates) {
+            if (updatedPlayers.add(statUpdate.playerUUID())) {
+                playerUUIDs.add(statUpdate.playerUUID().toString());
+            }
+            statNames.add(statUpdate.stat().getName());
+        }
+        for (var playerUUID : fileStates.keySet()) {
+            playerUUIDs.add(playerUUID.toString());
+        }
 
-        Future<?> future = queryService.execute(UPDATE_PLAYER_STATS_SQL, statement -> {
-            for (ServerStatHandler statHandler : statHandlers) {
-                var playerUUID = FilenameUtils.getBaseName(statHandler.file.toString());
-                statement.setString(1, playerUUID);
+        var writtenValues = new AtomicReference<WrittenStatValues>();
+        return advanceDataVersionOnCompletion(executeHoldingIdLock(() -> runOnSuccess(queryService.execute(updatePlayerStatsSql, statement -> {
+            long startTime = System.nanoTime();
+            var playerIds = playerDictionary.resolveIds(statement.getConnection(), playerUUIDs);
+            var statIds = statDictionary.resolveIds(statement.getConnection(), statNames);
 
-                for (var statEntry : statHandler.statMap.object2IntEntrySet()) {
-                    statement.setString(2, statEntry.getKey().getName());
-                    statement.setInt(3, statEntry.getIntValue());
+            long updatedAt = System.currentTimeMillis();
+            var written = new WrittenStatValues(playerIds, statIds, new int[statUpdates.size()], new int[statUpdates.size()], new long[statUpdates.size()]);
+            var totalDeltas = written.totalDeltas();
+            try (var incrementStatement = statement.getConnection().prepareStatement(incrementStatTotalSql)) {
+                for (int index = 0; index < statUpdates.size(); index++) {
+                    var statUpdate = statUpdates.get(index);
+                    int playerId = written.playerIds()[index] = playerIds.getInt(statUpdate.playerUUID().toString());
+                    int statId = written.statIds()[index] = statIds.getInt(statUpdate.stat().getName());
+                    statement.setInt(1, serverId);
+                    statement.setInt(2, playerId);
+                    statement.setInt(3, statId);
+                    statement.setInt(4, statUpdate.value());
                     statement.addBatch();
+
+                    totalDeltas[index] = (long) statUpdate.value() - statStore.get(statId, playerId, 0);
+                    if (totalDeltas[index] != 0) {
+                        incrementStatement.setInt(1, playerId);
+                        incrementStatement.setInt(2, statId);
+                        incrementStatement.setLong(3, totalDeltas[index]);
+                        incrementStatement.setLong(4, updatedAt);
+                        incrementStatement.addBatch();
+                    }
                 }
+                statement.executeBatch();
+                incrementStatement.executeBatch();
             }
-            statement.executeBatch();
-        });
+            if (!fileStates.isEmpty()) {
+                try (var manifestStatement = statement.getConnection().prepareStatement(updateStatsFileSql)) {
+                    for (var fileState : fileStates.entrySet()) {
+                        manifestStatement.setInt(1, serverId);
+                        manifestStatement.setInt(2, playerIds.getInt(fileState.getKey().toString()));
+                        manifestStatement.setLong(3, fileState.getValue().fileSize());
+                        manifestStatement.setLong(4, fileState.getValue().lastModified());
+                        manifestStatement.addBatch();
+                    }
+                    manifestStatement.executeBatch();
+                }
+            }
+            writtenValues.set(written);
 
-        return Optional.of(future);
+            WRITE_TIME.record(System.nanoTime() - startTime);
+            WRITE_BATCH_SIZE.record(statUpdates.size());
+        }), () -> applyWrittenStatValues(statUpdates, writtenValues.get()))), updatedPlayers);
     }
 
-    private static final String UPDATE_PLAYER_STATS_SQL =
-            "REPLACE INTO " + INGAME_STATS_TABLE +
-            " (" + PLAYER_UUID_COLUMN + ", " + STAT_NAME_COLUMN + ", " + VALUE_COLUMN + ")" +
-            " VALUES (?, ?, ?)";
+    /**
+     * The IDs a list of statistic updates was written under, and the difference of each value to this server's
+     * previous value, by which the network-wide total was adjusted. Each array has one element per update.
+     *
+     * @param resolvedPlayerIds the resolved IDs of the updated players, including those that weren't cached yet
+     * @param resolvedStatIds the resolved IDs of the updated statistics, including those that weren't cached yet
+     * @param playerIds the player ID of each update
+     * @param statIds the statistic ID of each update
+     * @param totalDeltas the difference of each update's value to the previous value
+     */
+    private record WrittenStatValues(DictionaryTable.ResolvedIds resolvedPlayerIds, DictionaryTable.ResolvedIds resolvedStatIds,
+                                     int[] playerIds, int[] statIds, long[] totalDeltas) {}
+
+    /**
+     * Applies statistic updates to the in-memory stores, the {@link #history}, the {@link #changeTracker} and the
+     * dictionaries once their transaction has been committed, so that they never hold values or IDs that were rolled back.
+     *
+     * @param statUpdates the statistic updates that were written
+     * @param written the IDs and differences the updates were written with
+     */
+    private void applyWrittenStatValues(@NotNull List<StatChangeTracker.StatUpdate> statUpdates, @NotNull WrittenStatValues written) {
+        playerDictionary.cacheNewIds(written.resolvedPlayerIds());
+        statDictionary.cacheNewIds(written.resolvedStatIds());
+        changeTracker.markWritten(statUpdates);
+        ROWS_WRITTEN.mark(statUpdates.size());
+
+        for (int index = 0; index < statUpdates.size(); index++) {
+            int playerId = written.playerIds()[index];
+            int statId = written.statIds()[index];
+            long totalDelta = written.totalDeltas()[index];
+            statStore.put(statId, playerId, statUpdates.get(index).value());
+            if (totalDelta != 0) {
+                history.recordDelta(playerId, statId, totalDelta);
+                networkTotals.add(statId, playerId, totalDelta);
+            }
+        }
+
+        PlanInGamePlayerStatisticsExtension.LOGGER.debug("Wrote {} changed player statistics to database ({} rows changed, {} rows skipped in total)",
+                statUpdates.size(), changeTracker.getRowsChanged(), changeTracker.getRowsSkipped());
+    }
+
+    /**
+     * Records the state of a player's statistics file after the server saved it, so that the file isn't imported
+     * again on the next initialization. The state is written together with the buffered statistic updates, which
+     * include the values collected before the file was saved. Files saved after this {@code DatabaseManager} has been
+     * closed are not recorded, as their values are written separately; they are imported again on the next initialization.
+     *
+     * @param playerUUID the UUID of the player the file belongs to
+     * @param path the path of the saved statistics file
+     */
+    public void recordSavedStatsFile(@NotNull final UUID playerUUID, @NotNull final Path path) {
+        if (state == State.FAILED) return;
+
+        try {
+            writeBuffer.addFileState(playerUUID, StatsFileImporter.StatsFileState.read(path));
+        } catch (IOException e) {
+            PlanInGamePlayerStatisticsExtension.LOGGER.warn("Couldn't read saved player statistics file {}", path, e);
+        }
+    }
+
+    /**
+     * Stops tracking the last written statistic values of a player, which should be done once the player
+     * has left the server and their statistics have been updated for the last time.
+     * Their statistics will be written in full again the next time they are updated.
+     *
+     * @param playerUUID the UUID of the player to stop tracking
+     */
+    public void stopTrackingPlayer(@NotNull final UUID playerUUID) {
+        changeTracker.forgetPlayer(playerUUID);
+    }
+
+    /**
+     * Represents the number of rows collected and skipped by {@link #updatePlayerStats(Collection)}
+     * since this {@code DatabaseManager} was created. Both are counted when the changes are collected;
+     * changes of the same value collected again before they were written are only written once.
+     *
+     * @param rowsChanged the number of changed statistic values that were collected for writing to the database
+     * @param rowsSkipped the number of unchanged statistic values that were not written to the database
+     * @param valuesBuffered the number of changed statistic values currently waiting to be written
+     */
+    public record UpdateStatistics(long rowsChanged, long rowsSkipped, int valuesBuffered) {}
+
+    /**
+     * Returns the number of rows collected and skipped by {@link #updatePlayerStats(Collection)} so far.
+     *
+     * @return an {@code UpdateStatistics} object containing the row counts
+     */
+    @NotNull
+    public UpdateStatistics getUpdateStatistics() {
+        return new UpdateStatistics(changeTracker.getRowsChanged(), changeTracker.getRowsSkipped(), writeBuffer.size());
+    }
 
     /**
      * Returns a map containing player UUIDs and their associated values for the specified statistic from the database.
@@ -233,23 +1114,160 @@ public final class DatabaseManager {
      */
     @NotNull
     public Object2IntMap<UUID> getStatForAllPlayers(@NotNull final Stat<?> stat) {
-        return queryService.query(GET_STAT_VALUES_SQL, statement -> {
-            statement.setString(1, stat.getName());
-            try (var resultSet = statement.executeQuery()) {
-                var playerStatValues = new Object2IntOpenHashMap<UUID>();
-                while (resultSet.next()) {
-                    var playerUUID = UUID.fromString(resultSet.getString(PLAYER_UUID_COLUMN.name));
-                    playerStatValues.put(playerUUID, resultSet.getInt(VALUE_COLUMN.name));
-                }
-                return playerStatValues;
+        return getStatsForAllPlayers(List.of(stat)).get(0);
+    }
+
+    /**
+     * Returns maps containing player UUIDs and their associated values for each of the specified statistics.
+     *
+     * @param stats the {@link Stat}s for which to retrieve all players' values
+     * @return a list containing an {@link Object2IntMap} with player UUIDs as keys and their corresponding statistic values
+     *         for each statistic, in the same order as {@code stats}
+     */
+    @NotNull
+    public List<Object2IntMap<UUID>> getStatsForAllPlayers(@NotNull final List<? extends Stat<?>> stats) {
+        long startTime = System.nanoTime();
+        var statValues = new ArrayList<Object2IntMap<UUID>>(stats.size());
+        for (int index = 0; index < stats.size(); index++) {
+            statValues.add(new Object2IntOpenHashMap<>());
+        }
+
+        // players usually appear once per statistic, so each UUID is only parsed once per query
+        var playerUUIDs = new HashMap<String, UUID>();
+        forEachStatValue(stats.stream().map(Stat::getName).toList(), (statIndex, playerUUID, value) ->
+                statValues.get(statIndex).put(playerUUIDs.computeIfAbsent(playerUUID, UUID::fromString), value));
+
+        GET_STATS_FOR_ALL_PLAYERS_TIME.record(System.nanoTime() - startTime);
+        return statValues;
+    }
+
+    /**
+     * Receives a single statistic value of a player read from the database.
+     */
+    @FunctionalInterface
+    public interface StatValueConsumer {
+        /**
+         * @param statIndex the index of the statistic in the list of requested statistics
+         * @param playerUUID the UUID of the player in its string representation, as stored in the database
+         * @param value the value of the statistic
+         */
+        void accept(int statIndex, @NotNull String playerUUID, int value);
+    }
+
+    /**
+     * Represents a page of a statistic's leaderboard, which is sorted by value and then by player.
+     *
+     * @param offset the number of values to skip
+     * @param limit the maximum number of values to return
+     * @param ascending whether the values are sorted in ascending instead of descending order
+     * @throws IllegalArgumentException if the {@code offset} or {@code limit} is negative
+     */
+    public record StatPage(int offset, int limit, boolean ascending) {
+        /**
+         * A page containing all values in descending order.
+         */
+        public static final StatPage ALL = new StatPage(0, Integer.MAX_VALUE, false);
+
+        public StatPage {
+            if (offset < 0 || limit < 0) {
+                throw new IllegalArgumentException("Invalid page with offset %d and limit %d".formatted(offset, limit));
             }
-        });
+        }
+    }
+
+    /**
+     * Selects whose statistic values are read.
+     */
+    public enum StatScope {
+        /**
+         * The values of the server this extension is running on.
+         */
+        SERVER,
+        /**
+         * The sums of the values of all servers sharing the database. Values written by other servers
+         * are included within {@link NetworkTotals#REFRESH_SECONDS}.
+         */
+        NETWORK;
+
+        /**
+         * @return the name of this scope as used in requests and commands
+         */
+        @NotNull
+        public String getName() {
+            return name().toLowerCase(Locale.ROOT);
+        }
+    }
+
+    @NotNull
+    private ColumnarStatStore getStore(@NotNull StatScope scope) {
+        return switch (scope) {
+            case SERVER -> statStore;
+            case NETWORK -> networkTotals.getStore();
+        };
+    }
+
+    /**
+     * Passes all players' values of the specified statistics to the {@code consumer} while they are read
+     * from the in-memory statistic store, without collecting them first. The values are grouped by statistic,
+     * in the same order as {@code statNames}, so that they can be written to a stream as they arrive.
+     * Statistics without any values are skipped.
+     *
+     * @param statNames the names of the statistics for which to read all players' values
+     * @param consumer the consumer receiving the index of the statistic in {@code statNames}, the player UUID and the value
+     */
+    public void forEachStatValue(@NotNull final List<String> statNames, @NotNull final StatValueConsumer consumer) {
+        forEachStatValue(statNames, StatPage.ALL, consumer);
+    }
+
+    /**
+     * Passes a page of the values of each of the specified statistics to the {@code consumer} while they are read
+     * from the in-memory statistic store, without collecting them first. The values are grouped by statistic,
+     * in the same order as {@code statNames}, and sorted as specified by the {@code page} within each statistic.
+     * Statistics without any values are skipped.
+     * <p>
+     * The database is not accessed. Each statistic's values are kept sorted in memory as they are written,
+     * so the cost depends on the page size rather than on the total number of players, apart from a logarithmic
+     * search for the start of the page.
+     *
+     * @param statNames the names of the statistics for which to read the values
+     * @param page the page of each statistic's values to read
+     * @param consumer the consumer receiving the index of the statistic in {@code statNames}, the player UUID and the value
+     */
+    public void forEachStatValue(@NotNull final List<String> statNames, @NotNull final StatPage page, @NotNull final StatValueConsumer consumer) {
+        forEachStatValue(statNames, page, StatScope.SERVER, consumer);
     }
 
-    private static final String GET_STAT_VALUES_SQL =
-            "SELECT " + PLAYER_UUID_COLUMN + ", " + VALUE_COLUMN +
-            " FROM " + INGAME_STATS_TABLE +
-            " WHERE " + STAT_NAME_COLUMN + " = ?";
+    /**
+     * Passes a page of the values of each of the specified statistics within the given scope to the {@code consumer},
+     * like {@link #forEachStatValue(List, StatPage, StatValueConsumer)}.
+     *
+     * @param statNames the names of the statistics for which to read the values
+     * @param page the page of each statistic's values to read
+     * @param scope whether to read this server's values or the network-wide totals
+     * @param consumer the consumer receiving the index of the statistic in {@code statNames}, the player UUID and the value
+     */
+    public void forEachStatValue(@NotNull final List<String> statNames, @NotNull final StatPage page,
+                                 @NotNull final StatScope scope, @NotNull final StatValueConsumer consumer) {
+        long startTime = System.nanoTime();
+        var statIds = new int[statNames.size()];
+        boolean anyStatKnown = false;
+        for (int index = 0; index < statNames.size(); index++) {
+            var statId = statDictionary.getId(statNames.get(index));
+            statIds[index] = statId.orElse(-1);
+            anyStatKnown |= statId.isPresent();
+        }
+        if (!anyStatKnown || page.limit() <= 0) return;
+
+        var store = getStore(scope);
+        for (int statIndex = 0; statIndex < statIds.length; statIndex++) {
+            int finalStatIndex = statIndex;
+            store.forEachValue(statIds[statIndex], page, (playerId, value) -> {
+                var playerUUID = playerDictionary.getKeyOrNull(playerId);
+                if (playerUUID != null) consumer.accept(finalStatIndex, playerUUID, value);
+            });
+        }
+        FOR_EACH_STAT_VALUE_TIME.record(System.nanoTime() - startTime);
+    }
 
     /**
      * Represents a ranked statistic for a player, including the statistic name, value,
@@ -262,8 +1280,8 @@ public final class DatabaseManager {
     public record RankedStatistic(@NotBlank String statName, int statValue, int rank) {}
 
     /**
-     * Retrieves a list of {@code RankedStatistic}s for a player.
-     * The returned list is ordered by the player's rank in ascending order,
+     * Retrieves a list of {@code RankedStatistic}s for a player from the in-memory statistic store,
+     * without accessing the database. The returned list is ordered by the player's rank in ascending order,
      * followed by the statistic values in descending order.
      *
      * @param playerUUID the UUID of the player to get the statistics for
@@ -271,29 +1289,136 @@ public final class DatabaseManager {
      */
     @NotNull
     public List<RankedStatistic> getPlayerTopStats(@NotNull final UUID playerUUID) {
-        return queryService.query(GET_PLAYER_TOP_STATS_SQL, statement -> {
-            statement.setString(1, playerUUID.toString());
-            try (var resultSet = statement.executeQuery()) {
-                var playerTopStats = new ArrayList<RankedStatistic>();
-                while (resultSet.next()) {
-                    var statName = resultSet.getString(STAT_NAME_COLUMN.name);
-                    var statValue = resultSet.getInt(VALUE_COLUMN.name);
-                    var rank = resultSet.getInt(CTE_RANK);
-                    playerTopStats.add(new RankedStatistic(statName, statValue, rank));
-                }
-                return playerTopStats;
-            }
-        });
+        return getPlayerTopStats(playerUUID, StatScope.SERVER);
+    }
+
+    /**
+     * Retrieves a list of {@code RankedStatistic}s for a player within the given scope,
+     * like {@link #getPlayerTopStats(UUID)}.
+     *
+     * @param playerUUID the UUID of the player to get the statistics for
+     * @param scope whether to read this server's values and ranks or the network-wide ones
+     * @return a list of the player's statistics as {@code RankedStatistic} objects
+     */
+    @NotNull
+    public List<RankedStatistic> getPlayerTopStats(@NotNull final UUID playerUUID, @NotNull final StatScope scope) {
+        long startTime = System.nanoTime();
+        var playerId = playerDictionary.getId(playerUUID.toString());
+        if (playerId.isEmpty()) return new ArrayList<>();
+
+        var playerTopStats = new ArrayList<RankedStatistic>();
+        getStore(scope).forEachRankedValue(playerId.getAsInt(), (statId, statValue, rank) ->
+                statDictionary.getKey(statId).ifPresent(statName -> playerTopStats.add(new RankedStatistic(statName, statValue, rank))));
+
+        playerTopStats.sort(Comparator.comparingInt(RankedStatistic::rank)
+                .thenComparing(Comparator.comparingInt(RankedStatistic::statValue).reversed()));
+
+        GET_PLAYER_TOP_STATS_TIME.record(System.nanoTime() - startTime);
+        return playerTopStats;
+    }
+
+    /**
+     * Returns the rank a value has on the leaderboard of a statistic within the given scope, which is one more than
+     * the number of greater values, so that equal values share a rank like in {@link #getPlayerTopStats(UUID, StatScope)}.
+     *
+     * @param statName the name of the statistic
+     * @param value the value to rank
+     * @param scope whether to rank among this server's values or the network-wide ones
+     * @return the rank of the value
+     */
+    public int getStatRank(@NotNull final String statName, final int value, @NotNull final StatScope scope) {
+        var statId = statDictionary.getId(statName);
+        return statId.isPresent() ? getStore(scope).getRank(statId.getAsInt(), value) : 1;
     }
 
-    private static final String RANKED_STATISTICS_CTE = "ranked_statistics";
-    private static final String CTE_RANK = "rank";
-    private static final String GET_PLAYER_TOP_STATS_SQL =
-            "WITH " + RANKED_STATISTICS_CTE + " AS (" +
-                    "SELECT *, RANK() OVER (PARTITION BY " + STAT_NAME_COLUMN + " ORDER BY " + VALUE_COLUMN + " DESC) AS " + CTE_RANK +
-                    " FROM " + INGAME_STATS_TABLE +
-            ")" +
-            " SELECT * FROM " + RANKED_STATISTICS_CTE +
-            " WHERE " + PLAYER_UUID_COLUMN + " = ?" +
-            " ORDER BY " + CTE_RANK + " ASC, " + VALUE_COLUMN + " DESC";
+    /**
+     * Represents the aggregate of all players' values of a statistic.
+     *
+     * @param count the number of players with a value
+     * @param sum the sum of the values
+     * @param min the smallest value, or {@code 0} if there are no values
+     * @param max the largest value, or {@code 0} if there are no values
+     */
+    public record StatAggregate(int count, long sum, int min, int max) {
+        /**
+         * The aggregate of a statistic without any values.
+         */
+        public static final StatAggregate EMPTY = new StatAggregate(0, 0, 0, 0);
+
+        /**
+         * @return the average value per player, or {@code 0} if there are no values
+         */
+        public double mean() {
+            return count > 0 ? (double) sum / count : 0;
+        }
+    }
+
+    /**
+     * Returns the count, sum, mean, minimum and maximum of the values of each of the specified statistics within
+     * the given scope. The aggregates are kept up to date by the in-memory statistic stores whenever a value changes,
+     * using the old and the new value, so this doesn't iterate over the values of the statistics.
+     *
+     * @param statNames the names of the statistics to aggregate
+     * @param scope whether to aggregate this server's values or the network-wide totals
+     * @return the aggregate of each statistic in the same order as {@code statNames},
+     *         which is {@link StatAggregate#EMPTY} for statistics without any values
+     */
+    @NotNull
+    public List<StatAggregate> getStatAggregates(@NotNull final List<String> statNames, @NotNull final StatScope scope) {
+        long startTime = System.nanoTime();
+        var store = getStore(scope);
+        var statAggregates = new ArrayList<StatAggregate>(statNames.size());
+        for (var statName : statNames) {
+            var statId = statDictionary.getId(statName);
+            statAggregates.add(statId.isPresent() ? store.getAggregate(statId.getAsInt()) : StatAggregate.EMPTY);
+        }
+        GET_STAT_AGGREGATES_TIME.record(System.nanoTime() - startTime);
+        return statAggregates;
+    }
+
+    /**
+     * Represents the distribution of all players' values of a statistic.
+     * <p>
+     * The histogram has {@link #HISTOGRAM_BUCKETS} buckets of exponentially growing width, so that it covers the
+     * whole range of values of every statistic with the same buckets: the first bucket counts the values less than
+     * {@code 1}, and each following bucket counts the values from its {@linkplain #getBucketLowerBound(int) lower bound}
+     * up to twice that, exclusive. The last bucket counts all values from {@code 2^30} upwards.
+     *
+     * @param count the number of players with a value
+     * @param quantileValues the value at each requested quantile, in the same order as the quantiles,
+     *                       or {@code 0} if there are no values
+     * @param bucketCounts the number of values in each histogram bucket
+     */
+    public record StatDistribution(int count, int @NotNull [] quantileValues, int @NotNull [] bucketCounts) {
+        public static final int HISTOGRAM_BUCKETS = Integer.SIZE;
+
+        /**
+         * @param bucket the index of the histogram bucket
+         * @return the smallest value counted by the histogram bucket
+         */
+        public static int getBucketLowerBound(int bucket) {
+            return bucket == 0 ? Integer.MIN_VALUE : 1 << (bucket - 1);
+        }
+    }
+
+    /**
+     * Returns the quantiles and the histogram of all players' values of a statistic within the given scope.
+     * Both are exact, as they are read from the ranks the in-memory statistic stores keep up to date on every write
+     * for the leaderboards, in {@code O(log n)} time per quantile and histogram bucket. This needs no memory
+     * besides the result, and doesn't iterate over, sort or copy the values of the statistic.
+     *
+     * @param statName the name of the statistic
+     * @param quantiles the quantiles to read, each between {@code 0} and {@code 1}, where the value at a quantile
+     *                  is the smallest value that at least that fraction of all values is less than or equal to
+     * @param scope whether to read the distribution of this server's values or of the network-wide totals
+     * @return the distribution of the values of the statistic
+     */
+    @NotNull
+    public StatDistribution getStatDistribution(@NotNull final String statName, final double @NotNull [] quantiles, @NotNull final StatScope scope) {
+        long startTime = System.nanoTime();
+        var statId = statDictionary.getId(statName);
+        var statDistribution = getStore(scope).getDistribution(statId.orElse(-1), quantiles);
+        GET_STAT_DISTRIBUTION_TIME.record(System.nanoTime() - startTime);
+        return statDistribution;
+    }
 }
@@ -0,0 +1,240 @@
+package io.github.kr8gz.plan_ingame_player_statistics_extension.database;
+
+import com.djrapitops.plan.query.QueryService;
+import it.unimi.dsi.fastutil.ints.Int2ObjectMap;
+import it.unimi.dsi.fastutil.ints.Int2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.objects.Object2IntMap;
+import it.unimi.dsi.fastutil.objects.Object2IntOpenHashMap;
+import org.apache.logging.log4j.core.config.plugins.validation.constraints.NotBlank;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Optional;
+import java.util.OptionalInt;
+
+/**
+ * A database table that maps unique string keys, such as statistic names or player UUIDs,
+ * to compact integer IDs, so that other tables can reference the keys by ID instead of repeating them in every row.
+ * <p>
+ * All mappings are cached in memory. IDs are assigned by the database when a key is first resolved,
+ * which keeps them consistent even if multiple servers write to the same database. Mappings inserted by a transaction
+ * are only cached once it has been committed, as the database may assign the IDs of a rolled back insert to other keys.
+ */
+final class DictionaryTable {
+    static final TableColumn ID_COLUMN = new TableColumn("id", "int");
+
+    final String tableName;
+    final TableColumn keyColumn;
+    private final SQLDialect dialect;
+
+    /**
+     * The cached key-to-ID mappings. Only accessed while holding the lock of this {@code DictionaryTable}.
+     */
+    private final Object2IntMap<String> ids = new Object2IntOpenHashMap<>();
+
+    /**
+     * The cached ID-to-key mappings, the inverse of {@link #ids}. Only accessed while holding the lock of this {@code DictionaryTable}.
+     */
+    private final Int2ObjectMap<String> keys = new Int2ObjectOpenHashMap<>();
+
+    /**
+     * Creates a new {@code DictionaryTable} with an empty cache.
+     *
+     * @param tableName the name of the database table
+     * @param keyColumn the column containing the unique keys
+     * @param dialect the SQL dialect of the database
+     */
+    DictionaryTable(@NotBlank String tableName, @NotNull TableColumn keyColumn, @NotNull SQLDialect dialect) {
+        this.tableName = tableName;
+        this.keyColumn = keyColumn;
+        this.dialect = dialect;
+    }
+
+    /**
+     * @return an SQL statement for creating this table if it doesn't exist yet
+     */
+    String createTableSql() {
+        return "CREATE TABLE IF NOT EXISTS " + tableName + "(" +
+                ID_COLUMN + " " + dialect.autoIncrementPrimaryKey + ", " +
+                keyColumn.withType() + " NOT NULL UNIQUE" +
+                ")";
+    }
+
+    /**
+     * @return an SQL statement for dropping this table if it exists
+     */
+    String dropTableSql() {
+        return "DROP TABLE IF EXISTS " + tableName;
+    }
+
+    /**
+     * @return an SQL statement with a single key parameter for inserting a key into this table,
+     *         which does nothing if the key is already present
+     */
+    String insertKeySql() {
+        return dialect.insertIgnoreInto + " " + tableName + " (" + keyColumn + ") VALUES (?)";
+    }
+
+    /**
+     * Returns an SQL statement that inserts all distinct keys found in a column of another table into this table.
+     * Keys that are already present are skipped.
+     *
+     * @param sourceTable the table to copy the keys from
+     * @param sourceColumn the column containing the keys in the source table
+     * @return an SQL statement for copying keys into this table
+     */
+    String copyKeysSql(@NotBlank String sourceTable, @NotNull TableColumn sourceColumn) {
+        return dialect.insertIgnoreInto + " " + tableName + " (" + keyColumn + ")" +
+                " SELECT DISTINCT " + sourceColumn + " FROM " + sourceTable;
+    }
+
+    /**
+     * Replaces the cached mappings with all mappings currently stored in the database.
+     *
+     * @param queryService the {@link QueryService} instance for accessing the database
+     */
+    void load(@NotNull QueryService queryService) {
+        var storedIds = queryService.query("SELECT " + ID_COLUMN + ", " + keyColumn + " FROM " + tableName, statement -> {
+            try (var resultSet = statement.executeQuery()) {
+                var result = new Object2IntOpenHashMap<String>();
+                while (resultSet.next()) {
+                    result.put(resultSet.getString(keyColumn.name()), resultSet.getInt(ID_COLUMN.name()));
+                }
+                return result;
+            }
+        });
+
+        synchronized (this) {
+            ids.clear();
+            keys.clear();
+            storedIds.forEach(this::cache);
+        }
+    }
+
+    /**
+     * Returns the cached ID of a key without accessing the database.
+     *
+     * @param key the key to look up
+     * @return an optional containing the ID of the key, or an empty optional if the key is not known yet
+     */
+    synchronized OptionalInt getId(@NotNull String key) {
+        return ids.containsKey(key) ? OptionalInt.of(ids.getInt(key)) : OptionalInt.empty();
+    }
+
+    /**
+     * Returns the cached key of an ID without accessing the database.
+     *
+     * @param id the ID to look up
+     * @return an optional containing the key with this ID, or an empty optional if the ID is not known
+     */
+    synchronized Optional<String> getKey(int id) {
+        return Optional.ofNullable(keys.get(id));
+    }
+
+    /**
+     * Returns the cached key of an ID without accessing the database, like {@link #getKey(int)},
+     * but without allocating, for looking up many IDs in a row.
+     *
+     * @param id the ID to look up
+     * @return the key with this ID, or {@code null} if the ID is not known
+     */
+    @Nullable
+    synchronized String getKeyOrNull(int id) {
+        return keys.get(id);
+    }
+
+    /**
+     * The IDs of keys resolved by {@link #resolveIds(Connection, Collection)}.
+     *
+     * @param ids the ID of every resolved key
+     * @param newIds the IDs of the resolved keys that weren't cached yet, to be cached with {@link #cacheNewIds(ResolvedIds)}
+     *               once the resolving transaction has been committed
+     */
+    record ResolvedIds(@NotNull Object2IntMap<String> ids, @NotNull Object2IntMap<String> newIds) {
+        /**
+         * @param key a resolved key
+         * @return the ID of the key
+         */
+        int getInt(@NotNull String key) {
+            return ids.getInt(key);
+        }
+    }
+
+    /**
+     * Returns the IDs of all given keys, inserting keys that are not known yet into the database.
+     * Must be called from a thread that is allowed to write to the database, using a connection
+     * provided by Plan's {@link QueryService}.
+     * <p>
+     * Keys that weren't cached yet are not cached by this method, as the transaction inserting them may still be
+     * rolled back. Their IDs must be cached with {@link #cacheNewIds(ResolvedIds)} once it has been committed.
+     *
+     * @param connection the database connection to use
+     * @param keysToResolve the keys to resolve
+     * @return the ID of every given key, and which of them weren't cached yet
+     * @throws SQLException if an SQL exception occurs while inserting or querying keys
+     */
+    @NotNull
+    ResolvedIds resolveIds(@NotNull Connection connection, @NotNull Collection<String> keysToResolve) throws SQLException {
+        var result = new Object2IntOpenHashMap<String>(keysToResolve.size());
+        var missingKeys = new ArrayList<String>();
+        synchronized (this) {
+            for (String key : keysToResolve) {
+                if (ids.containsKey(key)) {
+                    result.put(key, ids.getInt(key));
+                } else {
+                    missingKeys.add(key);
+                }
+            }
+        }
+        var newIds = new Object2IntOpenHashMap<String>(missingKeys.size());
+        if (missingKeys.isEmpty()) return new ResolvedIds(result, newIds);
+
+        try (var insertStatement = connection.prepareStatement(insertKeySql())) {
+            for (String key : missingKeys) {
+                insertStatement.setString(1, key);
+                insertStatement.addBatch();
+            }
+            insertStatement.executeBatch();
+        }
+
+        try (var selectStatement = connection.prepareStatement("SELECT " + ID_COLUMN + " FROM " + tableName + " WHERE " + keyColumn + " = ?")) {
+            for (String key : missingKeys) {
+                selectStatement.setString(1, key);
+                try (var resultSet = selectStatement.executeQuery()) {
+                    if (!resultSet.next()) throw new SQLException("Key %s was not inserted into %s".formatted(key, tableName));
+                    int id = resultSet.getInt(ID_COLUMN.name());
+                    result.put(key, id);
+                    newIds.put(key, id);
+                }
+            }
+        }
+        return new ResolvedIds(result, newIds);
+    }
+
+    /**
+     * Caches the mappings of keys that weren't cached yet when they were resolved.
+     * Must only be called once the transaction that resolved them has been committed.
+     *
+     * @param resolvedIds the resolved IDs
+     */
+    synchronized void cacheNewIds(@NotNull ResolvedIds resolvedIds) {
+        resolvedIds.newIds().forEach(this::cache);
+    }
+
+    /**
+     * Removes all cached mappings.
+     */
+    synchronized void clear() {
+        ids.clear();
+        keys.clear();
+    }
+
+    private void cache(String key, int id) {
+        ids.put(key, id);
+        keys.put(id, key);
+    }
+}
@@ -0,0 +1,255 @@
+package io.github.kr8gz.plan_ingame_player_statistics_extension.database;
+
+import com.djrapitops.plan.query.QueryService;
+import io.github.kr8gz.plan_ingame_player_statistics_extension.PlanInGamePlayerStatisticsExtension;
+import it.unimi.dsi.fastutil.ints.IntOpenHashSet;
+import it.unimi.dsi.fastutil.ints.IntSet;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+
+/**
+ * Mirrors the totals table, which holds the sums of each player's statistic values over all servers sharing
+ * the database, in memory to answer reads of network-wide values and ranks without accessing the database.
+ * <p>
+ * This server's writes are added as they happen, while the totals changed by other servers are read every
+ * {@link #REFRESH_SECONDS} by a separate thread. Only the totals modified since the last refresh are read,
+ * which the index of the totals table by modification time serves without scanning the whole table.
+ */
+final class NetworkTotals {
+    static final String STAT_TOTALS_TABLE = "plan_ingame_stat_totals";
+    private static final TableColumn PLAYER_ID_COLUMN = new TableColumn("player_id", "int");
+    private static final TableColumn STAT_ID_COLUMN = new TableColumn("stat_id", "int");
+    static final TableColumn TOTAL_COLUMN = new TableColumn("total", "bigint");
+    static final TableColumn UPDATED_AT_COLUMN = new TableColumn("updated_at", "bigint");
+
+    /**
+     * The index of the totals table by modification time, so that the totals changed by other servers can be read
+     * without scanning the whole table.
+     */
+    static final String STAT_TOTALS_UPDATED_INDEX = "plan_ingame_stat_totals_updated";
+
+    /**
+     * The interval at which the totals changed by other servers are read into the {@link #store}.
+     */
+    static final long REFRESH_SECONDS = 30;
+
+    /**
+     * How far back before the latest modification time already read the totals are read again, to allow for
+     * the clocks of servers sharing the database not being exactly in sync and for writes committing late.
+     */
+    private static final long REFRESH_OVERLAP_MILLIS = TimeUnit.MINUTES.toMillis(2);
+
+    private final QueryService queryService;
+    private final DictionaryTable playerDictionary;
+    private final DictionaryTable statDictionary;
+    private final BooleanSupplier idsCurrent;
+    private final Consumer<List<UUID>> changeListener;
+
+    private final ColumnarStatStore store = new ColumnarStatStore();
+
+    /**
+     * The latest modification time read from the totals table. Only accessed on the {@link #refreshExecutor} thread
+     * once this {@code NetworkTotals} has been started.
+     */
+    private long updatedAt;
+
+    private final ScheduledExecutorService refreshExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        var thread = new Thread(runnable, PlanInGamePlayerStatisticsExtension.NAME + " Network Refresh");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * Creates a new {@code NetworkTotals}, which is empty until it has been loaded.
+     *
+     * @param queryService the {@link QueryService} instance for accessing the database
+     * @param playerDictionary the dictionary of player IDs
+     * @param statDictionary the dictionary of statistic IDs
+     * @param idsCurrent checks before each refresh whether the IDs cached in memory are still valid,
+     *                   skipping the refresh if they aren't
+     * @param changeListener receives the UUIDs of the players whose totals were changed by other servers
+     */
+    NetworkTotals(@NotNull QueryService queryService, @NotNull DictionaryTable playerDictionary, @NotNull DictionaryTable statDictionary,
+                  @NotNull BooleanSupplier idsCurrent, @NotNull Consumer<List<UUID>> changeListener) {
+        this.queryService = queryService;
+        this.playerDictionary = playerDictionary;
+        this.statDictionary = statDictionary;
+        this.idsCurrent = idsCurrent;
+        this.changeListener = changeListener;
+    }
+
+    static final String CREATE_STAT_TOTALS_TABLE_SQL =
+            "CREATE TABLE IF NOT EXISTS " + STAT_TOTALS_TABLE + "(" +
+                    PLAYER_ID_COLUMN.withType() + ", " +
+                    STAT_ID_COLUMN.withType() + ", " +
+                    TOTAL_COLUMN.withType() + ", " +
+                    UPDATED_AT_COLUMN.withType() + ", " +
+                    "PRIMARY KEY(" + PLAYER_ID_COLUMN + ", " + STAT_ID_COLUMN + ")" +
+            ")";
+
+    static final String CREATE_STAT_TOTALS_UPDATED_INDEX_SQL =
+            "CREATE INDEX " + STAT_TOTALS_UPDATED_INDEX + " ON " + STAT_TOTALS_TABLE + " (" + UPDATED_AT_COLUMN + ")";
+
+    static final String DROP_STAT_TOTALS_TABLE_SQL =
+            "DROP TABLE IF EXISTS " + STAT_TOTALS_TABLE;
+
+    /**
+     * Returns a statement that sums the values of all servers into the totals table, skipping totals that already exist.
+     * Only used when the totals table is created and when a player's statistics files are imported; all other writes
+     * adjust the totals incrementally. The first parameter is the modification time of the inserted totals.
+     *
+     * @param dialect the SQL dialect of the database
+     * @param playerFilter an SQL condition appended to the {@code WHERE} clause, which may add further parameters
+     * @return the statement filling the totals table
+     */
+    @NotNull
+    static String fillStatTotalsSql(@NotNull SQLDialect dialect, @NotNull String playerFilter) {
+        return dialect.insertIgnoreInto + " " + STAT_TOTALS_TABLE +
+                " (" + PLAYER_ID_COLUMN + ", " + STAT_ID_COLUMN + ", " + TOTAL_COLUMN + ", " + UPDATED_AT_COLUMN + ")" +
+                " SELECT " + PLAYER_ID_COLUMN + ", " + STAT_ID_COLUMN + ", SUM(" + DatabaseManager.VALUE_COLUMN + "), ?" +
+                " FROM " + DatabaseManager.STAT_VALUES_TABLE +
+                (playerFilter.isEmpty() ? "" : " WHERE " + playerFilter) +
+                " GROUP BY " + PLAYER_ID_COLUMN + ", " + STAT_ID_COLUMN;
+    }
+
+    /**
+     * @return the in-memory store of the network-wide totals
+     */
+    @NotNull
+    ColumnarStatStore getStore() {
+        return store;
+    }
+
+    /**
+     * Fills the {@link #store} with all totals currently stored in the database.
+     */
+    void load() {
+        updatedAt = 0;
+        int totalCount = readTotals(0).size();
+        PlanInGamePlayerStatisticsExtension.LOGGER.info("Loaded {} network-wide player statistic totals into memory", totalCount);
+    }
+
+    /**
+     * Starts reading the totals changed by other servers at a fixed interval.
+     */
+    void start() {
+        refreshExecutor.scheduleWithFixedDelay(this::refresh, REFRESH_SECONDS, REFRESH_SECONDS, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Adds a difference written by this server to a player's total. Called once the write has been committed.
+     *
+     * @param statId the ID of the statistic
+     * @param playerId the ID of the player
+     * @param delta the difference between the written and the previous value
+     */
+    void add(int statId, int playerId, long delta) {
+        store.put(statId, playerId, saturatedTotal(store.get(statId, playerId, 0) + delta));
+    }
+
+    /**
+     * Removes all totals of a player.
+     *
+     * @param playerId the ID of the player
+     */
+    void removePlayer(int playerId) {
+        store.removePlayer(playerId);
+    }
+
+    /**
+     * Discards all totals held in memory.
+     */
+    void clear() {
+        store.clear();
+    }
+
+    /**
+     * Stops reading the totals changed by other servers.
+     */
+    void close() {
+        refreshExecutor.shutdownNow();
+    }
+
+    /**
+     * Reads the totals changed by other servers since they were last read into the {@link #store},
+     * and passes the players whose totals have changed to the {@link #changeListener}.
+     */
+    private void refresh() {
+        try {
+            if (!idsCurrent.getAsBoolean()) return;
+
+            var changedPlayerIds = readTotals(updatedAt - REFRESH_OVERLAP_MILLIS);
+            if (changedPlayerIds.isEmpty()) return;
+
+            var changedPlayers = new ArrayList<UUID>(changedPlayerIds.size());
+            for (int playerId : changedPlayerIds) {
+                var playerUUID = playerDictionary.getKeyOrNull(playerId);
+                if (playerUUID != null) changedPlayers.add(UUID.fromString(playerUUID));
+            }
+            changeListener.accept(changedPlayers);
+        } catch (Exception e) {
+            PlanInGamePlayerStatisticsExtension.LOGGER.error("Exception occurred while reading network-wide player statistic totals", e);
+        }
+    }
+
+    /**
+     * Reads the totals modified at or after the given time into the {@link #store}. Players and statistics
+     * registered by other servers in the meantime are loaded into the dictionaries first, so that they can be read.
+     *
+     * @param updatedSince the earliest modification time of the totals to read, in milliseconds since the epoch
+     * @return the IDs of the players whose totals differed from the {@code store}
+     */
+    private IntSet readTotals(long updatedSince) {
+        var changedPlayerIds = new IntOpenHashSet();
+        boolean[] unknownIds = new boolean[1];
+        queryService.query(GET_CHANGED_STAT_TOTALS_SQL, statement -> {
+            statement.setLong(1, updatedSince);
+            try (var resultSet = statement.executeQuery()) {
+                while (resultSet.next()) {
+                    int playerId = resultSet.getInt(PLAYER_ID_COLUMN.name());
+                    int statId = resultSet.getInt(STAT_ID_COLUMN.name());
+                    int total = saturatedTotal(resultSet.getLong(TOTAL_COLUMN.name()));
+                    updatedAt = Math.max(updatedAt, resultSet.getLong(UPDATED_AT_COLUMN.name()));
+
+                    // the default differs from the total, so that totals missing from the store count as changed
+                    if (store.get(statId, playerId, total - 1) != total) {
+                        store.put(statId, playerId, total);
+                        changedPlayerIds.add(playerId);
+                        unknownIds[0] |= playerDictionary.getKeyOrNull(playerId) == null || statDictionary.getKeyOrNull(statId) == null;
+                    }
+                }
+                return null;
+            }
+        });
+
+        if (unknownIds[0]) {
+            playerDictionary.load(queryService);
+            statDictionary.load(queryService);
+        }
+        return changedPlayerIds;
+    }
+
+    private static final String GET_CHANGED_STAT_TOTALS_SQL =
+            "SELECT " + PLAYER_ID_COLUMN + ", " + STAT_ID_COLUMN + ", " + TOTAL_COLUMN + ", " + UPDATED_AT_COLUMN +
+            " FROM " + STAT_TOTALS_TABLE +
+            " WHERE " + UPDATED_AT_COLUMN + " >= ?";
+
+    /**
+     * Converts a total to the {@code int} range of the in-memory store, which network-wide totals of
+     * statistics counting up quickly, such as the play time in ticks, could exceed in theory.
+     *
+     * @param total the total as stored in the database
+     * @return the total, limited to the {@code int} range
+     */
+    private static int saturatedTotal(long total) {
+        return (int) Math.max(Integer.MIN_VALUE, Math.min(Integer.MAX_VALUE, total));
+    }
+}
@@ -0,0 +1,334 @@
+package io.github.kr8gz.plan_ingame_player_statistics_extension.database;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.function.LongConsumer;
+
+/**
+ * A multiset of {@code long} values that can count the values greater than a given value in {@code O(log n)} time,
+ * which is what determines the rank of a value on a leaderboard. It can also select the value at a given position
+ * in sorted order in {@code O(log n)} time, which answers exact quantiles of the values without sorting them,
+ * and walk the values in sorted order from any position, which reads a page of a leaderboard.
+ * <p>
+ * Implemented as a treap whose nodes are stored in parallel primitive arrays, so that no objects are allocated
+ * per value. Each node holds a distinct value together with its multiplicity and the total multiplicity of its subtree.
+ * This class is not thread-safe.
+ */
+final class OrderStatisticTree {
+    private static final int NIL = -1;
+    private static final int INITIAL_CAPACITY = 16;
+
+    private long[] values = new long[INITIAL_CAPACITY];
+    private int[] counts = new int[INITIAL_CAPACITY];
+    private int[] sizes = new int[INITIAL_CAPACITY];
+    private int[] lefts = new int[INITIAL_CAPACITY];
+    private int[] rights = new int[INITIAL_CAPACITY];
+    private int[] priorities = new int[INITIAL_CAPACITY];
+
+    private final SplittableRandom random = new SplittableRandom();
+
+    private int root = NIL;
+    private int nodeCount;
+
+    /**
+     * The head of the list of freed nodes, which are linked through {@link #lefts}.
+     */
+    private int freeNode = NIL;
+
+    /**
+     * The nodes whose values are yet to be visited by {@link #forEachInOrder}, reused across calls.
+     */
+    private int[] walkStack = new int[INITIAL_CAPACITY];
+
+    /**
+     * Adds one occurrence of a value.
+     *
+     * @param value the value to add
+     */
+    void add(long value) {
+        root = insert(root, value);
+    }
+
+    /**
+     * Removes one occurrence of a value. Does nothing if the value is not contained.
+     *
+     * @param value the value to remove
+     */
+    void remove(long value) {
+        root = delete(root, value);
+    }
+
+    /**
+     * @return the total number of values, counting duplicates
+     */
+    int size() {
+        return size(root);
+    }
+
+    /**
+     * Returns the smallest value by following the left spine of the tree, in {@code O(log n)} time.
+     * Must only be called if the tree is not empty.
+     *
+     * @return the smallest value
+     */
+    long min() {
+        int node = root;
+        while (lefts[node] != NIL) node = lefts[node];
+        return values[node];
+    }
+
+    /**
+     * Returns the largest value by following the right spine of the tree, in {@code O(log n)} time.
+     * Must only be called if the tree is not empty.
+     *
+     * @return the largest value
+     */
+    long max() {
+        int node = root;
+        while (rights[node] != NIL) node = rights[node];
+        return values[node];
+    }
+
+    /**
+     * Counts the values that are strictly greater than the given value.
+     * The rank of a value on a leaderboard sorted in descending order is one more than this count.
+     *
+     * @param value the value to compare with
+     * @return the number of values greater than {@code value}
+     */
+    int countGreaterThan(long value) {
+        int result = 0;
+        int node = root;
+        while (node != NIL) {
+            if (value < values[node]) {
+                result += counts[node] + size(rights[node]);
+                node = lefts[node];
+            } else if (value > values[node]) {
+                node = rights[node];
+            } else {
+                return result + size(rights[node]);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Counts the values that are strictly less than the given value.
+     *
+     * @param value the value to compare with
+     * @return the number of values less than {@code value}
+     */
+    int countLessThan(long value) {
+        int result = 0;
+        int node = root;
+        while (node != NIL) {
+            if (value > values[node]) {
+                result += counts[node] + size(lefts[node]);
+                node = rights[node];
+            } else if (value < values[node]) {
+                node = lefts[node];
+            } else {
+                return result + size(lefts[node]);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns the value at a position of the values sorted in ascending order, counting duplicates.
+     *
+     * @param index the position of the value, from {@code 0} to {@link #size()} exclusive
+     * @return the value at the position
+     * @throws IndexOutOfBoundsException if the index is out of range
+     */
+    long select(int index) {
+        if (index < 0 || index >= size()) throw new IndexOutOfBoundsException(index);
+
+        int node = root;
+        while (true) {
+            int leftSize = size(lefts[node]);
+            if (index < leftSize) {
+                node = lefts[node];
+            } else if (index < leftSize + counts[node]) {
+                return values[node];
+            } else {
+                index -= leftSize + counts[node];
+                node = rights[node];
+            }
+        }
+    }
+
+    /**
+     * Passes the values at a range of positions to the {@code consumer}, counting duplicates, in ascending order
+     * starting from the smallest value, or in descending order starting from the largest value. Takes
+     * {@code O(log n + count)} time, as the tree is only searched for the first position and then walked in order.
+     * The tree must not be modified by the {@code consumer}.
+     *
+     * @param fromIndex the position of the first value in the chosen order
+     * @param count the maximum number of values to pass
+     * @param ascending whether to walk the values in ascending instead of descending order
+     * @param consumer the consumer receiving the values
+     * @throws IndexOutOfBoundsException if the {@code fromIndex} is negative
+     */
+    void forEachInOrder(int fromIndex, int count, boolean ascending, LongConsumer consumer) {
+        if (fromIndex < 0) throw new IndexOutOfBoundsException(fromIndex);
+        int remaining = (int) Math.min(count, (long) size() - fromIndex);
+        if (remaining <= 0) return;
+
+        // walking in descending order is the mirror image of walking in ascending order
+        int[] nearChildren = ascending ? lefts : rights;
+        int[] farChildren = ascending ? rights : lefts;
+
+        // descend to the first position, keeping the nodes that come after it on the stack
+        int depth = 0;
+        int skipped = fromIndex;
+        int node = root;
+        while (true) {
+            int nearSize = size(nearChildren[node]);
+            if (skipped < nearSize) {
+                depth = push(depth, node);
+                node = nearChildren[node];
+            } else if (skipped < nearSize + counts[node]) {
+                depth = push(depth, node);
+                skipped -= nearSize;
+                break;
+            } else {
+                skipped -= nearSize + counts[node];
+                node = farChildren[node];
+            }
+        }
+
+        while (remaining > 0) {
+            node = walkStack[--depth];
+            int occurrences = Math.min(counts[node] - skipped, remaining);
+            for (int occurrence = 0; occurrence < occurrences; occurrence++) {
+                consumer.accept(values[node]);
+            }
+            remaining -= occurrences;
+            skipped = 0;
+
+            for (int child = farChildren[node]; child != NIL; child = nearChildren[child]) {
+                depth = push(depth, child);
+            }
+        }
+    }
+
+    private int push(int depth, int node) {
+        if (depth == walkStack.length) walkStack = Arrays.copyOf(walkStack, depth * 2);
+        walkStack[depth] = node;
+        return depth + 1;
+    }
+
+    /**
+     * Removes all values.
+     */
+    void clear() {
+        root = NIL;
+        nodeCount = 0;
+        freeNode = NIL;
+    }
+
+    private int size(int node) {
+        return node == NIL ? 0 : sizes[node];
+    }
+
+    private void updateSize(int node) {
+        sizes[node] = counts[node] + size(lefts[node]) + size(rights[node]);
+    }
+
+    private int insert(int node, long value) {
+        if (node == NIL) return createNode(value);
+
+        // the child is assigned through a local variable, as inserting may replace the arrays while growing them
+        if (value < values[node]) {
+            int left = insert(lefts[node], value);
+            lefts[node] = left;
+            if (priorities[left] > priorities[node]) node = rotateRight(node);
+        } else if (value > values[node]) {
+            int right = insert(rights[node], value);
+            rights[node] = right;
+            if (priorities[right] > priorities[node]) node = rotateLeft(node);
+        } else {
+            counts[node]++;
+        }
+        updateSize(node);
+        return node;
+    }
+
+    private int delete(int node, long value) {
+        if (node == NIL) return NIL;
+
+        if (value < values[node]) {
+            lefts[node] = delete(lefts[node], value);
+        } else if (value > values[node]) {
+            rights[node] = delete(rights[node], value);
+        } else if (counts[node] > 1) {
+            counts[node]--;
+        } else if (lefts[node] == NIL || rights[node] == NIL) {
+            int child = lefts[node] == NIL ? rights[node] : lefts[node];
+            freeNode(node);
+            return child;
+        } else if (priorities[lefts[node]] > priorities[rights[node]]) {
+            // rotate the node down until it has at most one child, then remove it
+            node = rotateRight(node);
+            rights[node] = delete(rights[node], value);
+        } else {
+            node = rotateLeft(node);
+            lefts[node] = delete(lefts[node], value);
+        }
+        updateSize(node);
+        return node;
+    }
+
+    private int rotateRight(int node) {
+        int left = lefts[node];
+        lefts[node] = rights[left];
+        rights[left] = node;
+        updateSize(node);
+        updateSize(left);
+        return left;
+    }
+
+    private int rotateLeft(int node) {
+        int right = rights[node];
+        rights[node] = lefts[right];
+        lefts[right] = node;
+        updateSize(node);
+        updateSize(right);
+        return right;
+    }
+
+    private int createNode(long value) {
+        int node;
+        if (freeNode != NIL) {
+            node = freeNode;
+            freeNode = lefts[node];
+        } else {
+            if (nodeCount == values.length) grow();
+            node = nodeCount++;
+        }
+
+        values[node] = value;
+        counts[node] = 1;
+        sizes[node] = 1;
+        lefts[node] = NIL;
+        rights[node] = NIL;
+        priorities[node] = random.nextInt();
+        return node;
+    }
+
+    private void freeNode(int node) {
+        lefts[node] = freeNode;
+        freeNode = node;
+    }
+
+    private void grow() {
+        int capacity = values.length * 2;
+        values = Arrays.copyOf(values, capacity);
+        counts = Arrays.copyOf(counts, capacity);
+        sizes = Arrays.copyOf(sizes, capacity);
+        lefts = Arrays.copyOf(lefts, capacity);
+        rights = Arrays.copyOf(rights, capacity);
+        priorities = Arrays.copyOf(priorities, capacity);
+    }
+}
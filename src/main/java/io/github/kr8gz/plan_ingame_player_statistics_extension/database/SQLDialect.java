@@ -0,0 +1,141 @@
+package io.github.kr8gz.plan_ingame_player_statistics_extension.database;
+
+import com.djrapitops.plan.query.QueryService;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Contains the parts of SQL statements that differ between the database engines supported by Plan.
+ */
+enum SQLDialect {
+    MYSQL(
+            "int NOT NULL AUTO_INCREMENT PRIMARY KEY",
+            "INSERT IGNORE INTO",
+            "SELECT COUNT(*) FROM information_schema.TABLES WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = ?",
+            "SELECT COUNT(*) FROM information_schema.STATISTICS WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = ? AND INDEX_NAME = ?",
+            "SELECT COUNT(*) FROM information_schema.COLUMNS WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = ? AND COLUMN_NAME = ?"
+    ),
+    SQLITE(
+            "INTEGER PRIMARY KEY",
+            "INSERT OR IGNORE INTO",
+            "SELECT COUNT(*) FROM sqlite_master WHERE type = 'table' AND name = ?",
+            "SELECT COUNT(*) FROM sqlite_master WHERE type = 'index' AND tbl_name = ? AND name = ?",
+            "SELECT COUNT(*) FROM pragma_table_info(?) WHERE name = ?"
+    );
+
+    /**
+     * The column definition of an integer primary key whose values are assigned automatically on insert.
+     */
+    final String autoIncrementPrimaryKey;
+
+    /**
+     * The start of an {@code INSERT} statement that silently skips rows violating a unique constraint.
+     */
+    final String insertIgnoreInto;
+
+    /**
+     * A query with a single table name parameter returning a positive count if the table exists.
+     */
+    final String tableExistsSql;
+
+    /**
+     * A query with a table name and an index name parameter returning a positive count if the index exists on the table.
+     * Needed because MySQL doesn't support {@code CREATE INDEX IF NOT EXISTS}.
+     */
+    final String indexExistsSql;
+
+    /**
+     * A query with a table name and a column name parameter returning a positive count if the column exists in the table.
+     */
+    final String columnExistsSql;
+
+    SQLDialect(String autoIncrementPrimaryKey, String insertIgnoreInto, String tableExistsSql, String indexExistsSql, String columnExistsSql) {
+        this.autoIncrementPrimaryKey = autoIncrementPrimaryKey;
+        this.insertIgnoreInto = insertIgnoreInto;
+        this.tableExistsSql = tableExistsSql;
+        this.indexExistsSql = indexExistsSql;
+        this.columnExistsSql = columnExistsSql;
+    }
+
+    /**
+     * Returns an {@code INSERT} statement that updates the existing row instead if a row with the same key already exists,
+     * using the native upsert syntax of the database engine. Unlike {@code REPLACE INTO}, which deletes the existing row
+     * and inserts a new one, the existing row is modified in place, and not written at all if none of its values differ.
+     * The statement has one parameter for each key column followed by one for each value column.
+     *
+     * @param tableName the name of the table
+     * @param keyColumns the columns of the primary key or unique constraint identifying a row
+     * @param valueColumns the columns to update if the row already exists
+     * @return the upsert statement
+     */
+    @NotNull
+    String upsertSql(@NotNull String tableName, @NotNull List<TableColumn> keyColumns, @NotNull List<TableColumn> valueColumns) {
+        var insertSql = insertSql(tableName, Stream.concat(keyColumns.stream(), valueColumns.stream()).toList());
+        return switch (this) {
+            // MySQL doesn't write rows whose values are set to what they already are
+            case MYSQL -> insertSql + " ON DUPLICATE KEY UPDATE " + valueColumns.stream()
+                    .map(column -> column + " = VALUES(" + column + ")")
+                    .collect(Collectors.joining(", "));
+            case SQLITE -> insertSql + " ON CONFLICT (" + keyColumns.stream().map(TableColumn::name).collect(Collectors.joining(", ")) + ")" +
+                    " DO UPDATE SET " + valueColumns.stream()
+                            .map(column -> column + " = excluded." + column)
+                            .collect(Collectors.joining(", ")) +
+                    " WHERE " + valueColumns.stream()
+                            .map(column -> column + " <> excluded." + column)
+                            .collect(Collectors.joining(" OR "));
+        };
+    }
+
+    /**
+     * Returns an {@code INSERT} statement that adds to a column of the existing row instead if a row with the same key
+     * already exists, which allows maintaining sums without reading them first. The other value columns of an existing row
+     * are overwritten. The statement has one parameter for each key column, followed by one for the amount to add
+     * and one for each other value column.
+     *
+     * @param tableName the name of the table
+     * @param keyColumns the columns of the primary key or unique constraint identifying a row
+     * @param sumColumn the column to add to if the row already exists
+     * @param valueColumns the other columns to update if the row already exists
+     * @return the incrementing upsert statement
+     */
+    @NotNull
+    String incrementSql(@NotNull String tableName, @NotNull List<TableColumn> keyColumns, @NotNull TableColumn sumColumn, @NotNull List<TableColumn> valueColumns) {
+        var insertSql = insertSql(tableName, Stream.of(keyColumns.stream(), Stream.of(sumColumn), valueColumns.stream()).flatMap(stream -> stream).toList());
+        return switch (this) {
+            case MYSQL -> insertSql + " ON DUPLICATE KEY UPDATE " + sumColumn + " = " + sumColumn + " + VALUES(" + sumColumn + ")" +
+                    valueColumns.stream()
+                            .map(column -> ", " + column + " = VALUES(" + column + ")")
+                            .collect(Collectors.joining());
+            case SQLITE -> insertSql + " ON CONFLICT (" + keyColumns.stream().map(TableColumn::name).collect(Collectors.joining(", ")) + ")" +
+                    " DO UPDATE SET " + sumColumn + " = " + sumColumn + " + excluded." + sumColumn +
+                    valueColumns.stream()
+                            .map(column -> ", " + column + " = excluded." + column)
+                            .collect(Collectors.joining());
+        };
+    }
+
+    private static String insertSql(String tableName, List<TableColumn> columns) {
+        return "INSERT INTO " + tableName +
+                " (" + columns.stream().map(TableColumn::name).collect(Collectors.joining(", ")) + ")" +
+                " VALUES (" + String.join(", ", Collections.nCopies(columns.size(), "?")) + ")";
+    }
+
+    /**
+     * Returns the {@code SQLDialect} of the database Plan is currently using.
+     *
+     * @param queryService the {@link QueryService} instance for accessing Plan's database
+     * @return the {@code SQLDialect} matching Plan's database type
+     * @throws DatabaseInitializationException if Plan's database type is not supported
+     */
+    @NotNull
+    static SQLDialect of(@NotNull QueryService queryService) throws DatabaseInitializationException {
+        var dbType = queryService.getDBType();
+        if ("MySQL".equalsIgnoreCase(dbType)) return MYSQL;
+        if ("SQLite".equalsIgnoreCase(dbType)) return SQLITE;
+        throw new DatabaseInitializationException("Unsupported database type " + dbType, null);
+    }
+}
@@ -0,0 +1,28 @@
+package io.github.kr8gz.plan_ingame_player_statistics_extension.database;
+
+import org.apache.logging.log4j.core.config.plugins.validation.constraints.NotBlank;
+import org.jetbrains.annotations.NotNull;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+
+/**
+ * Represents a single step in the evolution of the database schema used by this extension.
+ * <p>
+ * Migrations must be idempotent: DDL statements commit implicitly on MySQL, so a migration that was interrupted
+ * may already have been partially applied when it runs again, and servers sharing a database may run the same
+ * migration concurrently.
+ *
+ * @param version the schema version this migration upgrades to, unique and greater than zero
+ * @param description a short description of the changes made by this migration
+ * @param step the changes made by this migration
+ */
+record SchemaMigration(int version, @NotBlank String description, @NotNull Step step) {
+    /**
+     * Applies the changes of a migration using a database connection provided by Plan's {@code QueryService}.
+     */
+    @FunctionalInterface
+    interface Step {
+        void apply(@NotNull Connection connection) throws SQLException;
+    }
+}
@@ -0,0 +1,255 @@
+package io.github.kr8gz.plan_ingame_player_statistics_extension.database;
+
+import io.github.kr8gz.plan_ingame_player_statistics_extension.PlanInGamePlayerStatisticsExtension;
+import org.jetbrains.annotations.NotNull;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+/**
+ * Defines all {@link SchemaMigration}s of the database schema used by this extension, which the {@link SchemaMigrator}
+ * applies on initialization. The statements of each migration create the tables as they were at its version,
+ * so that later migrations find the schema they expect no matter which version the database started at.
+ */
+final class SchemaMigrations {
+    private static final TableColumn SERVER_ID_COLUMN = new TableColumn("server_id", "int");
+    private static final TableColumn PLAYER_ID_COLUMN = new TableColumn("player_id", "int");
+    private static final TableColumn STAT_ID_COLUMN = new TableColumn("stat_id", "int");
+    private static final TableColumn VALUE_COLUMN = new TableColumn("value", "int");
+    private static final TableColumn PLAYER_UUID_COLUMN = new TableColumn("player_uuid", "char(36)");
+    private static final TableColumn STAT_NAME_COLUMN = new TableColumn("stat_name", "varchar(255)");
+    private static final TableColumn FILE_SIZE_COLUMN = new TableColumn("file_size", "bigint");
+    private static final TableColumn LAST_MODIFIED_COLUMN = new TableColumn("last_modified", "bigint");
+
+    /**
+     * The table used by earlier versions of this extension, which stored the player UUID and statistic name
+     * in every row. Its contents are migrated to the dictionary-encoded tables on initialization.
+     */
+    private static final String LEGACY_STATS_TABLE = "plan_ingame_player_statistics";
+
+    /**
+     * The suffix of the temporary tables created while partitioning the tables of earlier versions by server.
+     */
+    private static final String PARTITIONED_TABLE_SUFFIX = "_partitioned";
+
+    private final @NotNull SQLDialect dialect;
+    private final @NotNull DictionaryTable playerDictionary;
+    private final @NotNull DictionaryTable statDictionary;
+    private final @NotNull DictionaryTable serverDictionary;
+    private final @NotNull UUID serverUUID;
+
+    /**
+     * Creates a new {@code SchemaMigrations}.
+     *
+     * @param dialect the SQL dialect of the database
+     * @param playerDictionary the dictionary of player IDs
+     * @param statDictionary the dictionary of statistic IDs
+     * @param serverDictionary the dictionary of server IDs
+     * @param serverUUID the UUID of the server running the migrations, to which existing values are assigned when partitioning
+     */
+    SchemaMigrations(@NotNull SQLDialect dialect, @NotNull DictionaryTable playerDictionary, @NotNull DictionaryTable statDictionary,
+                     @NotNull DictionaryTable serverDictionary, @NotNull UUID serverUUID) {
+        this.dialect = dialect;
+        this.playerDictionary = playerDictionary;
+        this.statDictionary = statDictionary;
+        this.serverDictionary = serverDictionary;
+        this.serverUUID = serverUUID;
+    }
+
+    /**
+     * Returns all migrations of the database schema used by this extension. New migrations must be appended
+     * with a higher version, and existing migrations must not be changed once released.
+     *
+     * @return the list of schema migrations
+     */
+    @NotNull
+    List<SchemaMigration> getMigrations() {
+        return List.of(
+                new SchemaMigration(1, "Create dictionary-encoded statistics tables", connection -> {
+                    try (var createStatement = connection.createStatement()) {
+                        createStatement.executeUpdate(playerDictionary.createTableSql());
+                        createStatement.executeUpdate(statDictionary.createTableSql());
+                        createStatement.executeUpdate(CREATE_STAT_VALUES_TABLE_SQL);
+                        createStatement.executeUpdate(CREATE_STATS_FILES_TABLE_SQL);
+                    }
+                }),
+                new SchemaMigration(2, "Migrate legacy statistics table", this::migrateLegacyTable),
+                new SchemaMigration(3, "Partition statistics by server", this::partitionByServer),
+                new SchemaMigration(4, "Create statistics history table", connection -> {
+                    try (var createStatement = connection.createStatement()) {
+                        createStatement.executeUpdate(StatHistory.CREATE_HISTORY_TABLE_SQL);
+                    }
+                    if (!exists(connection, dialect.indexExistsSql, StatHistory.HISTORY_TABLE, StatHistory.HISTORY_STAT_INDEX)) {
+                        try (var createStatement = connection.createStatement()) {
+                            createStatement.executeUpdate(StatHistory.CREATE_HISTORY_STAT_INDEX_SQL);
+                        }
+                    }
+                })
+        );
+    }
+
+    /**
+     * Runs a query returning a count, such as {@link SQLDialect#tableExistsSql}.
+     *
+     * @param connection the database connection to use
+     * @param sql the query to run
+     * @param parameters the string parameters of the query
+     * @return {@code true} if the count is positive
+     * @throws SQLException if an SQL exception occurs while running the query
+     */
+    private static boolean exists(Connection connection, String sql, String... parameters) throws SQLException {
+        try (var statement = connection.prepareStatement(sql)) {
+            for (int i = 0; i < parameters.length; i++) {
+                statement.setString(i + 1, parameters[i]);
+            }
+            try (var resultSet = statement.executeQuery()) {
+                return resultSet.next() && resultSet.getInt(1) > 0;
+            }
+        }
+    }
+
+    private static final String CREATE_STAT_VALUES_TABLE_SQL =
+            "CREATE TABLE IF NOT EXISTS " + DatabaseManager.STAT_VALUES_TABLE + "(" +
+                    PLAYER_ID_COLUMN.withType() + ", " +
+                    STAT_ID_COLUMN.withType() + ", " +
+                    VALUE_COLUMN.withType() + ", " +
+                    "PRIMARY KEY(" + PLAYER_ID_COLUMN + ", " + STAT_ID_COLUMN + ")" +
+            ")";
+
+    private static final String CREATE_STATS_FILES_TABLE_SQL =
+            "CREATE TABLE IF NOT EXISTS " + DatabaseManager.STATS_FILES_TABLE + "(" +
+                    PLAYER_ID_COLUMN.withType() + " PRIMARY KEY, " +
+                    FILE_SIZE_COLUMN.withType() + ", " +
+                    LAST_MODIFIED_COLUMN.withType() +
+            ")";
+
+    /**
+     * Copies all entries of the {@link #LEGACY_STATS_TABLE} into the dictionary-encoded tables and drops it afterwards.
+     * Does nothing if the legacy table doesn't exist.
+     *
+     * @param connection the database connection to use
+     * @throws SQLException if an SQL exception occurs while migrating
+     */
+    private void migrateLegacyTable(Connection connection) throws SQLException {
+        if (!exists(connection, dialect.tableExistsSql, LEGACY_STATS_TABLE)) return;
+
+        try (var migrateStatement = connection.createStatement()) {
+            migrateStatement.executeUpdate(playerDictionary.copyKeysSql(LEGACY_STATS_TABLE, PLAYER_UUID_COLUMN));
+            migrateStatement.executeUpdate(statDictionary.copyKeysSql(LEGACY_STATS_TABLE, STAT_NAME_COLUMN));
+            migrateStatement.executeUpdate(migrateLegacyValuesSql());
+            migrateStatement.executeUpdate(DROP_LEGACY_TABLE_SQL);
+        }
+
+        PlanInGamePlayerStatisticsExtension.LOGGER.info("Migrated player statistics from table {} to dictionary-encoded tables", LEGACY_STATS_TABLE);
+    }
+
+    /**
+     * @return an SQL statement for copying all values of the {@link #LEGACY_STATS_TABLE} into the statistic values table,
+     *         after the player UUIDs and statistic names have been copied into the dictionary tables
+     */
+    private String migrateLegacyValuesSql() {
+        return dialect.insertIgnoreInto + " " + DatabaseManager.STAT_VALUES_TABLE + " (" + PLAYER_ID_COLUMN + ", " + STAT_ID_COLUMN + ", " + VALUE_COLUMN + ")" +
+                " SELECT " + DictionaryTable.ID_COLUMN.of("p") + ", " + DictionaryTable.ID_COLUMN.of("s") + ", " + VALUE_COLUMN.of("l") +
+                " FROM " + LEGACY_STATS_TABLE + " l" +
+                " JOIN " + DatabaseManager.PLAYERS_TABLE + " p ON " + PLAYER_UUID_COLUMN.of("p") + " = " + PLAYER_UUID_COLUMN.of("l") +
+                " JOIN " + DatabaseManager.STAT_NAMES_TABLE + " s ON " + STAT_NAME_COLUMN.of("s") + " = " + STAT_NAME_COLUMN.of("l");
+    }
+
+    private static final String DROP_LEGACY_TABLE_SQL =
+            "DROP TABLE IF EXISTS " + LEGACY_STATS_TABLE;
+
+    /**
+     * Adds the server ID to the primary keys of the statistic values table and the import manifest, assigning all existing
+     * rows to this server, as they can't be told apart anymore. Other servers sharing the database import their statistics
+     * files into their own partitions again on their next start, as their import manifests are empty. Afterwards,
+     * the totals table is created and filled with the sums of the existing values.
+     * <p>
+     * The primary key of a table can't be changed in place in SQLite, so each table is copied into a new partitioned table,
+     * which then replaces it. Each step checks whether it has already been applied, so that the migration is idempotent.
+     *
+     * @param connection the database connection to use
+     * @throws SQLException if an SQL exception occurs while migrating
+     */
+    private void partitionByServer(Connection connection) throws SQLException {
+        try (var createStatement = connection.createStatement()) {
+            createStatement.executeUpdate(serverDictionary.createTableSql());
+        }
+        var serverUUIDString = serverUUID.toString();
+        int migratingServerId = serverDictionary.resolveIds(connection, List.of(serverUUIDString)).getInt(serverUUIDString);
+
+        partitionTable(connection, DatabaseManager.STAT_VALUES_TABLE, CREATE_PARTITIONED_STAT_VALUES_TABLE_SQL,
+                List.of(PLAYER_ID_COLUMN, STAT_ID_COLUMN, VALUE_COLUMN), migratingServerId);
+        partitionTable(connection, DatabaseManager.STATS_FILES_TABLE, CREATE_PARTITIONED_STATS_FILES_TABLE_SQL,
+                List.of(PLAYER_ID_COLUMN, FILE_SIZE_COLUMN, LAST_MODIFIED_COLUMN), migratingServerId);
+
+        try (var createStatement = connection.createStatement()) {
+            createStatement.executeUpdate(NetworkTotals.CREATE_STAT_TOTALS_TABLE_SQL);
+            if (!exists(connection, dialect.indexExistsSql, NetworkTotals.STAT_TOTALS_TABLE, NetworkTotals.STAT_TOTALS_UPDATED_INDEX)) {
+                createStatement.executeUpdate(NetworkTotals.CREATE_STAT_TOTALS_UPDATED_INDEX_SQL);
+            }
+        }
+
+        try (var fillStatement = connection.prepareStatement(NetworkTotals.fillStatTotalsSql(dialect, ""))) {
+            fillStatement.setLong(1, System.currentTimeMillis());
+            fillStatement.executeUpdate();
+        }
+    }
+
+    /**
+     * Replaces a table with a copy that has the server ID as the first column of its primary key,
+     * unless the table has already been partitioned.
+     *
+     * @param connection the database connection to use
+     * @param tableName the name of the table to partition
+     * @param createPartitionedTableSql a format string of the statement creating the partitioned table, taking its name
+     * @param columns the columns to copy, all except the server ID
+     * @param migratingServerId the server ID to assign to the copied rows
+     * @throws SQLException if an SQL exception occurs while partitioning
+     */
+    private void partitionTable(Connection connection, String tableName, String createPartitionedTableSql,
+                                List<TableColumn> columns, int migratingServerId) throws SQLException {
+        var partitionedTableName = tableName + PARTITIONED_TABLE_SUFFIX;
+        if (exists(connection, dialect.tableExistsSql, tableName) && !exists(connection, dialect.columnExistsSql, tableName, SERVER_ID_COLUMN.name())) {
+            var columnNames = columns.stream().map(TableColumn::name).collect(Collectors.joining(", "));
+            try (var createStatement = connection.createStatement()) {
+                createStatement.executeUpdate(createPartitionedTableSql.formatted(partitionedTableName));
+            }
+            try (var copyStatement = connection.prepareStatement(
+                    dialect.insertIgnoreInto + " " + partitionedTableName + " (" + SERVER_ID_COLUMN + ", " + columnNames + ")" +
+                    " SELECT ?, " + columnNames + " FROM " + tableName)) {
+                copyStatement.setInt(1, migratingServerId);
+                copyStatement.executeUpdate();
+            }
+            try (var dropStatement = connection.createStatement()) {
+                dropStatement.executeUpdate("DROP TABLE " + tableName);
+            }
+        }
+
+        if (exists(connection, dialect.tableExistsSql, partitionedTableName)) {
+            try (var renameStatement = connection.createStatement()) {
+                renameStatement.executeUpdate("ALTER TABLE " + partitionedTableName + " RENAME TO " + tableName);
+            }
+        }
+    }
+
+    private static final String CREATE_PARTITIONED_STAT_VALUES_TABLE_SQL =
+            "CREATE TABLE IF NOT EXISTS %s(" +
+                    SERVER_ID_COLUMN.withType() + ", " +
+                    PLAYER_ID_COLUMN.withType() + ", " +
+                    STAT_ID_COLUMN.withType() + ", " +
+                    VALUE_COLUMN.withType() + ", " +
+                    "PRIMARY KEY(" + SERVER_ID_COLUMN + ", " + PLAYER_ID_COLUMN + ", " + STAT_ID_COLUMN + ")" +
+            ")";
+
+    private static final String CREATE_PARTITIONED_STATS_FILES_TABLE_SQL =
+            "CREATE TABLE IF NOT EXISTS %s(" +
+                    SERVER_ID_COLUMN.withType() + ", " +
+                    PLAYER_ID_COLUMN.withType() + ", " +
+                    FILE_SIZE_COLUMN.withType() + ", " +
+                    LAST_MODIFIED_COLUMN.withType() + ", " +
+                    "PRIMARY KEY(" + SERVER_ID_COLUMN + ", " + PLAYER_ID_COLUMN + ")" +
+            ")";
+}
@@ -0,0 +1,111 @@
+package io.github.kr8gz.plan_ingame_player_statistics_extension.database;
+
+import com.djrapitops.plan.query.QueryService;
+import io.github.kr8gz.plan_ingame_player_statistics_extension.PlanInGamePlayerStatisticsExtension;
+import org.jetbrains.annotations.NotNull;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.Future;
+
+/**
+ * Brings the database schema used by this extension up to date by applying {@link SchemaMigration}s in order of their
+ * versions. Every applied migration is recorded in a schema version table, so that each migration only runs once
+ * per database, and the schema can be evolved by appending new migrations.
+ * <p>
+ * Databases created before the schema version table existed start at version {@code 0}, which runs all migrations;
+ * as migrations are idempotent, this is safe for tables that already exist.
+ */
+final class SchemaMigrator {
+    private static final String SCHEMA_VERSION_TABLE = "plan_ingame_schema_version";
+    private static final TableColumn VERSION_COLUMN = new TableColumn("version", "int");
+    private static final TableColumn DESCRIPTION_COLUMN = new TableColumn("description", "varchar(255)");
+    private static final TableColumn APPLIED_AT_COLUMN = new TableColumn("applied_at", "bigint");
+
+    private final @NotNull SQLDialect dialect;
+    private final @NotNull List<SchemaMigration> migrations;
+
+    /**
+     * Creates a new {@code SchemaMigrator}.
+     *
+     * @param dialect the SQL dialect of the database
+     * @param migrations all migrations of the schema, in any order
+     * @throws IllegalArgumentException if multiple migrations have the same version or a version is not positive
+     */
+    SchemaMigrator(@NotNull SQLDialect dialect, @NotNull List<SchemaMigration> migrations) {
+        this.dialect = dialect;
+        this.migrations = migrations.stream()
+                .sorted(Comparator.comparingInt(SchemaMigration::version))
+                .toList();
+
+        int previousVersion = 0;
+        for (var migration : this.migrations) {
+            if (migration.version() <= previousVersion) {
+                throw new IllegalArgumentException("Invalid or duplicate schema version " + migration.version());
+            }
+            previousVersion = migration.version();
+        }
+    }
+
+    /**
+     * Applies all migrations newer than the current schema version of the database in a single transaction.
+     *
+     * @param queryService the {@link QueryService} instance for accessing the database
+     * @return a {@code Future} for tracking the execution of the migrations
+     */
+    @NotNull
+    Future<?> migrate(@NotNull QueryService queryService) {
+        return queryService.execute(CREATE_SCHEMA_VERSION_TABLE_SQL, statement -> {
+            statement.executeUpdate();
+            var connection = statement.getConnection();
+
+            int currentVersion = getCurrentVersion(connection);
+            for (var migration : migrations) {
+                if (migration.version() <= currentVersion) continue;
+
+                PlanInGamePlayerStatisticsExtension.LOGGER.info("Migrating database schema to version {}: {}", migration.version(), migration.description());
+                migration.step().apply(connection);
+                recordMigration(connection, migration);
+            }
+        });
+    }
+
+    private int getCurrentVersion(Connection connection) throws SQLException {
+        try (var versionStatement = connection.prepareStatement(GET_SCHEMA_VERSION_SQL);
+             var resultSet = versionStatement.executeQuery()) {
+            return resultSet.next() ? resultSet.getInt(1) : 0;
+        }
+    }
+
+    private void recordMigration(Connection connection, SchemaMigration migration) throws SQLException {
+        // another server sharing the database may have applied the same migration concurrently
+        var sql = dialect.insertIgnoreInto + " " + SCHEMA_VERSION_TABLE +
+                " (" + VERSION_COLUMN + ", " + DESCRIPTION_COLUMN + ", " + APPLIED_AT_COLUMN + ")" +
+                " VALUES (?, ?, ?)";
+        try (var recordStatement = connection.prepareStatement(sql)) {
+            recordStatement.setInt(1, migration.version());
+            recordStatement.setString(2, migration.description());
+            recordStatement.setLong(3, System.currentTimeMillis());
+            recordStatement.executeUpdate();
+        }
+    }
+
+    /**
+     * @return an SQL statement for dropping the schema version table, after which all migrations run again
+     */
+    String dropTableSql() {
+        return "DROP TABLE IF EXISTS " + SCHEMA_VERSION_TABLE;
+    }
+
+    private static final String CREATE_SCHEMA_VERSION_TABLE_SQL =
+            "CREATE TABLE IF NOT EXISTS " + SCHEMA_VERSION_TABLE + "(" +
+                    VERSION_COLUMN.withType() + " PRIMARY KEY, " +
+                    DESCRIPTION_COLUMN.withType() + " NOT NULL, " +
+                    APPLIED_AT_COLUMN.withType() + " NOT NULL" +
+            ")";
+
+    private static final String GET_SCHEMA_VERSION_SQL =
+            "SELECT MAX(" + VERSION_COLUMN + ") FROM " + SCHEMA_VERSION_TABLE;
+}
@@ -0,0 +1,139 @@
+package io.github.kr8gz.plan_ingame_player_statistics_extension.database;
+
+import it.unimi.dsi.fastutil.objects.Object2IntMap;
+import it.unimi.dsi.fastutil.objects.Object2IntOpenHashMap;
+import net.minecraft.stat.ServerStatHandler;
+import net.minecraft.stat.Stat;
+import org.apache.commons.io.FilenameUtils;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Remembers the statistic values that were last written to the database for each tracked player,
+ * so that subsequent updates only need to write the statistics whose values have changed since.
+ * <p>
+ * Changes are collected on the thread that owns the {@link ServerStatHandler}s (usually the server thread),
+ * while written values are confirmed from the database thread once the write has been executed.
+ * Values that were collected but never confirmed are simply collected again on the next update.
+ */
+final class StatChangeTracker {
+    /**
+     * Represents a single row to be written to the database.
+     *
+     * @param playerUUID the UUID of the player the statistic belongs to
+     * @param stat the statistic to be written
+     * @param value the new value of the statistic
+     */
+    record StatUpdate(@NotNull UUID playerUUID, @NotNull Stat<?> stat, int value) {}
+
+    /**
+     * The last written statistic values of each tracked player.
+     * The inner maps are only accessed while holding their own lock.
+     */
+    private final Map<UUID, Object2IntMap<Stat<?>>> writtenValues = new ConcurrentHashMap<>();
+
+    /**
+     * The numbers of collected rows whose values changed and didn't change. Both are counted when the changes
+     * are collected, so that they add up to all rows compared; rows written after several collections
+     * of the same changed value have been coalesced are counted by the {@code db.write.rows} meter instead.
+     */
+    private final AtomicLong rowsChanged = new AtomicLong();
+    private final AtomicLong rowsSkipped = new AtomicLong();
+
+    /**
+     * Extracts the UUID of the player a {@link ServerStatHandler} belongs to from the name of its statistics file.
+     *
+     * @param statHandler the {@code ServerStatHandler} to get the player UUID of
+     * @return the UUID of the player
+     */
+    @NotNull
+    static UUID getPlayerUUID(@NotNull ServerStatHandler statHandler) {
+        return UUID.fromString(FilenameUtils.getBaseName(statHandler.file.toString()));
+    }
+
+    /**
+     * Compares the current statistic values of a {@link ServerStatHandler} with the values last written
+     * for that player, and returns only the statistics whose values differ. The player starts being tracked
+     * if it isn't already, in which case all of its statistics are returned.
+     *
+     * @param statHandler the {@code ServerStatHandler} containing the current statistic values
+     * @return a list of {@code StatUpdate}s for the changed statistics
+     */
+    @NotNull
+    List<StatUpdate> collectChanges(@NotNull ServerStatHandler statHandler) {
+        var playerUUID = getPlayerUUID(statHandler);
+        var playerValues = writtenValues.computeIfAbsent(playerUUID, uuid -> createPlayerValues());
+
+        var changes = new ArrayList<StatUpdate>();
+        synchronized (playerValues) {
+            for (var statEntry : statHandler.statMap.object2IntEntrySet()) {
+                var stat = statEntry.getKey();
+                int value = statEntry.getIntValue();
+                if (playerValues.getInt(stat) != value || !playerValues.containsKey(stat)) {
+                    changes.add(new StatUpdate(playerUUID, stat, value));
+                }
+            }
+        }
+
+        rowsChanged.addAndGet(changes.size());
+        rowsSkipped.addAndGet(statHandler.statMap.size() - changes.size());
+        return changes;
+    }
+
+    /**
+     * Records the values of the given {@code StatUpdate}s as written to the database.
+     * Updates for players that are no longer tracked are ignored.
+     *
+     * @param statUpdates the {@code StatUpdate}s that were written
+     */
+    void markWritten(@NotNull Collection<StatUpdate> statUpdates) {
+        for (var statUpdate : statUpdates) {
+            var playerValues = writtenValues.get(statUpdate.playerUUID());
+            if (playerValues == null) continue;
+
+            synchronized (playerValues) {
+                playerValues.put(statUpdate.stat(), statUpdate.value());
+            }
+        }
+    }
+
+    /**
+     * Stops tracking the written values of a player, for example after the player has left the server.
+     * The next update for this player will write all of its statistics again.
+     *
+     * @param playerUUID the UUID of the player to stop tracking
+     */
+    void forgetPlayer(@NotNull UUID playerUUID) {
+        writtenValues.remove(playerUUID);
+    }
+
+    /**
+     * Stops tracking the written values of all players.
+     */
+    void clear() {
+        writtenValues.clear();
+    }
+
+    /**
+     * @return the total number of rows that were collected for writing by updates because their values changed
+     */
+    long getRowsChanged() {
+        return rowsChanged.get();
+    }
+
+    /**
+     * @return the total number of rows that were skipped by updates because their values didn't change
+     */
+    long getRowsSkipped() {
+        return rowsSkipped.get();
+    }
+
+    private static Object2IntMap<Stat<?>> createPlayerValues() {
+        var playerValues = new Object2IntOpenHashMap<Stat<?>>();
+        playerValues.defaultReturnValue(-1);
+        return playerValues;
+    }
+}
@@ -0,0 +1,252 @@
+package io.github.kr8gz.plan_ingame_player_statistics_extension.database;
+
+import io.github.kr8gz.plan_ingame_player_statistics_extension.PlanInGamePlayerStatisticsExtension;
+import io.github.kr8gz.plan_ingame_player_statistics_extension.metrics.ExtensionMetrics;
+import io.github.kr8gz.plan_ingame_player_statistics_extension.metrics.Meter;
+import it.unimi.dsi.fastutil.objects.Object2IntOpenHashMap;
+import it.unimi.dsi.fastutil.objects.Object2LongOpenHashMap;
+import net.minecraft.stat.Stat;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.*;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+import java.util.function.Predicate;
+
+/**
+ * Captures statistic changes as they happen, so that they reach the database within a few seconds
+ * instead of only when the player data is saved.
+ * <p>
+ * Changes are offered to a {@link StatEventRing} by {@link #capture(UUID, Stat, int)}, which is called on every change
+ * and therefore never blocks or allocates. A consumer thread drains the ring every {@link #DRAIN_INTERVAL_MILLIS},
+ * keeping only the latest value of each statistic of each player, and passes the collapsed values on to be written
+ * every {@link #APPLY_INTERVAL_MILLIS}. If the ring is full, changes are dropped; they are still written once the
+ * player data is saved, as {@link DatabaseManager#updatePlayerStats(Collection)} compares the full statistics.
+ * <p>
+ * Captured values may be older than the values collected by {@code updatePlayerStats} in the meantime, and must not
+ * overwrite them. Therefore, each collection records the current tail position of the ring for the collected players,
+ * and captured values of those players at earlier positions are discarded. Neither the collected nor the captured
+ * values are passed on while holding the lock of this {@code StatEventCapture}, so that the server thread never waits
+ * for the consumer thread. Instead, the applier checks whether a player was collected in the meantime while adding
+ * the captured values, atomically with respect to the collected values being added.
+ */
+public final class StatEventCapture {
+    private static final int RING_CAPACITY = 1 << 16;
+    private static final long DRAIN_INTERVAL_MILLIS = 250;
+    private static final long APPLY_INTERVAL_MILLIS = TimeUnit.SECONDS.toMillis(3);
+
+    private static final Meter EVENTS_CAPTURED = ExtensionMetrics.meter("capture.events");
+    private static final Meter EVENTS_DROPPED = ExtensionMetrics.meter("capture.dropped");
+
+    /**
+     * The instance that captured changes are offered to, or {@code null} if changes are not being captured.
+     */
+    private static volatile @Nullable StatEventCapture active;
+
+    /**
+     * The collapsed captured values of a single player, waiting to be applied.
+     */
+    private static final class PendingValues {
+        private final Object2IntOpenHashMap<Stat<?>> values = new Object2IntOpenHashMap<>();
+
+        /**
+         * The ring position of the latest captured value of each statistic.
+         */
+        private final Object2LongOpenHashMap<Stat<?>> positions = new Object2LongOpenHashMap<>();
+    }
+
+    private final StatEventRing ring = new StatEventRing(RING_CAPACITY);
+
+    /**
+     * The pending captured values of each player. Only accessed while holding the lock of this {@code StatEventCapture}.
+     */
+    private final Map<UUID, PendingValues> pendingValues = new HashMap<>();
+
+    /**
+     * The tail position of the ring at the last collection or removal of each player's statistics. Entries are pruned
+     * once all values captured before their position have been applied or discarded, so that only the players collected
+     * within the last few seconds are kept. Only accessed while holding the lock of this {@code StatEventCapture}.
+     */
+    private final Object2LongOpenHashMap<UUID> collectedPositions = new Object2LongOpenHashMap<>();
+
+    /**
+     * The tail position of the ring when all data was last cleared, before which no captured values are applied.
+     * Only accessed while holding the lock of this {@code StatEventCapture}.
+     */
+    private long clearedPosition;
+
+    private final BiConsumer<List<StatChangeTracker.StatUpdate>, Predicate<UUID>> applier;
+    private final ScheduledExecutorService consumerExecutor;
+    private long lastApplyTime = System.nanoTime();
+
+    /**
+     * Creates a new {@code StatEventCapture}, which doesn't capture any changes until it has been started.
+     *
+     * @param applier receives the collapsed captured values to be written to the database, together with a filter
+     *                telling whether the values of a player are still newer than its collected values, which must be
+     *                evaluated atomically with adding the values, with respect to the actions passed to {@link #runCollected}
+     */
+    StatEventCapture(@NotNull BiConsumer<List<StatChangeTracker.StatUpdate>, Predicate<UUID>> applier) {
+        this.applier = applier;
+        this.consumerExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            var thread = new Thread(runnable, PlanInGamePlayerStatisticsExtension.NAME + " Stat Capture");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Records a change of a player's statistic, if changes are being captured. Called on every statistic change,
+     * usually on the server thread, so this method never blocks or allocates.
+     *
+     * @param playerUUID the UUID of the player whose statistic changed
+     * @param stat the statistic that changed
+     * @param value the new value of the statistic
+     */
+    public static void capture(@NotNull UUID playerUUID, @NotNull Stat<?> stat, int value) {
+        var capture = active;
+        if (capture != null && !capture.ring.offer(playerUUID, stat, value)) {
+            EVENTS_DROPPED.mark();
+        }
+    }
+
+    /**
+     * Starts capturing changes and draining them at a fixed interval.
+     * Replaces any previously started {@code StatEventCapture}.
+     */
+    void start() {
+        active = this;
+        consumerExecutor.scheduleWithFixedDelay(this::drain, DRAIN_INTERVAL_MILLIS, DRAIN_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    private void drain() {
+        try {
+            synchronized (this) {
+                int drained = ring.drain(this::collapse);
+                EVENTS_CAPTURED.mark(drained);
+            }
+
+            long currentTime = System.nanoTime();
+            if (currentTime - lastApplyTime >= TimeUnit.MILLISECONDS.toNanos(APPLY_INTERVAL_MILLIS)) {
+                lastApplyTime = currentTime;
+                apply();
+            }
+        } catch (Exception e) {
+            PlanInGamePlayerStatisticsExtension.LOGGER.error("Exception occurred while applying captured player statistics", e);
+        }
+    }
+
+    private void collapse(long position, UUID playerUUID, Stat<?> stat, int value) {
+        var playerValues = pendingValues.computeIfAbsent(playerUUID, uuid -> new PendingValues());
+        playerValues.values.put(stat, value);
+        playerValues.positions.put(stat, position);
+    }
+
+    /**
+     * Passes all pending values that are newer than the last collection of their player's statistics to the applier.
+     * The values are gathered while holding the lock, but passed on after releasing it.
+     * Must only be called by the thread draining the ring.
+     */
+    private void apply() {
+        var statUpdates = new ArrayList<StatChangeTracker.StatUpdate>();
+        long appliedPosition;
+        synchronized (this) {
+            pendingValues.forEach((playerUUID, playerValues) -> {
+                long collectedPosition = getCollectedPosition(playerUUID);
+                for (var entry : playerValues.values.object2IntEntrySet()) {
+                    if (playerValues.positions.getLong(entry.getKey()) >= collectedPosition) {
+                        statUpdates.add(new StatChangeTracker.StatUpdate(playerUUID, entry.getKey(), entry.getIntValue()));
+                    }
+                }
+            });
+            pendingValues.clear();
+            appliedPosition = ring.getTailPosition();
+
+            // all values captured before the head position have now been gathered or discarded, so collections before
+            // it have no captured values left to discard, and the applier treats their players as collected before anyway
+            long headPosition = ring.getHeadPosition();
+            collectedPositions.object2LongEntrySet().removeIf(entry -> entry.getLongValue() < headPosition);
+        }
+
+        // all gathered values were drained before the current tail position, so a player collected at or after it
+        // in the meantime has newer values, which must not be overwritten
+        if (!statUpdates.isEmpty()) {
+            applier.accept(statUpdates, playerUUID -> isCollectedBefore(playerUUID, appliedPosition));
+        }
+    }
+
+    private synchronized boolean isCollectedBefore(UUID playerUUID, long position) {
+        return getCollectedPosition(playerUUID) < position;
+    }
+
+    /**
+     * Must be called while holding the lock of this {@code StatEventCapture}.
+     */
+    private long getCollectedPosition(UUID playerUUID) {
+        return Math.max(collectedPositions.getLong(playerUUID), clearedPosition);
+    }
+
+    /**
+     * Runs an action that passes the collected statistics of some players on to be written,
+     * such that captured values from before the collection can never overwrite them.
+     * Must be called on the thread that collected the statistics, before any further changes are captured on it.
+     * Only the collection is recorded while holding the lock; the action runs after releasing it.
+     *
+     * @param playerUUIDs the UUIDs of the players whose statistics were collected
+     * @param action the action passing the collected statistics on
+     */
+    void runCollected(@NotNull Collection<UUID> playerUUIDs, @NotNull Runnable action) {
+        synchronized (this) {
+            long tailPosition = ring.getTailPosition();
+            for (var playerUUID : playerUUIDs) {
+                collectedPositions.put(playerUUID, tailPosition);
+            }
+        }
+        action.run();
+    }
+
+    /**
+     * Discards all pending and previously captured values of a player,
+     * for example because the player was removed from the database. The removal is recorded like a collection,
+     * so that values of the player that are still in the ring are discarded once drained, instead of adding the player again.
+     *
+     * @param playerUUID the UUID of the player
+     */
+    synchronized void removePlayer(@NotNull UUID playerUUID) {
+        pendingValues.remove(playerUUID);
+        collectedPositions.put(playerUUID, ring.getTailPosition());
+    }
+
+    /**
+     * Discards all pending and previously captured values.
+     */
+    synchronized void clear() {
+        pendingValues.clear();
+        collectedPositions.clear();
+        clearedPosition = ring.getTailPosition();
+    }
+
+    /**
+     * Stops capturing changes and applies the values that were captured until now.
+     */
+    void close() {
+        if (active == this) active = null;
+        consumerExecutor.shutdown();
+        try {
+            if (!consumerExecutor.awaitTermination(DRAIN_INTERVAL_MILLIS * 4, TimeUnit.MILLISECONDS)) {
+                consumerExecutor.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            consumerExecutor.shutdownNow();
+        }
+
+        synchronized (this) {
+            ring.drain(this::collapse);
+        }
+        apply();
+    }
+}
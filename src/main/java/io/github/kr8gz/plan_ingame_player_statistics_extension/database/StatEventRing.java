@@ -0,0 +1,149 @@
+package io.github.kr8gz.plan_ingame_player_statistics_extension.database;
+
+import net.minecraft.stat.Stat;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A bounded, lock-free queue of statistic change events, which can be offered to from any thread
+ * and is drained by a single consumer thread.
+ * <p>
+ * The events are stored in preallocated parallel arrays, so offering an event never allocates. Each slot has a sequence
+ * number, which tells producers whether the slot is free and the consumer whether the event in it has been published.
+ * Producers claim slots by advancing the tail position with a compare-and-set, which only contends if several threads
+ * offer events at the same time; as statistics are almost always changed on the server thread, it usually succeeds
+ * on the first attempt. Once the queue is full, events are rejected instead of blocking the producer.
+ */
+final class StatEventRing {
+    /**
+     * Receives a single event drained from the queue.
+     */
+    @FunctionalInterface
+    interface EventConsumer {
+        /**
+         * @param position the position of the event in the queue, which increases with every offered event
+         * @param playerUUID the UUID of the player whose statistic changed
+         * @param stat the statistic that changed
+         * @param value the new value of the statistic
+         */
+        void accept(long position, @NotNull UUID playerUUID, @NotNull Stat<?> stat, int value);
+    }
+
+    private final int mask;
+    private final UUID[] playerUUIDs;
+    private final Stat<?>[] stats;
+    private final int[] values;
+
+    /**
+     * The sequence number of each slot. A slot at a position is free for a producer if its sequence equals the position,
+     * and holds a published event for the consumer if its sequence equals the position plus one.
+     */
+    private final AtomicLongArray sequences;
+
+    /**
+     * The position the next event will be offered at.
+     */
+    private final AtomicLong tail = new AtomicLong();
+
+    /**
+     * The position of the next event to be drained. Only accessed by the consumer thread.
+     */
+    private long head;
+
+    /**
+     * Creates a new empty {@code StatEventRing}.
+     *
+     * @param capacity the maximum number of events in the queue, which must be a power of two
+     */
+    StatEventRing(int capacity) {
+        if (Integer.bitCount(capacity) != 1) throw new IllegalArgumentException("Capacity must be a power of two");
+
+        this.mask = capacity - 1;
+        this.playerUUIDs = new UUID[capacity];
+        this.stats = new Stat<?>[capacity];
+        this.values = new int[capacity];
+        this.sequences = new AtomicLongArray(capacity);
+        for (int slot = 0; slot < capacity; slot++) {
+            sequences.set(slot, slot);
+        }
+    }
+
+    /**
+     * Adds an event to the queue without blocking or allocating.
+     *
+     * @param playerUUID the UUID of the player whose statistic changed
+     * @param stat the statistic that changed
+     * @param value the new value of the statistic
+     * @return {@code true} if the event was added, or {@code false} if the queue is full
+     */
+    boolean offer(@NotNull UUID playerUUID, @NotNull Stat<?> stat, int value) {
+        long position = tail.get();
+        while (true) {
+            int slot = (int) position & mask;
+            long sequence = sequences.getAcquire(slot);
+            if (sequence == position) {
+                if (tail.weakCompareAndSetVolatile(position, position + 1)) break;
+                position = tail.get();
+            } else if (sequence < position) {
+                // the slot still holds an event from the previous lap that hasn't been drained yet
+                return false;
+            } else {
+                // another producer has claimed this position in the meantime
+                position = tail.get();
+            }
+        }
+
+        int slot = (int) position & mask;
+        playerUUIDs[slot] = playerUUID;
+        stats[slot] = stat;
+        values[slot] = value;
+        sequences.setRelease(slot, position + 1);
+        return true;
+    }
+
+    /**
+     * Passes all published events to the {@code consumer} in the order they were offered and frees their slots.
+     * Must only be called by one thread at a time.
+     *
+     * @param consumer the consumer receiving the events
+     * @return the number of drained events
+     */
+    int drain(@NotNull EventConsumer consumer) {
+        int drained = 0;
+        while (true) {
+            int slot = (int) head & mask;
+            if (sequences.getAcquire(slot) != head + 1) return drained;
+
+            var playerUUID = playerUUIDs[slot];
+            var stat = stats[slot];
+            int value = values[slot];
+            // release the references, so that the queue doesn't keep unloaded statistics reachable
+            playerUUIDs[slot] = null;
+            stats[slot] = null;
+            sequences.setRelease(slot, head + mask + 1);
+
+            consumer.accept(head, playerUUID, stat, value);
+            head++;
+            drained++;
+        }
+    }
+
+    /**
+     * @return the position of the next event to be drained, which is greater than the positions of all drained events.
+     * Must only be called by the thread draining the events.
+     */
+    long getHeadPosition() {
+        return head;
+    }
+
+    /**
+     * @return the position the next event will be offered at, which is greater than the positions of all events
+     * that were offered before this method was called
+     */
+    long getTailPosition() {
+        return tail.get();
+    }
+}
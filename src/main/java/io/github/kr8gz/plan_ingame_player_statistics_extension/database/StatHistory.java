@@ -0,0 +1,482 @@
+package io.github.kr8gz.plan_ingame_player_statistics_extension.database;
+
+import com.djrapitops.plan.query.QueryService;
+import io.github.kr8gz.plan_ingame_player_statistics_extension.PlanInGamePlayerStatisticsExtension;
+import io.github.kr8gz.plan_ingame_player_statistics_extension.metrics.ExtensionMetrics;
+import io.github.kr8gz.plan_ingame_player_statistics_extension.metrics.Histogram;
+import it.unimi.dsi.fastutil.longs.Long2LongOpenHashMap;
+import it.unimi.dsi.fastutil.objects.Object2LongLinkedOpenHashMap;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.IntSupplier;
+
+/**
+ * Records how the statistics of players grow over time as a compact time series, so that growth such as the play time
+ * per week can be charted, even though the statistic values table only holds the current values.
+ * <p>
+ * Instead of periodically copying all values, the differences written by the {@link DatabaseManager} are summed in memory
+ * per player, statistic and hour. Each completed hour is written by a separate thread as a single row per changed
+ * statistic, so the history adds at most one row per hour for each statistic that actually changed, no matter how often
+ * its value is written. Values imported from statistics files are not recorded, as it is unknown when they changed.
+ * <p>
+ * Older rows are downsampled to coarser {@link Resolution}s: hourly rows are summed into days once they are older than
+ * the hourly retention, daily rows into weeks, and weekly rows are deleted once they are older than the weekly retention,
+ * so the size of the table stays bounded. As the finer rows are deleted once summed, each period is stored at exactly
+ * one resolution. Each server only writes and downsamples its own partition of the table.
+ */
+public final class StatHistory {
+    /**
+     * The periods the history is stored in. Stored by ordinal, so the order of the constants must not change.
+     */
+    public enum Resolution {
+        HOUR(TimeUnit.HOURS.toMillis(1), TimeUnit.DAYS.toMillis(7)),
+        DAY(TimeUnit.DAYS.toMillis(1), TimeUnit.DAYS.toMillis(90)),
+        WEEK(TimeUnit.DAYS.toMillis(7), TimeUnit.DAYS.toMillis(2 * 364));
+
+        /**
+         * The epoch started on a Thursday, so weeks are shifted by three days to start on Mondays.
+         */
+        private static final long WEEK_OFFSET_MILLIS = TimeUnit.DAYS.toMillis(3);
+
+        private final long periodMillis;
+
+        /**
+         * How long rows of this resolution are kept before they are downsampled or, for the coarsest resolution, deleted.
+         */
+        private final long retentionMillis;
+
+        Resolution(long periodMillis, long retentionMillis) {
+            this.periodMillis = periodMillis;
+            this.retentionMillis = retentionMillis;
+        }
+
+        /**
+         * Returns the start of the period of this resolution containing the given time, in UTC.
+         *
+         * @param time the time in milliseconds since the epoch
+         * @return the start of the period in milliseconds since the epoch
+         */
+        public long getBucketStart(long time) {
+            long offset = this == WEEK ? WEEK_OFFSET_MILLIS : 0;
+            return Math.floorDiv(time + offset, periodMillis) * periodMillis - offset;
+        }
+
+        /**
+         * @return the name of this resolution as used in requests
+         */
+        @NotNull
+        public String getName() {
+            return name().toLowerCase(Locale.ROOT);
+        }
+    }
+
+    /**
+     * Represents how much a statistic has grown within a period.
+     *
+     * @param start the start of the period in milliseconds since the epoch
+     * @param resolution the length of the period
+     * @param delta the sum of the changes of the statistic within the period
+     */
+    public record Bucket(long start, @NotNull Resolution resolution, long delta) {}
+
+    static final String HISTORY_TABLE = "plan_ingame_stat_history";
+    private static final TableColumn SERVER_ID_COLUMN = new TableColumn("server_id", "int");
+    private static final TableColumn RESOLUTION_COLUMN = new TableColumn("resolution", "int");
+    private static final TableColumn BUCKET_START_COLUMN = new TableColumn("bucket_start", "bigint");
+    private static final TableColumn PLAYER_ID_COLUMN = new TableColumn("player_id", "int");
+    private static final TableColumn STAT_ID_COLUMN = new TableColumn("stat_id", "int");
+    private static final TableColumn DELTA_COLUMN = new TableColumn("delta", "bigint");
+
+    /**
+     * The index of the history by statistic and time, which serves range queries of a statistic.
+     * The primary key is led by the server, resolution and time instead, which serves downsampling.
+     */
+    static final String HISTORY_STAT_INDEX = "plan_ingame_stat_history_stat";
+
+    /**
+     * The interval at which completed hours are written and old rows are downsampled.
+     */
+    private static final long SNAPSHOT_INTERVAL_MILLIS = TimeUnit.MINUTES.toMillis(5);
+
+    /**
+     * The maximum time to wait for the remaining differences to be written when this {@code StatHistory} is closed.
+     */
+    private static final long CLOSE_TIMEOUT_SECONDS = 5;
+
+    private static final Histogram QUERY_TIME = ExtensionMetrics.timer("db.query.getStatHistory.time");
+
+    private final QueryService queryService;
+    private final IntSupplier serverId;
+    private final DictionaryTable playerDictionary;
+    private final DictionaryTable statDictionary;
+
+    /**
+     * Adds a difference to a row of the history, inserting it if it doesn't exist yet.
+     * Parameters: server ID, resolution, bucket start, player ID, statistic ID, difference.
+     */
+    private final String incrementHistorySql;
+
+    /**
+     * The differences that haven't been written yet, by the start of their hour,
+     * each keyed by the player ID in the upper and the statistic ID in the lower 32 bits.
+     * Only accessed while holding the lock of this {@code StatHistory}.
+     */
+    private final NavigableMap<Long, Long2LongOpenHashMap> pendingDeltas = new TreeMap<>();
+
+    /**
+     * A number that advances whenever the history may have changed, at least once per hour,
+     * as other servers sharing the database write their completed hours at about the same time.
+     */
+    private final AtomicLong version = new AtomicLong(System.currentTimeMillis());
+
+    /**
+     * The hour in which old rows were last downsampled. Only accessed on the {@link #snapshotExecutor} thread.
+     */
+    private long lastDownsampleHour;
+
+    private final ScheduledExecutorService snapshotExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        var thread = new Thread(runnable, PlanInGamePlayerStatisticsExtension.NAME + " History");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * Creates a new {@code StatHistory}, which doesn't write anything until it has been started.
+     *
+     * @param queryService the {@link QueryService} instance for accessing the database
+     * @param dialect the SQL dialect of the database
+     * @param serverId supplies the ID of this server's partition, which is resolved during initialization
+     * @param playerDictionary the dictionary of player IDs
+     * @param statDictionary the dictionary of statistic IDs
+     */
+    StatHistory(@NotNull QueryService queryService, @NotNull SQLDialect dialect, @NotNull IntSupplier serverId,
+                @NotNull DictionaryTable playerDictionary, @NotNull DictionaryTable statDictionary) {
+        this.queryService = queryService;
+        this.serverId = serverId;
+        this.playerDictionary = playerDictionary;
+        this.statDictionary = statDictionary;
+        this.incrementHistorySql = dialect.incrementSql(HISTORY_TABLE,
+                List.of(SERVER_ID_COLUMN, RESOLUTION_COLUMN, BUCKET_START_COLUMN, PLAYER_ID_COLUMN, STAT_ID_COLUMN), DELTA_COLUMN, List.of());
+    }
+
+    static final String CREATE_HISTORY_TABLE_SQL =
+            "CREATE TABLE IF NOT EXISTS " + HISTORY_TABLE + "(" +
+                    SERVER_ID_COLUMN.withType() + ", " +
+                    RESOLUTION_COLUMN.withType() + ", " +
+                    BUCKET_START_COLUMN.withType() + ", " +
+                    PLAYER_ID_COLUMN.withType() + ", " +
+                    STAT_ID_COLUMN.withType() + ", " +
+                    DELTA_COLUMN.withType() + ", " +
+                    "PRIMARY KEY(" + SERVER_ID_COLUMN + ", " + RESOLUTION_COLUMN + ", " + BUCKET_START_COLUMN + ", " +
+                            PLAYER_ID_COLUMN + ", " + STAT_ID_COLUMN + ")" +
+            ")";
+
+    static final String CREATE_HISTORY_STAT_INDEX_SQL =
+            "CREATE INDEX " + HISTORY_STAT_INDEX + " ON " + HISTORY_TABLE + " (" + STAT_ID_COLUMN + ", " + BUCKET_START_COLUMN + ")";
+
+    static final String DROP_HISTORY_TABLE_SQL =
+            "DROP TABLE IF EXISTS " + HISTORY_TABLE;
+
+    /**
+     * Starts writing completed hours and downsampling old rows at a fixed interval.
+     */
+    void start() {
+        snapshotExecutor.scheduleWithFixedDelay(this::snapshot, SNAPSHOT_INTERVAL_MILLIS, SNAPSHOT_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Adds a written difference of a player's statistic to the current hour. Called once the write has been committed,
+     * so this method only updates memory.
+     *
+     * @param playerId the ID of the player
+     * @param statId the ID of the statistic
+     * @param delta the difference between the written and the previous value
+     */
+    synchronized void recordDelta(int playerId, int statId, long delta) {
+        long hourStart = Resolution.HOUR.getBucketStart(System.currentTimeMillis());
+        pendingDeltas.computeIfAbsent(hourStart, hour -> new Long2LongOpenHashMap())
+                .addTo(((long) playerId << Integer.SIZE) | statId, delta);
+    }
+
+    private void snapshot() {
+        try {
+            long currentTime = System.currentTimeMillis();
+            long currentHour = Resolution.HOUR.getBucketStart(currentTime);
+            writePendingDeltas(currentHour, Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+
+            if (currentHour != lastDownsampleHour) {
+                lastDownsampleHour = currentHour;
+                downsample(currentTime);
+                version.incrementAndGet();
+            }
+        } catch (Exception e) {
+            PlanInGamePlayerStatisticsExtension.LOGGER.error("Exception occurred while writing player statistics history", e);
+        }
+    }
+
+    /**
+     * Writes the pending differences of all hours before the given one, and waits at most the given time for the write
+     * to finish. Differences of a failed write are kept pending, so that they are written again later. Differences of
+     * a write that timed out are not, as it may still finish.
+     *
+     * @param beforeHour the start of the first hour not to write, or {@link Long#MAX_VALUE} to write all hours
+     * @param timeout the maximum time to wait
+     * @param unit the unit of the {@code timeout}
+     */
+    private void writePendingDeltas(long beforeHour, long timeout, TimeUnit unit) throws ExecutionException, InterruptedException, TimeoutException {
+        NavigableMap<Long, Long2LongOpenHashMap> completedDeltas;
+        synchronized (this) {
+            var headMap = pendingDeltas.headMap(beforeHour, false);
+            if (headMap.isEmpty()) return;
+            completedDeltas = new TreeMap<>(headMap);
+            headMap.clear();
+        }
+
+        int server = serverId.getAsInt();
+        try {
+            queryService.execute(incrementHistorySql, statement -> {
+                for (var hourEntry : completedDeltas.entrySet()) {
+                    for (var deltaEntry : hourEntry.getValue().long2LongEntrySet()) {
+                        if (deltaEntry.getLongValue() == 0) continue;
+                        statement.setInt(1, server);
+                        statement.setInt(2, Resolution.HOUR.ordinal());
+                        statement.setLong(3, hourEntry.getKey());
+                        statement.setInt(4, (int) (deltaEntry.getLongKey() >>> Integer.SIZE));
+                        statement.setInt(5, (int) deltaEntry.getLongKey());
+                        statement.setLong(6, deltaEntry.getLongValue());
+                        statement.addBatch();
+                    }
+                }
+                statement.executeBatch();
+            }).get(timeout, unit);
+            version.incrementAndGet();
+        } catch (ExecutionException | InterruptedException e) {
+            synchronized (this) {
+                completedDeltas.forEach((hour, deltas) -> {
+                    var hourDeltas = pendingDeltas.computeIfAbsent(hour, key -> new Long2LongOpenHashMap());
+                    deltas.long2LongEntrySet().forEach(entry -> hourDeltas.addTo(entry.getLongKey(), entry.getLongValue()));
+                });
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Sums the hourly rows of this server that are older than the hourly retention into days, the daily rows older than
+     * the daily retention into weeks, and deletes the weekly rows older than the weekly retention, in a single transaction.
+     * Only whole periods are summed, so that each period is downsampled exactly once.
+     *
+     * @param currentTime the current time in milliseconds since the epoch
+     */
+    private void downsample(long currentTime) throws ExecutionException, InterruptedException {
+        int server = serverId.getAsInt();
+        queryService.execute(DELETE_HISTORY_BEFORE_SQL, statement -> {
+            var connection = statement.getConnection();
+            downsample(connection, server, Resolution.HOUR, Resolution.DAY, Resolution.DAY.getBucketStart(currentTime - Resolution.HOUR.retentionMillis));
+            downsample(connection, server, Resolution.DAY, Resolution.WEEK, Resolution.WEEK.getBucketStart(currentTime - Resolution.DAY.retentionMillis));
+
+            statement.setInt(1, server);
+            statement.setInt(2, Resolution.WEEK.ordinal());
+            statement.setLong(3, currentTime - Resolution.WEEK.retentionMillis);
+            statement.executeUpdate();
+        }).get();
+    }
+
+    /**
+     * Identifies a row of the history within a server's partition and resolution.
+     */
+    private record BucketKey(long bucketStart, int playerId, int statId) {}
+
+    private void downsample(Connection connection, int server, Resolution from, Resolution to, long cutoff) throws SQLException {
+        var sums = new Object2LongLinkedOpenHashMap<BucketKey>();
+        try (var selectStatement = connection.prepareStatement(GET_HISTORY_BEFORE_SQL)) {
+            selectStatement.setInt(1, server);
+            selectStatement.setInt(2, from.ordinal());
+            selectStatement.setLong(3, cutoff);
+            try (var resultSet = selectStatement.executeQuery()) {
+                while (resultSet.next()) {
+                    var bucketKey = new BucketKey(to.getBucketStart(resultSet.getLong(BUCKET_START_COLUMN.name())),
+                            resultSet.getInt(PLAYER_ID_COLUMN.name()), resultSet.getInt(STAT_ID_COLUMN.name()));
+                    sums.addTo(bucketKey, resultSet.getLong(DELTA_COLUMN.name()));
+                }
+            }
+        }
+        if (sums.isEmpty()) return;
+
+        try (var incrementStatement = connection.prepareStatement(incrementHistorySql);
+             var deleteStatement = connection.prepareStatement(DELETE_HISTORY_BEFORE_SQL)) {
+            for (var entry : sums.object2LongEntrySet()) {
+                var bucketKey = entry.getKey();
+                incrementStatement.setInt(1, server);
+                incrementStatement.setInt(2, to.ordinal());
+                incrementStatement.setLong(3, bucketKey.bucketStart());
+                incrementStatement.setInt(4, bucketKey.playerId());
+                incrementStatement.setInt(5, bucketKey.statId());
+                incrementStatement.setLong(6, entry.getLongValue());
+                incrementStatement.addBatch();
+            }
+            incrementStatement.executeBatch();
+
+            deleteStatement.setInt(1, server);
+            deleteStatement.setInt(2, from.ordinal());
+            deleteStatement.setLong(3, cutoff);
+            deleteStatement.executeUpdate();
+        }
+
+        PlanInGamePlayerStatisticsExtension.LOGGER.debug("Downsampled player statistics history into {} {} rows", sums.size(), to.getName());
+    }
+
+    private static final String HISTORY_BEFORE_CONDITION =
+            " WHERE " + SERVER_ID_COLUMN + " = ? AND " + RESOLUTION_COLUMN + " = ? AND " + BUCKET_START_COLUMN + " < ?";
+
+    private static final String GET_HISTORY_BEFORE_SQL =
+            "SELECT " + BUCKET_START_COLUMN + ", " + PLAYER_ID_COLUMN + ", " + STAT_ID_COLUMN + ", " + DELTA_COLUMN +
+            " FROM " + HISTORY_TABLE + HISTORY_BEFORE_CONDITION;
+
+    private static final String DELETE_HISTORY_BEFORE_SQL =
+            "DELETE FROM " + HISTORY_TABLE + HISTORY_BEFORE_CONDITION;
+
+    /**
+     * Returns the current version of the history, which advances whenever the history may have changed.
+     * Like the data version of the {@link DatabaseManager}, it should be read before reading the history.
+     *
+     * @return the current version of the history
+     */
+    public long getVersion() {
+        return version.get();
+    }
+
+    /**
+     * Reads how much a statistic has grown in each period within a time range, from the database.
+     * Only completed hours are included. Without a {@code resolution}, each period is returned at the resolution
+     * it is stored in, which gets coarser with the age of the period. Otherwise, periods stored at a finer resolution
+     * are summed into the given one, while periods stored at a coarser resolution are returned as they are.
+     *
+     * @param statName the name of the statistic
+     * @param playerUUID the UUID of the player, or {@code null} to sum the growth of all players
+     * @param scope whether to read the growth on this server or on all servers sharing the database
+     * @param from the start of the time range in milliseconds since the epoch, inclusive
+     * @param to the end of the time range in milliseconds since the epoch, exclusive
+     * @param resolution the resolution to sum finer periods into, or {@code null} to return periods as they are stored
+     * @return the growth of the statistic in each period within the range, ordered by time
+     */
+    @NotNull
+    public List<Bucket> getBuckets(@NotNull String statName, @Nullable UUID playerUUID, @NotNull DatabaseManager.StatScope scope,
+                                   long from, long to, @Nullable Resolution resolution) {
+        long startTime = System.nanoTime();
+        var statId = statDictionary.getId(statName);
+        var playerId = playerUUID != null ? playerDictionary.getId(playerUUID.toString()) : OptionalInt.empty();
+        if (statId.isEmpty() || (playerUUID != null && playerId.isEmpty())) return new ArrayList<>();
+
+        var sql = GET_STAT_HISTORY_SQL +
+                (scope == DatabaseManager.StatScope.SERVER ? " AND " + SERVER_ID_COLUMN + " = ?" : "") +
+                (playerId.isPresent() ? " AND " + PLAYER_ID_COLUMN + " = ?" : "") +
+                " GROUP BY " + RESOLUTION_COLUMN + ", " + BUCKET_START_COLUMN +
+                " ORDER BY " + BUCKET_START_COLUMN + ", " + RESOLUTION_COLUMN;
+
+        var storedBuckets = queryService.query(sql, statement -> {
+            int parameterIndex = 0;
+            statement.setInt(++parameterIndex, statId.getAsInt());
+            statement.setLong(++parameterIndex, from);
+            statement.setLong(++parameterIndex, to);
+            if (scope == DatabaseManager.StatScope.SERVER) statement.setInt(++parameterIndex, serverId.getAsInt());
+            if (playerId.isPresent()) statement.setInt(++parameterIndex, playerId.getAsInt());
+
+            try (var resultSet = statement.executeQuery()) {
+                var resolutions = Resolution.values();
+                var buckets = new ArrayList<Bucket>();
+                while (resultSet.next()) {
+                    buckets.add(new Bucket(resultSet.getLong(BUCKET_START_COLUMN.name()),
+                            resolutions[resultSet.getInt(RESOLUTION_COLUMN.name())], resultSet.getLong(DELTA_COLUMN.name())));
+                }
+                return buckets;
+            }
+        });
+
+        var buckets = resolution != null ? coarsen(storedBuckets, resolution) : storedBuckets;
+        QUERY_TIME.record(System.nanoTime() - startTime);
+        return buckets;
+    }
+
+    private static final String GET_STAT_HISTORY_SQL =
+            "SELECT " + RESOLUTION_COLUMN + ", " + BUCKET_START_COLUMN + ", SUM(" + DELTA_COLUMN + ") AS " + DELTA_COLUMN +
+            " FROM " + HISTORY_TABLE +
+            " WHERE " + STAT_ID_COLUMN + " = ? AND " + BUCKET_START_COLUMN + " >= ? AND " + BUCKET_START_COLUMN + " < ?";
+
+    /**
+     * Sums the buckets finer than the given resolution into buckets of that resolution.
+     * As the buckets are ordered by time, buckets summed into the same period are adjacent.
+     */
+    private static List<Bucket> coarsen(List<Bucket> buckets, Resolution resolution) {
+        var result = new ArrayList<Bucket>(buckets.size());
+        for (var bucket : buckets) {
+            if (bucket.resolution().compareTo(resolution) < 0) {
+                bucket = new Bucket(resolution.getBucketStart(bucket.start()), resolution, bucket.delta());
+            }
+
+            int lastIndex = result.size() - 1;
+            if (lastIndex >= 0 && result.get(lastIndex).start() == bucket.start() && result.get(lastIndex).resolution() == bucket.resolution()) {
+                result.set(lastIndex, new Bucket(bucket.start(), bucket.resolution(), result.get(lastIndex).delta() + bucket.delta()));
+            } else {
+                result.add(bucket);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Deletes the history of a player on all servers, and discards the player's pending differences.
+     * Called from within the transaction removing the player.
+     *
+     * @param connection the database connection to use
+     * @param playerId the ID of the player
+     * @throws SQLException if an SQL exception occurs while deleting
+     */
+    void removePlayer(@NotNull Connection connection, int playerId) throws SQLException {
+        synchronized (this) {
+            for (var deltas : pendingDeltas.values()) {
+                deltas.keySet().removeIf(key -> (int) (key >>> Integer.SIZE) == playerId);
+            }
+        }
+        try (var deleteStatement = connection.prepareStatement(DELETE_PLAYER_HISTORY_SQL)) {
+            deleteStatement.setInt(1, playerId);
+            deleteStatement.executeUpdate();
+        }
+        version.incrementAndGet();
+    }
+
+    private static final String DELETE_PLAYER_HISTORY_SQL =
+            "DELETE FROM " + HISTORY_TABLE +
+            " WHERE " + PLAYER_ID_COLUMN + " = ?";
+
+    /**
+     * Discards all pending differences, for example because all data is being cleared.
+     */
+    synchronized void clear() {
+        pendingDeltas.clear();
+        version.incrementAndGet();
+    }
+
+    /**
+     * Stops the snapshot thread and writes all pending differences, including those of the current hour,
+     * waiting a bounded time for the write to finish. Should be called after the last values have been written.
+     */
+    void close() {
+        snapshotExecutor.shutdownNow();
+        try {
+            writePendingDeltas(Long.MAX_VALUE, CLOSE_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (TimeoutException e) {
+            PlanInGamePlayerStatisticsExtension.LOGGER.warn("Timed out writing player statistics history to the database");
+        } catch (ExecutionException e) {
+            PlanInGamePlayerStatisticsExtension.LOGGER.error("Exception occurred while writing player statistics history", e);
+        }
+    }
+}
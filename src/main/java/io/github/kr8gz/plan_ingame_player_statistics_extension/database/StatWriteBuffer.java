@@ -0,0 +1,273 @@
+package io.github.kr8gz.plan_ingame_player_statistics_extension.database;
+
+import io.github.kr8gz.plan_ingame_player_statistics_extension.PlanInGamePlayerStatisticsExtension;
+import it.unimi.dsi.fastutil.objects.Object2IntLinkedOpenHashMap;
+import net.minecraft.stat.Stat;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.BiFunction;
+import java.util.function.Predicate;
+
+/**
+ * Buffers statistic updates before they are written to the database, keeping only the latest value of each
+ * statistic of each player, so that updates for the same players arriving in quick succession, such as many players
+ * disconnecting at once right before an autosave, are coalesced into a single write.
+ * <p>
+ * The buffer is flushed by its own thread at a fixed interval, or earlier once it holds {@link #FLUSH_THRESHOLD} values.
+ * Only one write is in flight at a time; values added in the meantime are coalesced until the next flush.
+ * Adding updates never blocks, as they are usually added on the server thread: if the database falls behind,
+ * the buffer keeps coalescing and accepting updates while the flush thread catches up, and a warning is logged
+ * once it exceeds {@link #MAX_BUFFERED_VALUES} values. As each statistic of each player is only held once,
+ * the buffer can't grow beyond the number of distinct values of the players that changed in the meantime.
+ * Values of a failed write are put back into the buffer unless newer values have been added for them in the meantime.
+ * <p>
+ * The buffer also holds the state of each player's statistics file after it was last saved, which is written together
+ * with the values in the same flush. Files are saved after their values were collected, so a recorded state never
+ * refers to values that haven't been written yet.
+ * <p>
+ * Nothing is flushed before {@link #start()} is called, so updates collected during initialization are held back.
+ */
+final class StatWriteBuffer {
+    /**
+     * Identifies a single buffered value.
+     *
+     * @param playerUUID the UUID of the player the statistic belongs to
+     * @param stat the statistic
+     */
+    private record StatKey(@NotNull UUID playerUUID, @NotNull Stat<?> stat) {}
+
+    /**
+     * The interval at which the buffer is flushed.
+     */
+    private static final long FLUSH_INTERVAL_MILLIS = TimeUnit.SECONDS.toMillis(5);
+
+    /**
+     * The number of buffered values at which the buffer is flushed before the next interval has passed.
+     */
+    private static final int FLUSH_THRESHOLD = 5_000;
+
+    /**
+     * The number of buffered values above which a warning is logged, as the database is falling behind.
+     */
+    private static final int MAX_BUFFERED_VALUES = 50_000;
+
+    /**
+     * The minimum interval between warnings about the buffer exceeding {@link #MAX_BUFFERED_VALUES} values.
+     */
+    private static final long FULL_WARNING_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(30);
+
+    /**
+     * The latest buffered value of each statistic of each player, in insertion order.
+     * Only accessed while holding the lock of this {@code StatWriteBuffer}.
+     */
+    private final Object2IntLinkedOpenHashMap<StatKey> bufferedValues = new Object2IntLinkedOpenHashMap<>();
+
+    /**
+     * The latest state of each player's saved statistics file, to be written to the import manifest.
+     * Only accessed while holding the lock of this {@code StatWriteBuffer}.
+     */
+    private final Map<UUID, StatsFileImporter.StatsFileState> bufferedFileStates = new LinkedHashMap<>();
+
+    private final BiFunction<List<StatChangeTracker.StatUpdate>, Map<UUID, StatsFileImporter.StatsFileState>, Future<?>> writer;
+    private final ScheduledExecutorService flushExecutor;
+
+    private boolean started;
+    private boolean closed;
+
+    /**
+     * Whether a flush has been submitted to the {@link #flushExecutor} that hasn't started yet,
+     * so that adding updates to a large buffer doesn't submit another flush each time.
+     */
+    private boolean flushPending;
+
+    private long lastFullWarningTime = System.nanoTime() - FULL_WARNING_INTERVAL_NANOS;
+
+    /**
+     * Creates a new empty {@code StatWriteBuffer}.
+     *
+     * @param writer writes a list of statistic updates and the states of the saved statistics files of some players
+     *               to the database, returning a {@code Future} tracking the write
+     */
+    StatWriteBuffer(@NotNull BiFunction<List<StatChangeTracker.StatUpdate>, Map<UUID, StatsFileImporter.StatsFileState>, Future<?>> writer) {
+        this.writer = writer;
+        this.flushExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            var thread = new Thread(runnable, PlanInGamePlayerStatisticsExtension.NAME + " Stat Writer");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Starts flushing the buffer, immediately and then at a fixed interval.
+     */
+    synchronized void start() {
+        if (started || closed) return;
+        started = true;
+        flushExecutor.scheduleWithFixedDelay(this::flush, 0, FLUSH_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Adds statistic updates to the buffer, replacing buffered values of the same statistics of the same players.
+     * Never blocks beyond the short time needed to insert the values.
+     *
+     * @param statUpdates the statistic updates to add
+     * @return {@code true} if the updates were buffered, or {@code false} if this buffer has been closed
+     */
+    boolean add(@NotNull Collection<StatChangeTracker.StatUpdate> statUpdates) {
+        return add(statUpdates, playerUUID -> true);
+    }
+
+    /**
+     * Adds the statistic updates of the players accepted by a filter to the buffer, replacing buffered values
+     * of the same statistics of the same players. The filter is evaluated while holding the lock of this
+     * {@code StatWriteBuffer}, so no other updates can be added between checking and adding the updates of a player.
+     * Never blocks beyond the short time needed to insert the values.
+     *
+     * @param statUpdates the statistic updates to add
+     * @param playerFilter tells whether the updates of a player should be added
+     * @return {@code true} if the updates were buffered, or {@code false} if this buffer has been closed
+     */
+    synchronized boolean add(@NotNull Collection<StatChangeTracker.StatUpdate> statUpdates, @NotNull Predicate<UUID> playerFilter) {
+        if (closed) return false;
+
+        for (var statUpdate : statUpdates) {
+            if (!playerFilter.test(statUpdate.playerUUID())) continue;
+            bufferedValues.put(new StatKey(statUpdate.playerUUID(), statUpdate.stat()), statUpdate.value());
+        }
+        if (started && bufferedValues.size() >= FLUSH_THRESHOLD) {
+            requestFlush();
+
+            long currentTime = System.nanoTime();
+            if (bufferedValues.size() >= MAX_BUFFERED_VALUES && currentTime - lastFullWarningTime >= FULL_WARNING_INTERVAL_NANOS) {
+                lastFullWarningTime = currentTime;
+                PlanInGamePlayerStatisticsExtension.LOGGER.warn("Statistic write buffer holds {} values, the database is falling behind", bufferedValues.size());
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Adds the state of a player's statistics file after it was saved, replacing any buffered state of the same player.
+     * Must be called after the values saved to the file have been added.
+     *
+     * @param playerUUID the UUID of the player the file belongs to
+     * @param fileState the state of the file
+     * @return {@code true} if the state was buffered, or {@code false} if this buffer has been closed
+     */
+    synchronized boolean addFileState(@NotNull UUID playerUUID, @NotNull StatsFileImporter.StatsFileState fileState) {
+        if (closed) return false;
+        bufferedFileStates.put(playerUUID, fileState);
+        return true;
+    }
+
+    /**
+     * Submits a flush unless one is already waiting to run. Must be called while holding the lock of this {@code StatWriteBuffer}.
+     */
+    private void requestFlush() {
+        if (flushPending) return;
+        flushPending = true;
+        flushExecutor.execute(this::flush);
+    }
+
+    /**
+     * Removes all buffered values and the buffered file state of a player, for example because the player was removed from the database.
+     *
+     * @param playerUUID the UUID of the player
+     */
+    synchronized void removePlayer(@NotNull UUID playerUUID) {
+        bufferedValues.keySet().removeIf(statKey -> statKey.playerUUID().equals(playerUUID));
+        bufferedFileStates.remove(playerUUID);
+    }
+
+    /**
+     * Removes all buffered values and file states.
+     */
+    synchronized void clear() {
+        bufferedValues.clear();
+        bufferedFileStates.clear();
+    }
+
+    /**
+     * @return the number of values currently waiting to be written
+     */
+    synchronized int size() {
+        return bufferedValues.size();
+    }
+
+    /**
+     * Writes all buffered values and waits for the write to finish. Only called on the {@link #flushExecutor} thread,
+     * so there is never more than one write in flight.
+     */
+    private void flush() {
+        List<StatChangeTracker.StatUpdate> statUpdates;
+        Map<UUID, StatsFileImporter.StatsFileState> fileStates;
+        synchronized (this) {
+            flushPending = false;
+            if (bufferedValues.isEmpty() && bufferedFileStates.isEmpty()) return;
+
+            statUpdates = new ArrayList<>(bufferedValues.size());
+            for (var entry : bufferedValues.object2IntEntrySet()) {
+                var statKey = entry.getKey();
+                statUpdates.add(new StatChangeTracker.StatUpdate(statKey.playerUUID(), statKey.stat(), entry.getIntValue()));
+            }
+            bufferedValues.clear();
+
+            fileStates = new LinkedHashMap<>(bufferedFileStates);
+            bufferedFileStates.clear();
+        }
+
+        try {
+            writer.apply(statUpdates, fileStates).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            requeue(statUpdates, fileStates);
+        } catch (Exception e) {
+            PlanInGamePlayerStatisticsExtension.LOGGER.error("Exception occurred while writing {} buffered player statistics, retrying later", statUpdates.size(), e);
+            requeue(statUpdates, fileStates);
+        }
+    }
+
+    private synchronized void requeue(List<StatChangeTracker.StatUpdate> statUpdates, Map<UUID, StatsFileImporter.StatsFileState> fileStates) {
+        if (closed) return;
+        for (var statUpdate : statUpdates) {
+            bufferedValues.putIfAbsent(new StatKey(statUpdate.playerUUID(), statUpdate.stat()), statUpdate.value());
+        }
+        fileStates.forEach(bufferedFileStates::putIfAbsent);
+    }
+
+    /**
+     * Stops accepting updates, writes all buffered values and waits at most the given time for the write to finish.
+     * If this buffer was never started, the buffered values are discarded instead.
+     *
+     * @param timeout the maximum time to wait
+     * @param unit the unit of the {@code timeout}
+     */
+    void close(long timeout, @NotNull TimeUnit unit) {
+        synchronized (this) {
+            if (closed) return;
+            if (started) {
+                requestFlush();
+            } else {
+                if (!bufferedValues.isEmpty()) {
+                    PlanInGamePlayerStatisticsExtension.LOGGER.warn("Discarding {} buffered player statistics", bufferedValues.size());
+                }
+                bufferedValues.clear();
+                bufferedFileStates.clear();
+            }
+            closed = true;
+        }
+
+        flushExecutor.shutdown();
+        try {
+            if (!flushExecutor.awaitTermination(timeout, unit)) {
+                PlanInGamePlayerStatisticsExtension.LOGGER.warn("Timed out writing buffered player statistics to the database");
+                flushExecutor.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            flushExecutor.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,230 @@
+package io.github.kr8gz.plan_ingame_player_statistics_extension.database;
+
+import io.github.kr8gz.plan_ingame_player_statistics_extension.PlanInGamePlayerStatisticsExtension;
+import net.minecraft.server.MinecraftServer;
+import net.minecraft.stat.ServerStatHandler;
+import org.apache.commons.io.FilenameUtils;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+/**
+ * Imports player statistics files into the database while keeping memory usage independent of the number of files.
+ * <p>
+ * Files are parsed in parallel by a pool of worker threads, which hand the parsed {@link ServerStatHandler}s
+ * to the importing thread through a bounded queue. The importing thread groups them into batches of a fixed size
+ * and writes one batch at a time, waiting for the previous batch to be written before submitting the next one.
+ * Workers block while the queue is full, so at most a few batches worth of parsed files are held in memory at once.
+ */
+final class StatsFileImporter {
+    /**
+     * Represents the state of a statistics file on disk, used to detect whether it changed since it was last imported.
+     *
+     * @param fileSize the size of the file in bytes
+     * @param lastModified the last modification time of the file in milliseconds since the epoch
+     */
+    record StatsFileState(long fileSize, long lastModified) {
+        /**
+         * Reads the current state of a statistics file.
+         *
+         * @param path the path of the file
+         * @return the current state of the file
+         * @throws IOException if the file attributes can't be read
+         */
+        @NotNull
+        static StatsFileState read(@NotNull Path path) throws IOException {
+            var attributes = Files.readAttributes(path, BasicFileAttributes.class);
+            return new StatsFileState(attributes.size(), attributes.lastModifiedTime().toMillis());
+        }
+    }
+
+    /**
+     * Represents a player statistics file to be imported.
+     *
+     * @param path the path of the file
+     * @param playerUUID the UUID of the player the file belongs to
+     * @param state the state of the file at the time it was listed, before being parsed
+     */
+    record StatsFile(@NotNull Path path, @NotNull UUID playerUUID, @NotNull StatsFileState state) {
+        /**
+         * Reads the state of a player statistics file.
+         *
+         * @param path the path of the file
+         * @return a {@code StatsFile} containing the current state of the file
+         * @throws IOException if the file attributes can't be read
+         * @throws IllegalArgumentException if the file name is not a player UUID
+         */
+        @NotNull
+        static StatsFile read(@NotNull Path path) throws IOException {
+            var playerUUID = UUID.fromString(FilenameUtils.getBaseName(path.toString()));
+            return new StatsFile(path, playerUUID, StatsFileState.read(path));
+        }
+    }
+
+    /**
+     * Represents a player statistics file that has been parsed.
+     *
+     * @param file the statistics file that was parsed
+     * @param statHandler the {@link ServerStatHandler} containing the parsed statistics
+     */
+    record ParsedStatsFile(@NotNull StatsFile file, @NotNull ServerStatHandler statHandler) {}
+
+    /**
+     * The number of statistics files written to the database in a single batch.
+     */
+    private static final int BATCH_SIZE = 100;
+
+    /**
+     * The maximum number of parsed statistics files waiting to be added to a batch.
+     */
+    private static final int QUEUE_CAPACITY = 2 * BATCH_SIZE;
+
+    /**
+     * The minimum interval between progress messages in the log.
+     */
+    private static final long PROGRESS_LOG_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(5);
+
+    /**
+     * The maximum time to wait for the next parsed statistics file, after which a worker is assumed to have died
+     * without handing over its result, and the import fails instead of waiting forever.
+     */
+    private static final long PARSE_TIMEOUT_SECONDS = 60;
+
+    private final @NotNull Function<Collection<ParsedStatsFile>, Optional<Future<?>>> batchWriter;
+
+    private final AtomicInteger writtenFiles = new AtomicInteger();
+    private volatile int totalFiles;
+
+    /**
+     * Creates a new {@code StatsFileImporter}.
+     *
+     * @param batchWriter a function that submits a batch of parsed statistics to be written to the database
+     */
+    StatsFileImporter(@NotNull Function<Collection<ParsedStatsFile>, Optional<Future<?>>> batchWriter) {
+        this.batchWriter = batchWriter;
+    }
+
+    /**
+     * Parses and writes the given player statistics files to the database, blocking until all of them are written.
+     * Files that can't be parsed are logged and skipped.
+     *
+     * @param server the Minecraft server the statistics files belong to
+     * @param statsFiles the statistics files to import
+     * @throws DatabaseInitializationException if the import is interrupted, a file isn't parsed in time or a batch could not be written
+     */
+    void importFiles(@NotNull MinecraftServer server, @NotNull List<StatsFile> statsFiles) throws DatabaseInitializationException {
+        writtenFiles.set(0);
+        totalFiles = statsFiles.size();
+        if (statsFiles.isEmpty()) return;
+
+        int workerCount = Math.min(statsFiles.size(), Math.max(1, Runtime.getRuntime().availableProcessors() - 1));
+        var workerPool = Executors.newFixedThreadPool(workerCount, createThreadFactory());
+        var parsedStatsFiles = new ArrayBlockingQueue<Optional<ParsedStatsFile>>(QUEUE_CAPACITY);
+
+        try {
+            for (StatsFile statsFile : statsFiles) {
+                workerPool.execute(() -> {
+                    Optional<ParsedStatsFile> parsedStatsFile = Optional.empty();
+                    try {
+                        var statHandler = new ServerStatHandler(server, statsFile.path().toFile());
+                        parsedStatsFile = Optional.of(new ParsedStatsFile(statsFile, statHandler));
+                    } catch (RuntimeException e) {
+                        PlanInGamePlayerStatisticsExtension.LOGGER.error("Couldn't parse player statistics file {}", statsFile.path(), e);
+                    } finally {
+                        // always hand over a result, even if parsing threw an Error, so that the importing thread doesn't wait for it
+                        try {
+                            parsedStatsFiles.put(parsedStatsFile);
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                        }
+                    }
+                });
+            }
+
+            writeBatches(parsedStatsFiles, statsFiles.size());
+        } finally {
+            workerPool.shutdownNow();
+        }
+    }
+
+    /**
+     * Takes the parsed statistics files from the queue and writes them to the database in batches,
+     * until the expected number of files has been taken. Logs the progress and throughput periodically.
+     *
+     * @param parsedStatsFiles the queue containing parsed statistics files, or empty optionals for files that couldn't be parsed
+     * @param fileCount the total number of files to be taken from the queue
+     * @throws DatabaseInitializationException if the thread is interrupted, a file isn't parsed in time or a batch could not be written
+     */
+    private void writeBatches(BlockingQueue<Optional<ParsedStatsFile>> parsedStatsFiles, int fileCount) throws DatabaseInitializationException {
+        long startTime = System.nanoTime();
+        long lastProgressLogTime = startTime;
+        Future<?> pendingBatch = null;
+        var batch = new ArrayList<ParsedStatsFile>(BATCH_SIZE);
+
+        try {
+            for (int taken = 1; taken <= fileCount; taken++) {
+                var parsedStatsFile = parsedStatsFiles.poll(PARSE_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+                if (parsedStatsFile == null) {
+                    throw new DatabaseInitializationException("Timed out waiting for player statistics file to be parsed", null);
+                }
+                parsedStatsFile.ifPresent(batch::add);
+                if (batch.size() < BATCH_SIZE && taken < fileCount) continue;
+
+                // wait for the previous batch before submitting the next one, so that batches don't pile up in memory
+                if (pendingBatch != null) pendingBatch.get();
+                writtenFiles.set(taken - batch.size());
+                pendingBatch = batchWriter.apply(batch).orElse(null);
+                batch = new ArrayList<>(BATCH_SIZE);
+
+                long now = System.nanoTime();
+                if (now - lastProgressLogTime >= PROGRESS_LOG_INTERVAL_NANOS) {
+                    lastProgressLogTime = now;
+                    PlanInGamePlayerStatisticsExtension.LOGGER.info("Imported {}/{} player statistics files ({} files/s)",
+                            taken, fileCount, getFilesPerSecond(taken, now - startTime));
+                }
+            }
+            if (pendingBatch != null) pendingBatch.get();
+            writtenFiles.set(fileCount);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new DatabaseInitializationException("Interrupted while importing player statistics files", e);
+        } catch (ExecutionException e) {
+            throw new DatabaseInitializationException("Exception occurred while writing player statistics to database", e);
+        }
+
+        long elapsedTime = System.nanoTime() - startTime;
+        PlanInGamePlayerStatisticsExtension.LOGGER.info("Successfully loaded {} player statistics files from server into database in {} ms ({} files/s)",
+                fileCount, TimeUnit.NANOSECONDS.toMillis(elapsedTime), getFilesPerSecond(fileCount, elapsedTime));
+    }
+
+    /**
+     * Returns the progress of the current or last import as a percentage of the files that have been written,
+     * counting skipped files as written. Can be called from any thread.
+     *
+     * @return the import progress between {@code 0} and {@code 100}
+     */
+    int getProgressPercent() {
+        int total = totalFiles;
+        return total > 0 ? (int) (100L * writtenFiles.get() / total) : 100;
+    }
+
+    private static long getFilesPerSecond(int files, long elapsedNanos) {
+        return elapsedNanos > 0 ? files * TimeUnit.SECONDS.toNanos(1) / elapsedNanos : files;
+    }
+
+    private static ThreadFactory createThreadFactory() {
+        var threadCount = new AtomicInteger();
+        return runnable -> {
+            var thread = new Thread(runnable, "%s Import Worker #%d".formatted(PlanInGamePlayerStatisticsExtension.NAME, threadCount.incrementAndGet()));
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+}
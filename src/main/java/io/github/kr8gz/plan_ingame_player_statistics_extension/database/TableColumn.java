@@ -0,0 +1,43 @@
+package io.github.kr8gz.plan_ingame_player_statistics_extension.database;
+
+import org.apache.logging.log4j.core.config.plugins.validation.constraints.NotBlank;
+
+/**
+ * Represents a table column in the database with a name and an SQL data type.
+ *
+ * @param name the name of the table column
+ * @param type the SQL data type of the table column
+ */
+record TableColumn(@NotBlank String name, @NotBlank String type) {
+    /**
+     * Returns the name of this table column, for convenient usage in string concatenations.
+     *
+     * @return the name of this table column
+     */
+    @Override
+    public String toString() {
+        return name;
+    }
+
+    /**
+     * Returns a formatted string containing the name and SQL data type of this table column, separated by a space.
+     * This method is useful for generating SQL statements such as those for creating tables,
+     * where both the column name and data type need to be specified.
+     *
+     * @return the name and SQL data type of this table column separated by space
+     */
+    public String withType() {
+        return "%s %s".formatted(name, type);
+    }
+
+    /**
+     * Returns the name of this table column qualified with the specified table name or alias,
+     * for use in SQL statements that reference multiple tables.
+     *
+     * @param table the name or alias of the table this column belongs to
+     * @return the qualified name of this table column
+     */
+    public String of(@NotBlank String table) {
+        return "%s.%s".formatted(table, name);
+    }
+}
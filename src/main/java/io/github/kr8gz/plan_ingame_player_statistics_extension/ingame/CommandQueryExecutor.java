@@ -0,0 +1,169 @@
+package io.github.kr8gz.plan_ingame_player_statistics_extension.ingame;
+
+import com.mojang.brigadier.Command;
+import io.github.kr8gz.plan_ingame_player_statistics_extension.PlanInGamePlayerStatisticsExtension;
+import io.github.kr8gz.plan_ingame_player_statistics_extension.common.PlanHook;
+import io.github.kr8gz.plan_ingame_player_statistics_extension.database.DatabaseManager;
+import net.minecraft.command.CommandException;
+import net.minecraft.server.command.ServerCommandSource;
+import net.minecraft.text.Text;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.*;
+
+/**
+ * Runs the database queries of in-game commands on a dedicated thread, so that commands never block the server thread,
+ * and sends their feedback back on the server thread once the query has finished.
+ * <p>
+ * Each player can only run one query at a time, and has to wait {@link #COOLDOWN_MILLIS} between queries.
+ * Queries of a player who disconnects are cancelled, so that no feedback is sent and queries that haven't started
+ * yet don't run at all. Queries from the console and command blocks are not limited.
+ */
+public final class CommandQueryExecutor {
+    /**
+     * The time a player has to wait after starting a query before starting the next one.
+     */
+    private static final long COOLDOWN_MILLIS = 3_000;
+
+    /**
+     * The maximum number of queries waiting to run, after which new queries are rejected.
+     */
+    private static final int MAX_QUEUED_QUERIES = 32;
+
+    private static final ExecutorService EXECUTOR = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<>(MAX_QUEUED_QUERIES), runnable -> {
+                var thread = new Thread(runnable, PlanInGamePlayerStatisticsExtension.NAME + " Command Executor");
+                thread.setDaemon(true);
+                return thread;
+            });
+
+    /**
+     * The time each player last started a query, in milliseconds since the epoch.
+     */
+    private static final Map<UUID, Long> LAST_QUERY_TIMES = new ConcurrentHashMap<>();
+
+    /**
+     * The query each player is currently running. Only modified on the server thread.
+     */
+    private static final Map<UUID, Future<?>> RUNNING_QUERIES = new ConcurrentHashMap<>();
+
+    private CommandQueryExecutor() {}
+
+    /**
+     * Reads data for a command from the database. Runs on the executor thread.
+     *
+     * @param <T> the type of the data
+     */
+    @FunctionalInterface
+    public interface Query<T> {
+        T run(@NotNull DatabaseManager databaseManager);
+    }
+
+    /**
+     * Sends the data read by a {@link Query} to the source of the command. Runs on the server thread.
+     * May throw a {@link CommandException}, whose message is sent to the source as an error.
+     *
+     * @param <T> the type of the data
+     */
+    @FunctionalInterface
+    public interface Feedback<T> {
+        void send(@NotNull ServerCommandSource source, T result);
+    }
+
+    /**
+     * Submits a query for a command, which must be called on the server thread.
+     *
+     * @param source the source of the command
+     * @param query the query reading the data for the command
+     * @param feedback sends the data to the {@code source}
+     * @return the result of the command, which is always successful if the query was submitted
+     * @throws CommandException if the database is not ready, the player is on cooldown or too many queries are waiting
+     */
+    public static <T> int submit(@NotNull ServerCommandSource source, @NotNull Query<T> query, @NotNull Feedback<T> feedback) {
+        var databaseManager = getReadyDatabaseManager();
+        var player = source.getPlayer();
+        var playerUUID = player != null ? player.getUuid() : null;
+
+        if (playerUUID != null) {
+            if (RUNNING_QUERIES.containsKey(playerUUID)) {
+                throw new CommandException(Text.literal("Your previous command is still running"));
+            }
+
+            long currentTime = System.currentTimeMillis();
+            var lastQueryTime = LAST_QUERY_TIMES.get(playerUUID);
+            if (lastQueryTime != null && currentTime - lastQueryTime < COOLDOWN_MILLIS) {
+                long remainingSeconds = TimeUnit.MILLISECONDS.toSeconds(COOLDOWN_MILLIS - (currentTime - lastQueryTime) + 999);
+                throw new CommandException(Text.literal("Please wait %s more second(s) before using this command again".formatted(remainingSeconds)));
+            }
+        }
+
+        CompletableFuture<T> future;
+        try {
+            future = CompletableFuture.supplyAsync(() -> query.run(databaseManager), EXECUTOR);
+        } catch (RejectedExecutionException e) {
+            throw new CommandException(Text.literal("Too many commands are running, please try again later"));
+        }
+
+        if (playerUUID != null) {
+            LAST_QUERY_TIMES.put(playerUUID, System.currentTimeMillis());
+            // registered before the completion callback, which may run immediately if the query has already finished
+            RUNNING_QUERIES.put(playerUUID, future);
+        }
+
+        var server = source.getServer();
+        future.whenComplete((result, throwable) -> server.execute(() -> {
+            if (playerUUID != null) RUNNING_QUERIES.remove(playerUUID, future);
+            if (future.isCancelled()) return;
+
+            var cause = throwable instanceof CompletionException ? throwable.getCause() : throwable;
+            if (cause == null) {
+                try {
+                    feedback.send(source, result);
+                    return;
+                } catch (CommandException e) {
+                    cause = e;
+                }
+            }
+
+            if (cause instanceof CommandException e) {
+                source.sendError(e.getTextMessage());
+            } else {
+                PlanInGamePlayerStatisticsExtension.LOGGER.error("Exception occurred while running command query", cause);
+                source.sendError(Text.literal("An error occurred while running this command, check the server log"));
+            }
+        }));
+        return Command.SINGLE_SUCCESS;
+    }
+
+    /**
+     * Cancels the running query of a player and forgets their cooldown, which should be done once the player has
+     * disconnected. A query that is already reading from the database can't be interrupted, but its result is discarded.
+     *
+     * @param playerUUID the UUID of the player
+     */
+    public static void cancelQueries(@NotNull UUID playerUUID) {
+        var future = RUNNING_QUERIES.remove(playerUUID);
+        if (future != null) future.cancel(true);
+        LAST_QUERY_TIMES.remove(playerUUID);
+    }
+
+    /**
+     * Cancels all queries and stops the executor thread. Should be called when the server is stopping.
+     */
+    public static void shutdown() {
+        RUNNING_QUERIES.values().forEach(future -> future.cancel(true));
+        RUNNING_QUERIES.clear();
+        EXECUTOR.shutdownNow();
+    }
+
+    private static DatabaseManager getReadyDatabaseManager() {
+        var databaseManager = PlanHook.getDatabaseManager().orElseThrow(() -> new CommandException(Text.literal("Plan is not enabled!")));
+        return switch (databaseManager.getState()) {
+            case READY -> databaseManager;
+            case FAILED -> throw new CommandException(Text.literal("Database initialization failed, check the server log"));
+            default -> throw new CommandException(Text.literal("Database is still initializing (%s%%)".formatted(databaseManager.getInitializationProgress())));
+        };
+    }
+}
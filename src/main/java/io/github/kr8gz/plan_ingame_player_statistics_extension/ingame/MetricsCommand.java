@@ -0,0 +1,75 @@
+package io.github.kr8gz.plan_ingame_player_statistics_extension.ingame;
+
+import com.mojang.brigadier.Command;
+import com.mojang.brigadier.CommandDispatcher;
+import com.mojang.brigadier.context.CommandContext;
+import io.github.kr8gz.plan_ingame_player_statistics_extension.common.PlanHook;
+import io.github.kr8gz.plan_ingame_player_statistics_extension.metrics.ExtensionMetrics;
+import net.minecraft.server.command.CommandManager;
+import net.minecraft.server.command.ServerCommandSource;
+import net.minecraft.text.Text;
+
+import java.util.Locale;
+
+/**
+ * Shows the operational metrics of this extension to server administrators, so that they can tell
+ * whether the extension is the cause of lag. The same metrics are available from the {@code /v1/ingameStats/metrics} endpoint.
+ */
+public class MetricsCommand {
+    private static final String CACHE_METER_PREFIX = "web.cache.";
+    private static final String CACHE_HITS_SUFFIX = ".hits";
+    private static final String CACHE_MISSES_SUFFIX = ".misses";
+
+    public static void register(CommandDispatcher<ServerCommandSource> dispatcher) {
+        dispatcher.register(CommandManager.literal("ingamestats")
+                .then(CommandManager.literal("metrics")
+                        .requires(source -> source.hasPermissionLevel(4))
+                        .executes(MetricsCommand::executeMetrics)
+                        .then(CommandManager.literal("reset")
+                                .executes(MetricsCommand::executeReset)))
+        );
+    }
+
+    private static int executeMetrics(CommandContext<ServerCommandSource> context) {
+        var source = context.getSource();
+
+        PlanHook.getDatabaseManager().ifPresentOrElse(databaseManager -> {
+            var updateStatistics = databaseManager.getUpdateStatistics();
+            sendLine(source, "Database: %s | %d values buffered".formatted(
+                    databaseManager.getState().name().toLowerCase(Locale.ROOT), updateStatistics.valuesBuffered()));
+        }, () -> sendLine(source, "Database: not available"));
+
+        var meters = ExtensionMetrics.getMeters();
+        meters.forEach((name, meter) -> {
+            if (name.startsWith(CACHE_METER_PREFIX)) return;
+            sendLine(source, "%s: %d (%.1f/s)".formatted(name, meter.getCount(), meter.getRatePerSecond()));
+        });
+        meters.forEach((name, hits) -> {
+            if (!name.startsWith(CACHE_METER_PREFIX) || !name.endsWith(CACHE_HITS_SUFFIX)) return;
+
+            var cacheName = name.substring(0, name.length() - CACHE_HITS_SUFFIX.length());
+            var misses = meters.get(cacheName + CACHE_MISSES_SUFFIX);
+            long total = hits.getCount() + (misses != null ? misses.getCount() : 0);
+            double hitRate = total > 0 ? 100.0 * hits.getCount() / total : 0;
+            sendLine(source, "%s: %.1f%% hits of %d".formatted(cacheName, hitRate, total));
+        });
+
+        ExtensionMetrics.getHistogramSnapshots().forEach((name, snapshot) -> {
+            if (snapshot.count() == 0) return;
+            sendLine(source, "%s: n=%d | p50 %.1f | p99 %.1f | max %.1f %s".formatted(
+                    name, snapshot.count(), snapshot.p50(), snapshot.p99(), snapshot.max(), snapshot.unit()));
+        });
+        return Command.SINGLE_SUCCESS;
+    }
+
+    private static int executeReset(CommandContext<ServerCommandSource> context) {
+        ExtensionMetrics.reset();
+        context.getSource().sendFeedback(() -> Text.literal("Metrics have been reset"), true);
+        return Command.SINGLE_SUCCESS;
+    }
+
+    private static void sendLine(ServerCommandSource source, String line) {
+        var message = Text.literal(line);
+        source.sendFeedback(() -> message, false);
+    }
+}
@@ -0,0 +1,120 @@
+package io.github.kr8gz.plan_ingame_player_statistics_extension.ingame;
+
+import com.mojang.authlib.GameProfile;
+import com.mojang.brigadier.CommandDispatcher;
+import com.mojang.brigadier.arguments.IntegerArgumentType;
+import com.mojang.brigadier.context.CommandContext;
+import com.mojang.brigadier.exceptions.CommandSyntaxException;
+import io.github.kr8gz.plan_ingame_player_statistics_extension.database.DatabaseManager;
+import net.minecraft.command.CommandException;
+import net.minecraft.command.argument.GameProfileArgumentType;
+import net.minecraft.command.argument.ScoreboardCriterionArgumentType;
+import net.minecraft.server.command.CommandManager;
+import net.minecraft.server.command.ServerCommandSource;
+import net.minecraft.stat.Stat;
+import net.minecraft.text.Text;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Shows leaderboards and player statistics from the in-game player statistics database.
+ * The database is queried by the {@link CommandQueryExecutor}, so the commands don't block the server thread.
+ * <ul>
+ *     <li>{@code /ingamestats top <stat> [<page>]} shows a page of a statistic's leaderboard</li>
+ *     <li>{@code /ingamestats player [<player>]} shows the statistics a player ranks best in</li>
+ * </ul>
+ */
+public class StatsCommand {
+    private static final String STAT_ARGUMENT_NAME = "stat";
+    private static final String PAGE_ARGUMENT_NAME = "page";
+    private static final String PLAYER_ARGUMENT_NAME = "player";
+
+    private static final int ENTRIES_PER_PAGE = 10;
+
+    /**
+     * The largest page whose offset still fits into an {@code int}.
+     */
+    private static final int MAX_PAGE = Integer.MAX_VALUE / ENTRIES_PER_PAGE;
+
+    public static void register(CommandDispatcher<ServerCommandSource> dispatcher) {
+        dispatcher.register(CommandManager.literal("ingamestats")
+                .then(CommandManager.literal("top")
+                        .then(CommandManager.argument(STAT_ARGUMENT_NAME, ScoreboardCriterionArgumentType.scoreboardCriterion())
+                                .executes(context -> executeTop(context, 1))
+                                .then(CommandManager.argument(PAGE_ARGUMENT_NAME, IntegerArgumentType.integer(1, MAX_PAGE))
+                                        .executes(context -> executeTop(context, IntegerArgumentType.getInteger(context, PAGE_ARGUMENT_NAME))))))
+                .then(CommandManager.literal("player")
+                        .executes(StatsCommand::executePlayerSelf)
+                        .then(CommandManager.argument(PLAYER_ARGUMENT_NAME, GameProfileArgumentType.gameProfile())
+                                .executes(StatsCommand::executePlayer)))
+        );
+    }
+
+    /**
+     * Represents a player's value on a statistic's leaderboard.
+     *
+     * @param rank the player's rank on the leaderboard, which is shared by players with equal values
+     * @param playerUUID the UUID of the player
+     * @param value the value of the statistic
+     */
+    private record LeaderboardEntry(int rank, UUID playerUUID, int value) {}
+
+    private static int executeTop(CommandContext<ServerCommandSource> context, int page) {
+        if (!(ScoreboardCriterionArgumentType.getCriterion(context, STAT_ARGUMENT_NAME) instanceof Stat<?> stat)) {
+            throw new CommandException(Text.literal("Unknown stat"));
+        }
+
+        // the stat name is read on the server thread, as creating it may modify the registered stats
+        var statName = stat.getName();
+        int offset = (page - 1) * ENTRIES_PER_PAGE;
+        return CommandQueryExecutor.submit(context.getSource(), databaseManager -> {
+            var entries = new ArrayList<LeaderboardEntry>(ENTRIES_PER_PAGE);
+            databaseManager.forEachStatValue(List.of(statName), new DatabaseManager.StatPage(offset, ENTRIES_PER_PAGE, false),
+                    (statIndex, playerUUID, value) -> entries.add(new LeaderboardEntry(
+                            databaseManager.getStatRank(statName, value, DatabaseManager.StatScope.SERVER), UUID.fromString(playerUUID), value)));
+            return entries;
+        }, (source, entries) -> {
+            if (entries.isEmpty()) throw new CommandException(Text.literal(page == 1 ? "No data" : "No data on page " + page));
+
+            source.sendFeedback(() -> Text.literal("%s (page %d)".formatted(statName, page)), false);
+            var userCache = source.getServer().getUserCache();
+            for (var entry : entries) {
+                var playerName = userCache != null
+                        ? userCache.getByUuid(entry.playerUUID()).map(GameProfile::getName).orElse(entry.playerUUID().toString())
+                        : entry.playerUUID().toString();
+                var message = Text.literal("#%d %s: %s".formatted(entry.rank(), playerName, stat.format(entry.value())));
+                source.sendFeedback(() -> message, false);
+            }
+        });
+    }
+
+    private static int executePlayerSelf(CommandContext<ServerCommandSource> context) throws CommandSyntaxException {
+        var player = context.getSource().getPlayerOrThrow();
+        return showPlayerStats(context.getSource(), player.getGameProfile());
+    }
+
+    private static int executePlayer(CommandContext<ServerCommandSource> context) throws CommandSyntaxException {
+        var profiles = GameProfileArgumentType.getProfileArgument(context, PLAYER_ARGUMENT_NAME);
+        if (profiles.size() != 1) throw new CommandException(Text.literal("Please specify a single player"));
+        return showPlayerStats(context.getSource(), profiles.iterator().next());
+    }
+
+    private static int showPlayerStats(ServerCommandSource source, GameProfile profile) {
+        var playerUUID = profile.getId();
+        return CommandQueryExecutor.submit(source, databaseManager -> databaseManager.getPlayerTopStats(playerUUID), (feedbackSource, playerTopStats) -> {
+            if (playerTopStats.isEmpty()) throw new CommandException(Text.literal("No data for " + profile.getName()));
+
+            feedbackSource.sendFeedback(() -> Text.literal("Top statistics of " + profile.getName()), false);
+            for (var rankedStatistic : playerTopStats.subList(0, Math.min(ENTRIES_PER_PAGE, playerTopStats.size()))) {
+                var formattedValue = Stat.getOrCreateStatCriterion(rankedStatistic.statName())
+                        .filter(Stat.class::isInstance)
+                        .map(criterion -> ((Stat<?>) criterion).format(rankedStatistic.statValue()))
+                        .orElse(String.valueOf(rankedStatistic.statValue()));
+                var message = Text.literal("#%d %s: %s".formatted(rankedStatistic.rank(), rankedStatistic.statName(), formattedValue));
+                feedbackSource.sendFeedback(() -> message, false);
+            }
+        });
+    }
+}
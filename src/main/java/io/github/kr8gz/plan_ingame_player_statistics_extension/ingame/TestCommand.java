@@ -13,8 +13,6 @@ import net.minecraft.server.command.ServerCommandSource;
 import net.minecraft.stat.Stat;
 import net.minecraft.text.Text;
 
-import java.util.Optional;
-
 // remove or deactivate this class before releasing
 public class TestCommand {
     private static final String STAT_ARGUMENT_NAME = "stat";
@@ -28,42 +26,54 @@ public class TestCommand {
                 .then(CommandManager.literal("ranked")
                         .then(CommandManager.argument(UUID_ARGUMENT_NAME, UuidArgumentType.uuid())
                                 .executes(TestCommand::executeRanked)))
+                .then(CommandManager.literal("updates")
+                        .executes(TestCommand::executeUpdates))
         );
     }
 
     private static int executeSimple(CommandContext<ServerCommandSource> context) {
-        var statMap = Stat.getOrCreateStatCriterion(StringArgumentType.getString(context, STAT_ARGUMENT_NAME))
-                .flatMap(scoreboardCriterion -> {
-                    if (scoreboardCriterion instanceof Stat<?> stat) {
-                        return Optional.of(getDatabaseManager().getStatForAllPlayers(stat));
-                    } else {
-                        return Optional.empty();
-                    }
-                })
+        var stat = Stat.getOrCreateStatCriterion(StringArgumentType.getString(context, STAT_ARGUMENT_NAME))
+                .filter(Stat.class::isInstance)
+                .map(scoreboardCriterion -> (Stat<?>) scoreboardCriterion)
                 .orElseThrow(() -> new CommandException(Text.literal("Unknown stat")));
 
-        if (statMap.isEmpty()) {
-            context.getSource().sendFeedback(() -> Text.literal("No data"), false);
-        } else {
-            statMap.forEach((uuid, value) -> {
-                var message = Text.literal("%s | %s".formatted(uuid, value));
-                context.getSource().sendFeedback(() -> message, false);
-            });
-        }
-        return Command.SINGLE_SUCCESS;
+        return CommandQueryExecutor.submit(context.getSource(), databaseManager -> databaseManager.getStatForAllPlayers(stat), (source, statMap) -> {
+            if (statMap.isEmpty()) {
+                source.sendFeedback(() -> Text.literal("No data"), false);
+            } else {
+                statMap.forEach((uuid, value) -> {
+                    var message = Text.literal("%s | %s".formatted(uuid, value));
+                    source.sendFeedback(() -> message, false);
+                });
+            }
+        });
     }
 
     private static int executeRanked(CommandContext<ServerCommandSource> context) {
-        var playerTopStats = getDatabaseManager().getPlayerTopStats(UuidArgumentType.getUuid(context, UUID_ARGUMENT_NAME));
-        if (playerTopStats.isEmpty()) throw new CommandException(Text.literal("No data for given UUID"));
-        playerTopStats.forEach(stat -> {
-            var message = Text.literal("%s = %s (#%s)".formatted(stat.statName(), stat.statValue(), stat.rank()));
-            context.getSource().sendFeedback(() -> message, false);
+        var playerUUID = UuidArgumentType.getUuid(context, UUID_ARGUMENT_NAME);
+        return CommandQueryExecutor.submit(context.getSource(), databaseManager -> databaseManager.getPlayerTopStats(playerUUID), (source, playerTopStats) -> {
+            if (playerTopStats.isEmpty()) throw new CommandException(Text.literal("No data for given UUID"));
+            playerTopStats.forEach(stat -> {
+                var message = Text.literal("%s = %s (#%s)".formatted(stat.statName(), stat.statValue(), stat.rank()));
+                source.sendFeedback(() -> message, false);
+            });
         });
+    }
+
+    private static int executeUpdates(CommandContext<ServerCommandSource> context) {
+        var updateStatistics = getDatabaseManager().getUpdateStatistics();
+        var message = Text.literal("%s rows changed | %s rows skipped | %s values buffered".formatted(
+                updateStatistics.rowsChanged(), updateStatistics.rowsSkipped(), updateStatistics.valuesBuffered()));
+        context.getSource().sendFeedback(() -> message, false);
         return Command.SINGLE_SUCCESS;
     }
 
     private static DatabaseManager getDatabaseManager() {
-        return PlanHook.getDatabaseManager().orElseThrow(() -> new CommandException(Text.literal("Plan is not enabled!")));
+        var databaseManager = PlanHook.getDatabaseManager().orElseThrow(() -> new CommandException(Text.literal("Plan is not enabled!")));
+        return switch (databaseManager.getState()) {
+            case READY -> databaseManager;
+            case FAILED -> throw new CommandException(Text.literal("Database initialization failed, check the server log"));
+            default -> throw new CommandException(Text.literal("Database is still initializing (%s%%)".formatted(databaseManager.getInitializationProgress())));
+        };
     }
 }
@@ -0,0 +1,131 @@
+package io.github.kr8gz.plan_ingame_player_statistics_extension.metrics;
+
+import com.google.gson.stream.JsonWriter;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Holds the operational metrics of this extension, so that administrators can tell how much work it does
+ * and whether it is the cause of lag. Metrics are created on first use and identified by dot-separated names,
+ * such as {@code db.write.time}. Frequently used metrics should be looked up once and kept in a field.
+ * This class is thread-safe.
+ */
+public final class ExtensionMetrics {
+    private static final Map<String, Meter> METERS = new ConcurrentHashMap<>();
+    private static final Map<String, Histogram> HISTOGRAMS = new ConcurrentHashMap<>();
+
+    private static volatile long resetTimeMillis = System.currentTimeMillis();
+
+    private ExtensionMetrics() {}
+
+    /**
+     * Returns the meter with the given name, creating it if it doesn't exist yet.
+     *
+     * @param name the name of the meter
+     * @return the meter
+     */
+    @NotNull
+    public static Meter meter(@NotNull String name) {
+        return METERS.computeIfAbsent(name, key -> new Meter());
+    }
+
+    /**
+     * Returns the histogram for plain values with the given name, creating it if it doesn't exist yet.
+     *
+     * @param name the name of the histogram
+     * @param unit the unit of the recorded values
+     * @return the histogram
+     */
+    @NotNull
+    public static Histogram histogram(@NotNull String name, @NotNull String unit) {
+        return HISTOGRAMS.computeIfAbsent(name, key -> new Histogram(unit, 1));
+    }
+
+    /**
+     * Returns the histogram for durations with the given name, creating it if it doesn't exist yet.
+     * Durations are recorded in nanoseconds, for example using {@link System#nanoTime()}, and reported in milliseconds.
+     *
+     * @param name the name of the histogram
+     * @return the histogram
+     */
+    @NotNull
+    public static Histogram timer(@NotNull String name) {
+        return HISTOGRAMS.computeIfAbsent(name, key -> new Histogram("ms", 1.0 / TimeUnit.MILLISECONDS.toNanos(1)));
+    }
+
+    /**
+     * @return all meters, sorted by name
+     */
+    @NotNull
+    public static SortedMap<String, Meter> getMeters() {
+        return new TreeMap<>(METERS);
+    }
+
+    /**
+     * @return snapshots of all histograms, sorted by name
+     */
+    @NotNull
+    public static SortedMap<String, Histogram.Snapshot> getHistogramSnapshots() {
+        var snapshots = new TreeMap<String, Histogram.Snapshot>();
+        HISTOGRAMS.forEach((name, histogram) -> snapshots.put(name, histogram.snapshot()));
+        return snapshots;
+    }
+
+    /**
+     * @return the time at which metrics were last reset, or this extension was loaded, in milliseconds since the epoch
+     */
+    public static long getResetTimeMillis() {
+        return resetTimeMillis;
+    }
+
+    /**
+     * Discards all recorded values of all metrics.
+     */
+    public static void reset() {
+        METERS.values().forEach(Meter::reset);
+        HISTOGRAMS.values().forEach(Histogram::reset);
+        resetTimeMillis = System.currentTimeMillis();
+    }
+
+    /**
+     * Writes all metrics as the properties {@code since}, {@code meters} and {@code histograms}
+     * of the JSON object that is currently being written.
+     *
+     * @param writer the writer of the JSON object
+     * @throws IOException if writing fails
+     */
+    public static void writeJSON(@NotNull JsonWriter writer) throws IOException {
+        writer.name("since").value(resetTimeMillis);
+
+        writer.name("meters").beginObject();
+        for (var entry : getMeters().entrySet()) {
+            var meter = entry.getValue();
+            writer.name(entry.getKey()).beginObject()
+                    .name("count").value(meter.getCount())
+                    .name("ratePerSecond").value(meter.getRatePerSecond())
+                    .endObject();
+        }
+        writer.endObject();
+
+        writer.name("histograms").beginObject();
+        for (var entry : getHistogramSnapshots().entrySet()) {
+            var snapshot = entry.getValue();
+            writer.name(entry.getKey()).beginObject()
+                    .name("unit").value(snapshot.unit())
+                    .name("count").value(snapshot.count())
+                    .name("mean").value(snapshot.mean())
+                    .name("p50").value(snapshot.p50())
+                    .name("p90").value(snapshot.p90())
+                    .name("p99").value(snapshot.p99())
+                    .name("max").value(snapshot.max())
+                    .endObject();
+        }
+        writer.endObject();
+    }
+}
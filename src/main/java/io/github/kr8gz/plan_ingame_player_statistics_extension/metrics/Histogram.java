@@ -0,0 +1,123 @@
+package io.github.kr8gz.plan_ingame_player_statistics_extension.metrics;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Records the distribution of non-negative values, such as durations or batch sizes, in logarithmic buckets.
+ * Each power of two is split into {@value #SUB_BUCKETS} linear buckets, so percentiles are accurate to within
+ * about 12.5% regardless of the magnitude of the values, while recording a value is a few atomic increments
+ * without any locking or allocation. Values are reported multiplied by a fixed scale, so that, for example,
+ * durations can be recorded in nanoseconds and reported in milliseconds.
+ */
+public final class Histogram {
+    private static final int SUB_BUCKET_BITS = 3;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int BUCKET_COUNT = (Long.SIZE - SUB_BUCKET_BITS + 1) * SUB_BUCKETS;
+
+    private final @NotNull String unit;
+    private final double scale;
+
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKET_COUNT);
+    private final LongAdder sum = new LongAdder();
+    private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+    /**
+     * Creates a new empty {@code Histogram}.
+     *
+     * @param unit the unit in which values are reported
+     * @param scale the factor by which recorded values are multiplied when they are reported
+     */
+    Histogram(@NotNull String unit, double scale) {
+        this.unit = unit;
+        this.scale = scale;
+    }
+
+    /**
+     * Records a value. Negative values are recorded as {@code 0}.
+     *
+     * @param value the value to record
+     */
+    public void record(long value) {
+        value = Math.max(value, 0);
+        buckets.incrementAndGet(bucketIndex(value));
+        sum.add(value);
+        max.accumulate(value);
+    }
+
+    private static int bucketIndex(long value) {
+        if (value < SUB_BUCKETS) return (int) value;
+        int exponent = Long.SIZE - 1 - Long.numberOfLeadingZeros(value);
+        int subBucket = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket;
+    }
+
+    private static long bucketUpperBound(int index) {
+        if (index < SUB_BUCKETS) return index;
+        int exponent = index / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+        long lowerBound = (long) (SUB_BUCKETS + index % SUB_BUCKETS) << (exponent - SUB_BUCKET_BITS);
+        return lowerBound + (1L << (exponent - SUB_BUCKET_BITS)) - 1;
+    }
+
+    /**
+     * Represents the state of a {@link Histogram} at a point in time, with all values already scaled.
+     *
+     * @param unit the unit of the values
+     * @param count the number of recorded values
+     * @param mean the mean of the recorded values
+     * @param p50 the median of the recorded values
+     * @param p90 the 90th percentile of the recorded values
+     * @param p99 the 99th percentile of the recorded values
+     * @param max the largest recorded value
+     */
+    public record Snapshot(@NotNull String unit, long count, double mean, double p50, double p90, double p99, double max) {}
+
+    /**
+     * Takes a snapshot of the recorded values. Values recorded concurrently may or may not be included.
+     *
+     * @return the snapshot
+     */
+    @NotNull
+    public Snapshot snapshot() {
+        var counts = new long[BUCKET_COUNT];
+        long total = 0;
+        for (int index = 0; index < BUCKET_COUNT; index++) {
+            counts[index] = buckets.get(index);
+            total += counts[index];
+        }
+
+        long maxValue = max.get();
+        double mean = total > 0 ? (double) sum.sum() / total : 0;
+        return new Snapshot(unit, total, mean * scale,
+                percentile(counts, total, 0.5, maxValue) * scale,
+                percentile(counts, total, 0.9, maxValue) * scale,
+                percentile(counts, total, 0.99, maxValue) * scale,
+                maxValue * scale);
+    }
+
+    private static long percentile(long[] counts, long total, double quantile, long maxValue) {
+        if (total == 0) return 0;
+
+        long rank = (long) Math.ceil(quantile * total);
+        long seen = 0;
+        for (int index = 0; index < counts.length; index++) {
+            seen += counts[index];
+            if (seen >= rank) return Math.min(bucketUpperBound(index), maxValue);
+        }
+        return maxValue;
+    }
+
+    /**
+     * Discards all recorded values.
+     */
+    void reset() {
+        for (int index = 0; index < BUCKET_COUNT; index++) {
+            buckets.set(index, 0);
+        }
+        sum.reset();
+        max.reset();
+    }
+}
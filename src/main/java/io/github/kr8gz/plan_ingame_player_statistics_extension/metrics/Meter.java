@@ -0,0 +1,92 @@
+package io.github.kr8gz.plan_ingame_player_statistics_extension.metrics;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts events, such as rows written or cache hits, and tracks their rate over the last minute.
+ * The rate is computed from one counter per second in a ring of {@value #WINDOW_SECONDS} slots,
+ * so marking events only touches a few atomic variables without locking or allocating.
+ */
+public final class Meter {
+    private static final int WINDOW_SECONDS = 60;
+
+    private final LongAdder count = new LongAdder();
+
+    /**
+     * The second each slot of {@link #slotCounts} was last reset for.
+     */
+    private final AtomicLongArray slotSeconds = new AtomicLongArray(WINDOW_SECONDS);
+    private final AtomicLongArray slotCounts = new AtomicLongArray(WINDOW_SECONDS);
+
+    Meter() {
+        for (int slot = 0; slot < WINDOW_SECONDS; slot++) {
+            slotSeconds.set(slot, Long.MIN_VALUE);
+        }
+    }
+
+    private static long currentSecond() {
+        return TimeUnit.NANOSECONDS.toSeconds(System.nanoTime());
+    }
+
+    /**
+     * Records a single event.
+     */
+    public void mark() {
+        mark(1);
+    }
+
+    /**
+     * Records a number of events.
+     *
+     * @param events the number of events
+     */
+    public void mark(long events) {
+        count.add(events);
+
+        long second = currentSecond();
+        int slot = Math.floorMod(second, WINDOW_SECONDS);
+        long slotSecond = slotSeconds.get(slot);
+        // the thread that moves the slot to the current second resets it; events marked by other threads
+        // in the same instant may be lost, which only makes the rate slightly less accurate
+        if (slotSecond != second && slotSeconds.compareAndSet(slot, slotSecond, second)) {
+            slotCounts.set(slot, 0);
+        }
+        slotCounts.addAndGet(slot, events);
+    }
+
+    /**
+     * @return the total number of recorded events
+     */
+    public long getCount() {
+        return count.sum();
+    }
+
+    /**
+     * @return the average number of events per second over the last minute
+     */
+    public double getRatePerSecond() {
+        long second = currentSecond();
+        long events = 0;
+        for (int slot = 0; slot < WINDOW_SECONDS; slot++) {
+            // the current second is still in progress, so only the seconds before it are included
+            long age = second - slotSeconds.get(slot);
+            if (age > 0 && age < WINDOW_SECONDS) {
+                events += slotCounts.get(slot);
+            }
+        }
+        return (double) events / (WINDOW_SECONDS - 1);
+    }
+
+    /**
+     * Discards all recorded events.
+     */
+    void reset() {
+        count.reset();
+        for (int slot = 0; slot < WINDOW_SECONDS; slot++) {
+            slotSeconds.set(slot, Long.MIN_VALUE);
+            slotCounts.set(slot, 0);
+        }
+    }
+}
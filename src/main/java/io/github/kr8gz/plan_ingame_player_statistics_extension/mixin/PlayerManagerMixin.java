@@ -23,6 +23,16 @@ public abstract class PlayerManagerMixin {
     private void remove(ServerPlayerEntity player, CallbackInfo ci) {
         var statHandlers = Collections.singleton(statisticsMap.get(player.getUuid()));
         updatePlayerStats(statHandlers);
+        PlanHook.getDatabaseManager()
+                .ifPresent(databaseManager -> databaseManager.stopTrackingPlayer(player.getUuid()));
+    }
+
+    @Inject(method = "savePlayerData(Lnet/minecraft/server/network/ServerPlayerEntity;)V", at = @At("TAIL"))
+    private void savePlayerData(ServerPlayerEntity player, CallbackInfo ci) {
+        var statHandler = statisticsMap.get(player.getUuid());
+        if (statHandler == null) return;
+        PlanHook.getDatabaseManager()
+                .ifPresent(databaseManager -> databaseManager.recordSavedStatsFile(player.getUuid(), statHandler.file.toPath()));
     }
 
     @Inject(method = "saveAllPlayerData()V", at = @At("HEAD"))
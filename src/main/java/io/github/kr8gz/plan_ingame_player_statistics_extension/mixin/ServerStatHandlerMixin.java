@@ -0,0 +1,19 @@
+package io.github.kr8gz.plan_ingame_player_statistics_extension.mixin;
+
+import io.github.kr8gz.plan_ingame_player_statistics_extension.database.StatEventCapture;
+import net.minecraft.entity.player.PlayerEntity;
+import net.minecraft.stat.ServerStatHandler;
+import net.minecraft.stat.Stat;
+import org.spongepowered.asm.mixin.Mixin;
+import org.spongepowered.asm.mixin.injection.At;
+import org.spongepowered.asm.mixin.injection.ModifyArg;
+
+@Mixin(ServerStatHandler.class)
+public abstract class ServerStatHandlerMixin {
+    // ModifyArg instead of Inject, since it doesn't allocate a CallbackInfo for every statistic change
+    @ModifyArg(method = "setStat(Lnet/minecraft/entity/player/PlayerEntity;Lnet/minecraft/stat/Stat;I)V", at = @At(value = "INVOKE", target = "Lnet/minecraft/stat/StatHandler;setStat(Lnet/minecraft/entity/player/PlayerEntity;Lnet/minecraft/stat/Stat;I)V"), index = 2)
+    private int setStat(PlayerEntity player, Stat<?> stat, int value) {
+        if (player != null) StatEventCapture.capture(player.getUuid(), stat, value);
+        return value;
+    }
+}
@@ -0,0 +1,161 @@
+package io.github.kr8gz.plan_ingame_player_statistics_extension.web;
+
+import com.djrapitops.plan.delivery.web.resolver.MimeType;
+import com.djrapitops.plan.delivery.web.resolver.Resolver;
+import com.djrapitops.plan.delivery.web.resolver.Response;
+import com.djrapitops.plan.delivery.web.resolver.exception.BadRequestException;
+import com.djrapitops.plan.delivery.web.resolver.request.Request;
+import com.djrapitops.plan.delivery.web.resolver.request.URIQuery;
+import com.google.gson.JsonObject;
+import io.github.kr8gz.plan_ingame_player_statistics_extension.common.PlanHook;
+import io.github.kr8gz.plan_ingame_player_statistics_extension.database.DatabaseManager;
+import io.github.kr8gz.plan_ingame_player_statistics_extension.metrics.Histogram;
+
+import java.net.HttpURLConnection;
+import java.util.Locale;
+import java.util.Optional;
+
+/**
+ * Resolves JSON responses from the in-game player statistics database, which are cached until the data they were
+ * created from changes. Responds with {@code 503 Service Unavailable} while the database isn't ready yet.
+ * Besides the number of responses given by each resolver, each cache is bounded to {@link #MAX_CACHED_BYTES}.
+ *
+ * @param <K> the type identifying a requested response, which must implement {@code equals} and {@code hashCode}
+ */
+abstract class CachedJSONResolver<K> implements Resolver {
+    private static final int RETRY_AFTER_SECONDS = 5;
+
+    /**
+     * The maximum number of bytes of responses each cache keeps, including their compressed copies.
+     * Responses larger than this, such as all values of a view requested on a large server, are not cached.
+     */
+    static final long MAX_CACHED_BYTES = 16L * 1024 * 1024;
+
+    private final VersionedResponseCache<K> responseCache;
+
+    /**
+     * @param cacheName the name of the response cache, used for its metrics
+     * @param maxCachedResponses the maximum number of responses to cache
+     */
+    CachedJSONResolver(String cacheName, int maxCachedResponses) {
+        this.responseCache = new VersionedResponseCache<>(cacheName, maxCachedResponses, MAX_CACHED_BYTES);
+    }
+
+    @Override
+    public final Optional<Response> resolve(Request request) {
+        long startTime = System.nanoTime();
+        var databaseManager = PlanHook.getDatabaseManager().orElse(null);
+        if (databaseManager == null || databaseManager.getState() != DatabaseManager.State.READY) {
+            return Optional.of(createUnavailableResponse(databaseManager));
+        }
+
+        var key = parseKey(request.getQuery());
+
+        // read the data version before the data, so that changes made in the meantime invalidate the cached entry
+        long dataVersion = getDataVersion(databaseManager, key);
+        var cacheEntry = responseCache.get(key, dataVersion)
+                .orElseGet(() -> responseCache.put(key, dataVersion, createJSON(databaseManager, key)));
+        var response = createCachedJSONResponse(request, cacheEntry);
+
+        getRequestTimer(key).record(System.nanoTime() - startTime);
+        return Optional.of(response);
+    }
+
+    /**
+     * Parses the query parameters identifying the requested response.
+     *
+     * @param query the query of the request
+     * @return the key of the requested response
+     * @throws BadRequestException if a parameter is missing or has an invalid value
+     */
+    abstract K parseKey(URIQuery query);
+
+    /**
+     * Returns the version of the data the requested response is created from, which changes whenever the data does.
+     * Defaults to the data version of the whole database.
+     *
+     * @param databaseManager the {@code DatabaseManager} to read the version from
+     * @param key the key of the requested response
+     * @return the current data version
+     */
+    long getDataVersion(DatabaseManager databaseManager, K key) {
+        return databaseManager.getDataVersion();
+    }
+
+    /**
+     * Creates the contents of the requested response.
+     *
+     * @param databaseManager the {@code DatabaseManager} to read the data from
+     * @param key the key of the requested response
+     * @return the UTF-8 encoded JSON document
+     */
+    abstract byte[] createJSON(DatabaseManager databaseManager, K key);
+
+    /**
+     * @param key the key of the requested response
+     * @return the timer recording how long the request took
+     */
+    abstract Histogram getRequestTimer(K key);
+
+    /**
+     * Creates a response for cached JSON contents, which is {@code 304 Not Modified} without any contents
+     * if the client's {@code If-None-Match} header matches the entity tag of the cached contents.
+     * The contents are sent gzip-compressed if the client accepts it and compressed contents are available.
+     *
+     * @param request the request to respond to
+     * @param cacheEntry the cached JSON contents
+     * @return the response to send to the client
+     */
+    private static Response createCachedJSONResponse(Request request, VersionedResponseCache.Entry cacheEntry) {
+        boolean notModified = request.getHeader("If-None-Match")
+                .map(ifNoneMatch -> ifNoneMatch.contains(cacheEntry.etag()))
+                .orElse(false);
+
+        var response = Response.builder()
+                .setHeader("ETag", cacheEntry.etag())
+                .setHeader("Cache-Control", "no-cache")
+                .setHeader("Vary", "Accept-Encoding");
+        if (notModified) {
+            return response.setStatus(HttpURLConnection.HTTP_NOT_MODIFIED)
+                    .setContent(new byte[0])
+                    .build();
+        }
+
+        boolean acceptsGzip = request.getHeader("Accept-Encoding")
+                .map(acceptEncoding -> acceptEncoding.contains("gzip"))
+                .orElse(false);
+
+        response.setStatus(HttpURLConnection.HTTP_OK)
+                .setMimeType(MimeType.JSON + ";charset=utf-8");
+        if (acceptsGzip && cacheEntry.gzippedContent() != null) {
+            response.setHeader("Content-Encoding", "gzip")
+                    .setContent(cacheEntry.gzippedContent());
+        } else {
+            response.setContent(cacheEntry.content());
+        }
+        return response.build();
+    }
+
+    /**
+     * Creates a {@code 503 Service Unavailable} response for when the in-game player statistics database
+     * can't be used yet, containing its current state and initialization progress.
+     *
+     * @param databaseManager the {@code DatabaseManager} that isn't ready, or {@code null} if there is none yet
+     * @return the response to send to the client
+     */
+    private static Response createUnavailableResponse(DatabaseManager databaseManager) {
+        var state = databaseManager != null ? databaseManager.getState() : DatabaseManager.State.INITIALIZING;
+
+        var jsonData = new JsonObject();
+        jsonData.addProperty("state", state.name().toLowerCase(Locale.ROOT));
+        jsonData.addProperty("progress", databaseManager != null ? databaseManager.getInitializationProgress() : 0);
+
+        var response = Response.builder()
+                .setJSONContent(jsonData.toString())
+                .setStatus(HttpURLConnection.HTTP_UNAVAILABLE);
+        if (state != DatabaseManager.State.FAILED) {
+            response.setHeader("Retry-After", RETRY_AFTER_SECONDS);
+        }
+        return response.build();
+    }
+}
@@ -0,0 +1,58 @@
+package io.github.kr8gz.plan_ingame_player_statistics_extension.web;
+
+import com.djrapitops.plan.delivery.web.resolver.request.Request;
+import com.djrapitops.plan.delivery.web.resolver.request.URIQuery;
+import com.djrapitops.plan.delivery.web.resolver.request.WebUser;
+import io.github.kr8gz.plan_ingame_player_statistics_extension.database.DatabaseManager;
+import io.github.kr8gz.plan_ingame_player_statistics_extension.metrics.ExtensionMetrics;
+import io.github.kr8gz.plan_ingame_player_statistics_extension.metrics.Histogram;
+
+import java.util.List;
+
+/**
+ * Resolves the count, sum, mean, minimum and maximum of the statistics of multiple views, for summary figures such as
+ * server totals or averages per player that would otherwise need all players' values. The views are selected by
+ * the {@code keys} query parameter like for {@link IngameStatsBulkJSONResolver}, and the optional {@code scope}
+ * parameter works like for {@link IngameStatsJSONResolver}. The aggregates are maintained by the
+ * {@link DatabaseManager} on every write, so a response costs the same regardless of the number of players.
+ */
+public class IngameStatsAggregatesJSONResolver extends CachedJSONResolver<IngameStatsAggregatesJSONResolver.BulkViewScope> {
+    private static final int MAX_CACHED_RESPONSES = 64;
+    private static final Histogram REQUEST_TIME = ExtensionMetrics.timer("web.request.aggregates.time");
+
+    /**
+     * Identifies the requested aggregates of a set of views.
+     *
+     * @param viewKeys the keys of the views, in the order they are written
+     * @param scope the requested scope of the aggregates
+     */
+    record BulkViewScope(List<String> viewKeys, DatabaseManager.StatScope scope) {}
+
+    public IngameStatsAggregatesJSONResolver() {
+        // caches the JSON of each requested set of views until the data of the database changes
+        super("aggregates", MAX_CACHED_RESPONSES);
+    }
+
+    @Override
+    public boolean canAccess(Request request) {
+        var user = request.getUser().orElse(new WebUser(""));
+        return user.hasPermission("page.server");
+    }
+
+    @Override
+    BulkViewScope parseKey(URIQuery query) {
+        var views = IngameStatsBulkJSONResolver.parseViews(query);
+        return new BulkViewScope(List.copyOf(views.keySet()), IngameStatsJSONResolver.parseStatScope(query));
+    }
+
+    @Override
+    byte[] createJSON(DatabaseManager databaseManager, BulkViewScope bulkViewScope) {
+        return ServerIngameStatsJSONCreator.createAggregatesJSON(databaseManager,
+                IngameStatsBulkJSONResolver.getViews(bulkViewScope.viewKeys()), bulkViewScope.scope());
+    }
+
+    @Override
+    Histogram getRequestTimer(BulkViewScope bulkViewScope) {
+        return REQUEST_TIME;
+    }
+}
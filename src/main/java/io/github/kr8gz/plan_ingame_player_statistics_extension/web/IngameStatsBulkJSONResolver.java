@@ -0,0 +1,104 @@
+package io.github.kr8gz.plan_ingame_player_statistics_extension.web;
+
+import com.djrapitops.plan.delivery.web.resolver.exception.BadRequestException;
+import com.djrapitops.plan.delivery.web.resolver.request.Request;
+import com.djrapitops.plan.delivery.web.resolver.request.URIQuery;
+import com.djrapitops.plan.delivery.web.resolver.request.WebUser;
+import io.github.kr8gz.plan_ingame_player_statistics_extension.database.DatabaseManager;
+import io.github.kr8gz.plan_ingame_player_statistics_extension.metrics.ExtensionMetrics;
+import io.github.kr8gz.plan_ingame_player_statistics_extension.metrics.Histogram;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+
+/**
+ * Resolves multiple views in a single request, so that a whole page can be loaded at once.
+ * The views are selected by the comma-separated {@code keys} query parameter, where each entry is either
+ * the key of a view or a key prefix ending with {@code *}, such as {@code movement.*}.
+ * The {@code limit}, {@code offset}, {@code order} and {@code scope} parameters work like for {@link IngameStatsJSONResolver},
+ * except that {@code limit=all} is clamped to {@link IngameStatsJSONResolver#MAX_LIMIT} as well, as a single request
+ * may select every view, and each cached response would otherwise hold all players' values of all of their statistics.
+ */
+public class IngameStatsBulkJSONResolver extends CachedJSONResolver<IngameStatsBulkJSONResolver.BulkViewPage> {
+    private static final int MAX_CACHED_RESPONSES = 64;
+    private static final Histogram REQUEST_TIME = ExtensionMetrics.timer("web.request.bulk.time");
+
+    /**
+     * Identifies a requested page of a set of views.
+     *
+     * @param viewKeys the keys of the views, in the order they are written
+     * @param page the requested page of each statistic's values
+     * @param scope the requested scope of the values
+     */
+    record BulkViewPage(List<String> viewKeys, DatabaseManager.StatPage page, DatabaseManager.StatScope scope) {}
+
+    public IngameStatsBulkJSONResolver() {
+        // caches the JSON of each requested page of a set of views until the data of the database changes
+        super("bulk", MAX_CACHED_RESPONSES);
+    }
+
+    @Override
+    public boolean canAccess(Request request) {
+        var user = request.getUser().orElse(new WebUser(""));
+        return user.hasPermission("page.server");
+    }
+
+    @Override
+    BulkViewPage parseKey(URIQuery query) {
+        var views = parseViews(query);
+        var page = IngameStatsJSONResolver.parseStatPage(query);
+        if (page.limit() > IngameStatsJSONResolver.MAX_LIMIT) {
+            page = new DatabaseManager.StatPage(page.offset(), IngameStatsJSONResolver.MAX_LIMIT, page.ascending());
+        }
+        return new BulkViewPage(List.copyOf(views.keySet()), page, IngameStatsJSONResolver.parseStatScope(query));
+    }
+
+    @Override
+    byte[] createJSON(DatabaseManager databaseManager, BulkViewPage bulkViewPage) {
+        return ServerIngameStatsJSONCreator.createBulkJSON(databaseManager, getViews(bulkViewPage.viewKeys()),
+                bulkViewPage.page(), bulkViewPage.scope());
+    }
+
+    @Override
+    Histogram getRequestTimer(BulkViewPage bulkViewPage) {
+        return REQUEST_TIME;
+    }
+
+    /**
+     * Parses the required {@code keys} query parameter, which selects views by their keys or by key prefixes.
+     *
+     * @param query the query of the request
+     * @return the selected views by key, in the order they were first selected
+     * @throws BadRequestException if the parameter is missing or a key doesn't match any view
+     */
+    static LinkedHashMap<String, ServerIngameStatsJSONCreator> parseViews(URIQuery query) {
+        var keys = query.get("keys").orElseThrow(() -> new BadRequestException("No keys specified"));
+
+        var views = new LinkedHashMap<String, ServerIngameStatsJSONCreator>();
+        for (var key : keys.split(",")) {
+            key = key.trim();
+            if (key.endsWith("*")) {
+                var matchingViews = ServerIngameStatsJSONCreator.getByKeyPrefix(key.substring(0, key.length() - 1));
+                if (matchingViews.isEmpty()) throw new BadRequestException("No views match key " + key);
+                matchingViews.forEach(view -> views.putIfAbsent(view.key, view));
+            } else {
+                var finalKey = key;
+                var view = ServerIngameStatsJSONCreator.getByKey(key).orElseThrow(() -> new BadRequestException("Invalid key specified: " + finalKey));
+                views.putIfAbsent(view.key, view);
+            }
+        }
+        return views;
+    }
+
+    /**
+     * Looks up views by the keys returned by {@link #parseViews}.
+     *
+     * @param viewKeys the keys of the views
+     * @return the views, in the order of their keys
+     */
+    static List<ServerIngameStatsJSONCreator> getViews(List<String> viewKeys) {
+        return viewKeys.stream()
+                .map(viewKey -> ServerIngameStatsJSONCreator.getByKey(viewKey).orElseThrow())
+                .toList();
+    }
+}
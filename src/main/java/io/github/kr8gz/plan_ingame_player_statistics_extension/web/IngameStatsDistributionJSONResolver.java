@@ -0,0 +1,125 @@
+package io.github.kr8gz.plan_ingame_player_statistics_extension.web;
+
+import com.djrapitops.plan.delivery.web.resolver.exception.BadRequestException;
+import com.djrapitops.plan.delivery.web.resolver.request.Request;
+import com.djrapitops.plan.delivery.web.resolver.request.URIQuery;
+import com.djrapitops.plan.delivery.web.resolver.request.WebUser;
+import io.github.kr8gz.plan_ingame_player_statistics_extension.database.DatabaseManager;
+import io.github.kr8gz.plan_ingame_player_statistics_extension.metrics.ExtensionMetrics;
+import io.github.kr8gz.plan_ingame_player_statistics_extension.metrics.Histogram;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Resolves the distribution of all players' values of a statistic selected by the {@code stat} query parameter:
+ * the values at the quantiles selected by the optional comma-separated {@code quantiles} parameter, such as
+ * {@code 0.5,0.95}, and a histogram with exponentially growing buckets as described by {@link DatabaseManager.StatDistribution}.
+ * The optional {@code scope} parameter works like for {@link IngameStatsJSONResolver}.
+ * <p>
+ * Quantiles and bucket counts are exact rather than estimated, as they are read from the in-memory statistic stores
+ * of the {@link DatabaseManager}, which keep the values of each statistic ordered for the leaderboards anyway. This costs
+ * no memory per statistic, and {@code O(log n)} time per quantile and bucket. The share of players ahead of a player,
+ * such as "top 5%", is the player's rank from {@link IngameStatsPlayerJSONResolver} divided by the {@code count}.
+ */
+public class IngameStatsDistributionJSONResolver extends CachedJSONResolver<IngameStatsDistributionJSONResolver.StatQuantiles> {
+    private static final int MAX_CACHED_RESPONSES = 256;
+    private static final int MAX_QUANTILES = 100;
+    private static final List<Double> DEFAULT_QUANTILES = List.of(0.5, 0.75, 0.9, 0.95, 0.99);
+    private static final Histogram REQUEST_TIME = ExtensionMetrics.timer("web.request.distribution.time");
+
+    /**
+     * Identifies a requested distribution of a statistic.
+     *
+     * @param statName the name of the statistic
+     * @param quantiles the requested quantiles, in the order they are written
+     * @param scope the requested scope of the values
+     */
+    record StatQuantiles(String statName, List<Double> quantiles, DatabaseManager.StatScope scope) {}
+
+    public IngameStatsDistributionJSONResolver() {
+        // caches the JSON of each requested distribution until the data of the database changes
+        super("distribution", MAX_CACHED_RESPONSES);
+    }
+
+    @Override
+    public boolean canAccess(Request request) {
+        var user = request.getUser().orElse(new WebUser(""));
+        return user.hasPermission("page.server");
+    }
+
+    @Override
+    StatQuantiles parseKey(URIQuery query) {
+        var statName = query.get("stat").orElseThrow(() -> new BadRequestException("No stat specified"));
+        return new StatQuantiles(statName, parseQuantiles(query), IngameStatsJSONResolver.parseStatScope(query));
+    }
+
+    private static List<Double> parseQuantiles(URIQuery query) {
+        return query.get("quantiles")
+                .map(quantiles -> {
+                    var result = new ArrayList<Double>();
+                    for (var quantile : quantiles.split(",")) {
+                        try {
+                            double value = Double.parseDouble(quantile.trim());
+                            if (value >= 0 && value <= 1) {
+                                result.add(value);
+                                continue;
+                            }
+                        } catch (NumberFormatException ignored) {
+                        }
+                        throw new BadRequestException("Invalid quantile specified, expected a number between 0 and 1: " + quantile);
+                    }
+                    if (result.size() > MAX_QUANTILES) {
+                        throw new BadRequestException("Too many quantiles specified, expected at most " + MAX_QUANTILES);
+                    }
+                    return List.copyOf(result);
+                })
+                .orElse(DEFAULT_QUANTILES);
+    }
+
+    @Override
+    byte[] createJSON(DatabaseManager databaseManager, StatQuantiles statQuantiles) {
+        var quantiles = statQuantiles.quantiles().stream().mapToDouble(Double::doubleValue).toArray();
+        var statDistribution = databaseManager.getStatDistribution(statQuantiles.statName(), quantiles, statQuantiles.scope());
+
+        return JSONBytes.write(jsonWriter -> {
+            jsonWriter.beginObject();
+            jsonWriter.name("stat").value(statQuantiles.statName());
+            jsonWriter.name("scope").value(statQuantiles.scope().getName());
+            jsonWriter.name("count").value(statDistribution.count());
+
+            jsonWriter.name("quantiles").beginArray();
+            for (int index = 0; index < quantiles.length; index++) {
+                jsonWriter.beginObject();
+                jsonWriter.name("quantile").value(quantiles[index]);
+                if (statDistribution.count() > 0) {
+                    jsonWriter.name("value").value(statDistribution.quantileValues()[index]);
+                } else {
+                    jsonWriter.name("value").nullValue();
+                }
+                jsonWriter.endObject();
+            }
+            jsonWriter.endArray();
+
+            // buckets range from min inclusive to max exclusive, with null for unbounded ends,
+            // and empty buckets are left out, as most statistics only span a few of them
+            jsonWriter.name("histogram").beginArray();
+            var bucketCounts = statDistribution.bucketCounts();
+            for (int bucket = 0; bucket < bucketCounts.length; bucket++) {
+                if (bucketCounts[bucket] == 0) continue;
+                jsonWriter.beginObject();
+                jsonWriter.name("min").value(bucket == 0 ? null : DatabaseManager.StatDistribution.getBucketLowerBound(bucket));
+                jsonWriter.name("max").value(bucket == bucketCounts.length - 1 ? null : DatabaseManager.StatDistribution.getBucketLowerBound(bucket + 1));
+                jsonWriter.name("count").value(bucketCounts[bucket]);
+                jsonWriter.endObject();
+            }
+            jsonWriter.endArray();
+            jsonWriter.endObject();
+        });
+    }
+
+    @Override
+    Histogram getRequestTimer(StatQuantiles statQuantiles) {
+        return REQUEST_TIME;
+    }
+}
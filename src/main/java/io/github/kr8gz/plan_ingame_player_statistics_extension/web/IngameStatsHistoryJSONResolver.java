@@ -0,0 +1,134 @@
+package io.github.kr8gz.plan_ingame_player_statistics_extension.web;
+
+import com.djrapitops.plan.delivery.web.resolver.exception.BadRequestException;
+import com.djrapitops.plan.delivery.web.resolver.request.Request;
+import com.djrapitops.plan.delivery.web.resolver.request.URIQuery;
+import com.djrapitops.plan.delivery.web.resolver.request.WebUser;
+import io.github.kr8gz.plan_ingame_player_statistics_extension.database.DatabaseManager;
+import io.github.kr8gz.plan_ingame_player_statistics_extension.database.StatHistory;
+import io.github.kr8gz.plan_ingame_player_statistics_extension.metrics.ExtensionMetrics;
+import io.github.kr8gz.plan_ingame_player_statistics_extension.metrics.Histogram;
+
+import java.util.Arrays;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Resolves how much a statistic selected by the {@code stat} query parameter has grown in each period of a time range,
+ * summed over all players or for a single player selected by the optional {@code uuid} parameter. The range is selected
+ * by the optional {@code from} and {@code to} parameters in milliseconds since the epoch, and defaults to the last
+ * {@link #DEFAULT_RANGE_DAYS} days. The optional {@code resolution} parameter ({@code hour}, {@code day} or {@code week})
+ * sums finer periods into coarser ones, and the optional {@code scope} parameter works like for {@link IngameStatsJSONResolver}.
+ * <p>
+ * The data is read from the {@link StatHistory} of the {@link DatabaseManager}, and each response is cached until
+ * the history changes, which happens at most a few times per hour.
+ */
+public class IngameStatsHistoryJSONResolver extends CachedJSONResolver<IngameStatsHistoryJSONResolver.HistoryRange> {
+    private static final int MAX_CACHED_RESPONSES = 256;
+    private static final long DEFAULT_RANGE_DAYS = 30;
+    private static final Histogram REQUEST_TIME = ExtensionMetrics.timer("web.request.history.time");
+
+    /**
+     * Identifies a requested range of the history of a statistic.
+     *
+     * @param statName the name of the statistic
+     * @param playerUUID the UUID of the player, or {@code null} for all players
+     * @param scope the requested scope of the history
+     * @param from the start of the range in milliseconds since the epoch, inclusive
+     * @param to the end of the range in milliseconds since the epoch, exclusive
+     * @param resolution the resolution to sum finer periods into, or {@code null} for the stored resolutions
+     */
+    record HistoryRange(String statName, UUID playerUUID, DatabaseManager.StatScope scope,
+                       long from, long to, StatHistory.Resolution resolution) {}
+
+    public IngameStatsHistoryJSONResolver() {
+        // caches the JSON of each requested range until the history changes
+        super("history", MAX_CACHED_RESPONSES);
+    }
+
+    @Override
+    public boolean canAccess(Request request) {
+        var user = request.getUser().orElse(new WebUser(""));
+        return user.hasPermission("page.server");
+    }
+
+    @Override
+    HistoryRange parseKey(URIQuery query) {
+        var statName = query.get("stat").orElseThrow(() -> new BadRequestException("No stat specified"));
+        var playerUUID = query.get("uuid")
+                .map(uuid -> {
+                    try {
+                        return UUID.fromString(uuid);
+                    } catch (IllegalArgumentException e) {
+                        throw new BadRequestException("Invalid uuid specified");
+                    }
+                })
+                .orElse(null);
+
+        // align the default range to the current hour, so that requests without a range share cached responses
+        long defaultTo = StatHistory.Resolution.HOUR.getBucketStart(System.currentTimeMillis()) + TimeUnit.HOURS.toMillis(1);
+        long to = parseTimeParameter(query, "to").orElse(defaultTo);
+        long from = parseTimeParameter(query, "from").orElse(to - TimeUnit.DAYS.toMillis(DEFAULT_RANGE_DAYS));
+        if (from >= to) throw new BadRequestException("Invalid range specified, expected from to be less than to");
+
+        return new HistoryRange(statName, playerUUID, IngameStatsJSONResolver.parseStatScope(query), from, to, parseResolution(query));
+    }
+
+    @Override
+    long getDataVersion(DatabaseManager databaseManager, HistoryRange historyRange) {
+        return databaseManager.getHistory().getVersion();
+    }
+
+    private static Optional<Long> parseTimeParameter(URIQuery query, String name) {
+        return query.get(name).map(value -> {
+            try {
+                long result = Long.parseLong(value);
+                if (result >= 0) return result;
+            } catch (NumberFormatException ignored) {
+            }
+            throw new BadRequestException("Invalid %s specified, expected milliseconds since the epoch".formatted(name));
+        });
+    }
+
+    private static StatHistory.Resolution parseResolution(URIQuery query) {
+        return query.get("resolution")
+                .map(resolution -> Arrays.stream(StatHistory.Resolution.values())
+                        .filter(historyResolution -> historyResolution.getName().equalsIgnoreCase(resolution))
+                        .findFirst()
+                        .orElseThrow(() -> new BadRequestException("Invalid resolution specified, expected 'hour', 'day' or 'week'")))
+                .orElse(null);
+    }
+
+    @Override
+    byte[] createJSON(DatabaseManager databaseManager, HistoryRange historyRange) {
+        var buckets = databaseManager.getHistory().getBuckets(historyRange.statName(), historyRange.playerUUID(), historyRange.scope(),
+                historyRange.from(), historyRange.to(), historyRange.resolution());
+
+        return JSONBytes.write(jsonWriter -> {
+            jsonWriter.beginObject();
+            jsonWriter.name("stat").value(historyRange.statName());
+            if (historyRange.playerUUID() != null) {
+                jsonWriter.name("uuid").value(historyRange.playerUUID().toString());
+            }
+            jsonWriter.name("scope").value(historyRange.scope().getName());
+            jsonWriter.name("from").value(historyRange.from());
+            jsonWriter.name("to").value(historyRange.to());
+            jsonWriter.name("buckets").beginArray();
+            for (var bucket : buckets) {
+                jsonWriter.beginObject();
+                jsonWriter.name("start").value(bucket.start());
+                jsonWriter.name("resolution").value(bucket.resolution().getName());
+                jsonWriter.name("delta").value(bucket.delta());
+                jsonWriter.endObject();
+            }
+            jsonWriter.endArray();
+            jsonWriter.endObject();
+        });
+    }
+
+    @Override
+    Histogram getRequestTimer(HistoryRange historyRange) {
+        return REQUEST_TIME;
+    }
+}
@@ -1,15 +1,62 @@
 package io.github.kr8gz.plan_ingame_player_statistics_extension.web;
 
-import com.djrapitops.plan.delivery.web.resolver.Resolver;
-import com.djrapitops.plan.delivery.web.resolver.Response;
 import com.djrapitops.plan.delivery.web.resolver.exception.BadRequestException;
 import com.djrapitops.plan.delivery.web.resolver.request.Request;
+import com.djrapitops.plan.delivery.web.resolver.request.URIQuery;
 import com.djrapitops.plan.delivery.web.resolver.request.WebUser;
+import io.github.kr8gz.plan_ingame_player_statistics_extension.database.DatabaseManager;
+import io.github.kr8gz.plan_ingame_player_statistics_extension.metrics.ExtensionMetrics;
+import io.github.kr8gz.plan_ingame_player_statistics_extension.metrics.Histogram;
 
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.Map;
 import java.util.Optional;
-import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Resolves the values of a view selected by the {@code key} query parameter, or of a random view without it.
+ * A page of each statistic's values is selected by the optional {@code limit}, {@code offset} and {@code order}
+ * parameters, and the values of this server or of all servers by the optional {@code scope} parameter.
+ * <p>
+ * Up to {@link #MAX_CACHED_RESPONSES} pages are cached, but no more than {@link CachedJSONResolver#MAX_CACHED_BYTES}
+ * in total, as a page requested with {@code limit=all} holds the values of every player.
+ */
+public class IngameStatsJSONResolver extends CachedJSONResolver<IngameStatsJSONResolver.ViewPage> {
+    private static final int MAX_CACHED_RESPONSES = 256;
+
+    /**
+     * One request timer per view category, such as {@code web.request.views.items.specific_item.time},
+     * as there are only a few categories but over a thousand views.
+     */
+    private static final Map<String, Histogram> REQUEST_TIMES = ServerIngameStatsJSONCreator.getAll().stream()
+            .map(view -> view.categoryKey)
+            .distinct()
+            .collect(Collectors.toUnmodifiableMap(Function.identity(),
+                    categoryKey -> ExtensionMetrics.timer("web.request.views." + categoryKey + ".time")));
+
+    /**
+     * The default and maximum number of values of each statistic per response, unless all values are requested
+     * with {@code limit=all}. Further values can be read with the {@code offset}.
+     */
+    static final int MAX_LIMIT = 100;
+
+    /**
+     * Identifies a requested page of a view.
+     *
+     * @param viewKey the key of the view
+     * @param page the requested page of each statistic's values
+     * @param scope the requested scope of the values
+     */
+    record ViewPage(String viewKey, DatabaseManager.StatPage page, DatabaseManager.StatScope scope) {}
+
+    public IngameStatsJSONResolver() {
+        // caches the JSON of each requested page of a view until the data of the database changes
+        super("views", MAX_CACHED_RESPONSES);
+    }
 
-public class IngameStatsJSONResolver implements Resolver {
     @Override
     public boolean canAccess(Request request) {
         var user = request.getUser().orElse(new WebUser(""));
@@ -17,17 +64,79 @@ public class IngameStatsJSONResolver implements Resolver {
     }
 
     @Override
-    public Optional<Response> resolve(Request request) {
-        var query = request.getQuery();
-
+    ViewPage parseKey(URIQuery query) {
         var jsonCreator = query.get("key")
                 .map(key -> ServerIngameStatsJSONCreator.getByKey(key).orElseThrow(() -> new BadRequestException("Invalid key specified")))
                 .orElseGet(() -> {
                     var all = ServerIngameStatsJSONCreator.getAll();
-                    var randomIndex = new Random().nextInt(all.size());
+                    var randomIndex = ThreadLocalRandom.current().nextInt(all.size());
                     return all.get(randomIndex);
                 });
+        return new ViewPage(jsonCreator.key, parseStatPage(query), parseStatScope(query));
+    }
+
+    @Override
+    byte[] createJSON(DatabaseManager databaseManager, ViewPage viewPage) {
+        var jsonCreator = ServerIngameStatsJSONCreator.getByKey(viewPage.viewKey()).orElseThrow();
+        return jsonCreator.createJSON(databaseManager, viewPage.page(), viewPage.scope());
+    }
+
+    @Override
+    Histogram getRequestTimer(ViewPage viewPage) {
+        var jsonCreator = ServerIngameStatsJSONCreator.getByKey(viewPage.viewKey()).orElseThrow();
+        return REQUEST_TIMES.get(jsonCreator.categoryKey);
+    }
+
+    /**
+     * Parses the optional {@code limit}, {@code offset} and {@code order} query parameters, which select a page
+     * of each statistic's values. The {@code limit} defaults to and is clamped to {@link #MAX_LIMIT},
+     * unless it is {@code all}, which returns all values.
+     * The {@code order} is either {@code desc} (the default) or {@code asc}.
+     *
+     * @param query the query of the request
+     * @return the requested page
+     * @throws BadRequestException if a parameter has an invalid value
+     */
+    static DatabaseManager.StatPage parseStatPage(URIQuery query) {
+        int limit = query.get("limit").filter(value -> value.equalsIgnoreCase("all")).isPresent()
+                ? DatabaseManager.StatPage.ALL.limit()
+                : Math.min(parseIntParameter(query, "limit", 1).orElse(MAX_LIMIT), MAX_LIMIT);
+        int offset = parseIntParameter(query, "offset", 0).orElse(0);
+        boolean ascending = query.get("order")
+                .map(order -> switch (order.toLowerCase(Locale.ROOT)) {
+                    case "asc" -> true;
+                    case "desc" -> false;
+                    default -> throw new BadRequestException("Invalid order specified, expected 'asc' or 'desc'");
+                })
+                .orElse(false);
+        return new DatabaseManager.StatPage(offset, limit, ascending);
+    }
+
+    /**
+     * Parses the optional {@code scope} query parameter, which is either {@code server} (the default)
+     * for this server's values, or {@code network} for the sums of the values of all servers sharing the database.
+     *
+     * @param query the query of the request
+     * @return the requested scope
+     * @throws BadRequestException if the parameter has an invalid value
+     */
+    static DatabaseManager.StatScope parseStatScope(URIQuery query) {
+        return query.get("scope")
+                .map(scope -> Arrays.stream(DatabaseManager.StatScope.values())
+                        .filter(statScope -> statScope.getName().equalsIgnoreCase(scope))
+                        .findFirst()
+                        .orElseThrow(() -> new BadRequestException("Invalid scope specified, expected 'server' or 'network'")))
+                .orElse(DatabaseManager.StatScope.SERVER);
+    }
 
-        return Optional.of(jsonCreator.getJSONResponse());
+    private static Optional<Integer> parseIntParameter(URIQuery query, String name, int minValue) {
+        return query.get(name).map(value -> {
+            try {
+                int result = Integer.parseInt(value);
+                if (result >= minValue) return result;
+            } catch (NumberFormatException ignored) {
+            }
+            throw new BadRequestException("Invalid %s specified, expected an integer of at least %d".formatted(name, minValue));
+        });
     }
 }
@@ -0,0 +1,59 @@
+package io.github.kr8gz.plan_ingame_player_statistics_extension.web;
+
+import com.djrapitops.plan.delivery.web.resolver.Resolver;
+import com.djrapitops.plan.delivery.web.resolver.Response;
+import com.djrapitops.plan.delivery.web.resolver.request.Request;
+import com.djrapitops.plan.delivery.web.resolver.request.WebUser;
+import com.google.gson.stream.JsonWriter;
+import io.github.kr8gz.plan_ingame_player_statistics_extension.common.PlanHook;
+import io.github.kr8gz.plan_ingame_player_statistics_extension.metrics.ExtensionMetrics;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.net.HttpURLConnection;
+import java.util.Locale;
+import java.util.Optional;
+
+/**
+ * Resolves the operational metrics of this extension, such as how long statistic writes and requests take,
+ * together with the current state of the database. Available to users who can see the server performance page.
+ */
+public class IngameStatsMetricsJSONResolver implements Resolver {
+    @Override
+    public boolean canAccess(Request request) {
+        var user = request.getUser().orElse(new WebUser(""));
+        return user.hasPermission("page.server.performance");
+    }
+
+    @Override
+    public Optional<Response> resolve(Request request) {
+        var output = new StringWriter();
+        try (var writer = new JsonWriter(output)) {
+            writer.beginObject();
+
+            var databaseManager = PlanHook.getDatabaseManager();
+            if (databaseManager.isPresent()) {
+                var updateStatistics = databaseManager.get().getUpdateStatistics();
+                writer.name("database").beginObject()
+                        .name("state").value(databaseManager.get().getState().name().toLowerCase(Locale.ROOT))
+                        .name("rowsChanged").value(updateStatistics.rowsChanged())
+                        .name("rowsSkipped").value(updateStatistics.rowsSkipped())
+                        .name("valuesBuffered").value(updateStatistics.valuesBuffered())
+                        .endObject();
+            }
+
+            ExtensionMetrics.writeJSON(writer);
+            writer.endObject();
+        } catch (IOException e) {
+            // writing to a string doesn't actually throw
+            throw new UncheckedIOException(e);
+        }
+
+        return Optional.of(Response.builder()
+                .setJSONContent(output.toString())
+                .setHeader("Cache-Control", "no-store")
+                .setStatus(HttpURLConnection.HTTP_OK)
+                .build());
+    }
+}
@@ -0,0 +1,106 @@
+package io.github.kr8gz.plan_ingame_player_statistics_extension.web;
+
+import com.djrapitops.plan.delivery.web.resolver.exception.BadRequestException;
+import com.djrapitops.plan.delivery.web.resolver.request.Request;
+import com.djrapitops.plan.delivery.web.resolver.request.URIQuery;
+import com.djrapitops.plan.delivery.web.resolver.request.WebUser;
+import io.github.kr8gz.plan_ingame_player_statistics_extension.database.DatabaseManager;
+import io.github.kr8gz.plan_ingame_player_statistics_extension.metrics.ExtensionMetrics;
+import io.github.kr8gz.plan_ingame_player_statistics_extension.metrics.Histogram;
+
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Resolves the statistics of a single player selected by the {@code uuid} query parameter, together with
+ * the player's rank on each statistic's leaderboard, ordered by rank. The optional {@code scope} parameter works
+ * like for {@link IngameStatsJSONResolver}. The data is read from the in-memory statistic stores of the
+ * {@link DatabaseManager}, so no database query is needed.
+ * <p>
+ * Each player's response is cached until that player's statistics are written. As other players' writes can
+ * change the player's ranks as well, cached responses are also refreshed once the data has changed and
+ * {@link #RANK_REFRESH_SECONDS} have passed, so that ranks are never more stale than that.
+ */
+public class IngameStatsPlayerJSONResolver extends CachedJSONResolver<IngameStatsPlayerJSONResolver.PlayerScope> {
+    private static final int MAX_CACHED_RESPONSES = 1024;
+    private static final long RANK_REFRESH_SECONDS = 60;
+    private static final Histogram REQUEST_TIME = ExtensionMetrics.timer("web.request.player.time");
+
+    /**
+     * Identifies the requested statistics of a player.
+     *
+     * @param playerUUID the UUID of the player
+     * @param scope the requested scope of the values and ranks
+     */
+    record PlayerScope(UUID playerUUID, DatabaseManager.StatScope scope) {}
+
+    /**
+     * A data version sampled from the {@code DatabaseManager} at most every {@link #RANK_REFRESH_SECONDS}.
+     * Player data versions are drawn from the same counter, so the larger of both changes whenever either does.
+     */
+    private volatile long rankDataVersion;
+    private volatile long rankDataVersionTime = System.nanoTime() - TimeUnit.SECONDS.toNanos(RANK_REFRESH_SECONDS);
+
+    public IngameStatsPlayerJSONResolver() {
+        // caches the JSON of each requested player until the data of the player or their ranks change
+        super("player", MAX_CACHED_RESPONSES);
+    }
+
+    @Override
+    public boolean canAccess(Request request) {
+        var user = request.getUser().orElse(new WebUser(""));
+        return user.hasPermission("page.player.other") || user.hasPermission("page.server");
+    }
+
+    @Override
+    PlayerScope parseKey(URIQuery query) {
+        var playerUUID = query.get("uuid")
+                .map(uuid -> {
+                    try {
+                        return UUID.fromString(uuid);
+                    } catch (IllegalArgumentException e) {
+                        throw new BadRequestException("Invalid uuid specified");
+                    }
+                })
+                .orElseThrow(() -> new BadRequestException("No uuid specified"));
+        return new PlayerScope(playerUUID, IngameStatsJSONResolver.parseStatScope(query));
+    }
+
+    @Override
+    long getDataVersion(DatabaseManager databaseManager, PlayerScope playerScope) {
+        return Math.max(databaseManager.getPlayerDataVersion(playerScope.playerUUID()), getRankDataVersion(databaseManager));
+    }
+
+    private long getRankDataVersion(DatabaseManager databaseManager) {
+        long currentTime = System.nanoTime();
+        if (currentTime - rankDataVersionTime >= TimeUnit.SECONDS.toNanos(RANK_REFRESH_SECONDS)) {
+            rankDataVersion = databaseManager.getDataVersion();
+            rankDataVersionTime = currentTime;
+        }
+        return rankDataVersion;
+    }
+
+    @Override
+    byte[] createJSON(DatabaseManager databaseManager, PlayerScope playerScope) {
+        return JSONBytes.write(jsonWriter -> {
+            jsonWriter.beginObject();
+            jsonWriter.name("uuid").value(playerScope.playerUUID().toString());
+            jsonWriter.name("scope").value(playerScope.scope().getName());
+            jsonWriter.name("stats").beginArray();
+            for (var rankedStatistic : databaseManager.getPlayerTopStats(playerScope.playerUUID(), playerScope.scope())) {
+                jsonWriter.beginObject();
+                jsonWriter.name("stat").value(rankedStatistic.statName());
+                jsonWriter.name("value").value(rankedStatistic.statValue());
+                jsonWriter.name("rank").value(rankedStatistic.rank());
+                jsonWriter.endObject();
+            }
+            jsonWriter.endArray();
+            jsonWriter.endObject();
+        });
+    }
+
+    @Override
+    Histogram getRequestTimer(PlayerScope playerScope) {
+        return REQUEST_TIME;
+    }
+}
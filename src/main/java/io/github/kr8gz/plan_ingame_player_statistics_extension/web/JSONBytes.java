@@ -0,0 +1,41 @@
+package io.github.kr8gz.plan_ingame_player_statistics_extension.web;
+
+import com.google.gson.stream.JsonWriter;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Writes JSON documents directly into UTF-8 encoded byte arrays, without building a JSON tree or a string in between.
+ */
+final class JSONBytes {
+    private static final int INITIAL_BUFFER_SIZE = 8192;
+
+    /**
+     * Writes the contents of a JSON document.
+     */
+    @FunctionalInterface
+    interface Contents {
+        void write(JsonWriter jsonWriter) throws IOException;
+    }
+
+    private JSONBytes() {
+    }
+
+    /**
+     * Writes a JSON document into a byte array.
+     *
+     * @param contents writes the contents of the document
+     * @return the UTF-8 encoded JSON document
+     */
+    static byte[] write(Contents contents) {
+        var output = new ByteArrayOutputStream(INITIAL_BUFFER_SIZE);
+        try (var jsonWriter = new JsonWriter(new BufferedWriter(new OutputStreamWriter(output, StandardCharsets.UTF_8)))) {
+            contents.write(jsonWriter);
+        } catch (IOException e) {
+            // writing to a byte array doesn't actually throw
+            throw new UncheckedIOException(e);
+        }
+        return output.toByteArray();
+    }
+}
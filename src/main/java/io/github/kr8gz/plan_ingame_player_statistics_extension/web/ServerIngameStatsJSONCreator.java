@@ -1,10 +1,7 @@
 package io.github.kr8gz.plan_ingame_player_statistics_extension.web;
 
-import com.djrapitops.plan.delivery.web.resolver.Response;
-import com.djrapitops.plan.delivery.web.resolver.exception.BadRequestException;
-import com.google.gson.JsonArray;
-import com.google.gson.JsonObject;
-import io.github.kr8gz.plan_ingame_player_statistics_extension.common.PlanHook;
+import com.google.gson.stream.JsonWriter;
+import io.github.kr8gz.plan_ingame_player_statistics_extension.database.DatabaseManager;
 import net.minecraft.entity.EntityType;
 import net.minecraft.item.BlockItem;
 import net.minecraft.item.Item;
@@ -13,17 +10,49 @@ import net.minecraft.registry.Registry;
 import net.minecraft.stat.Stat;
 import net.minecraft.stat.Stats;
 import net.minecraft.util.Identifier;
+import org.jetbrains.annotations.NotNull;
 
-import java.net.HttpURLConnection;
+import java.io.*;
 import java.util.*;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
 
 public sealed abstract class ServerIngameStatsJSONCreator {
     public final String key;
-    private final Stat<?>[] stats;
+
+    /**
+     * The key of the category this view belongs to, which is its key without the last part,
+     * such as {@code movement} or {@code items.specific_item}.
+     */
+    public final String categoryKey;
+
+    /**
+     * Creates the names of the statistics shown by this view when they are first needed.
+     */
+    private final Supplier<String[]> statNamesFactory;
+    private volatile String[] statNames;
 
     private ServerIngameStatsJSONCreator(List<String> path, Stat<?>... stats) {
+        this(path, () -> Arrays.stream(stats).map(Stat::getName).toArray(String[]::new));
+    }
+
+    private ServerIngameStatsJSONCreator(List<String> path, Supplier<String[]> statNamesFactory) {
         this.key = String.join(".", path);
-        this.stats = stats;
+        this.categoryKey = String.join(".", path.subList(0, path.size() - 1));
+        this.statNamesFactory = statNamesFactory;
+    }
+
+    /**
+     * @return the names of the statistics shown by this view, in display order
+     */
+    private String[] getStatNames() {
+        var names = statNames;
+        if (names == null) {
+            // creating the names has no side effects, so threads racing here at worst create them twice
+            statNames = names = statNamesFactory.get();
+        }
+        return names;
     }
 
     private static <T> List<String> extendPath(String parent, Registry<T> registry, T registryObject) {
@@ -41,31 +70,174 @@ public sealed abstract class ServerIngameStatsJSONCreator {
         return path;
     }
 
-    public final Response getJSONResponse() {
-        var databaseManager = PlanHook.getDatabaseManager().orElseThrow(() -> new BadRequestException("In-game player statistics database is not yet initialized."));
+    /**
+     * Writes a page of the values of all statistics of this view as JSON, streaming them directly from the database
+     * query into a UTF-8 encoded byte array without building a JSON tree in between.
+     * The values of each statistic are written in the order specified by the page.
+     *
+     * @param databaseManager the {@code DatabaseManager} to read the statistic values from
+     * @param page the page of each statistic's values to write
+     * @param scope whether to write this server's values or the network-wide totals
+     * @return the UTF-8 encoded JSON document
+     */
+    public final byte[] createJSON(DatabaseManager databaseManager, DatabaseManager.StatPage page, DatabaseManager.StatScope scope) {
+        return JSONBytes.write(jsonWriter -> {
+            jsonWriter.beginObject();
+            jsonWriter.name("key").value(key);
+            jsonWriter.name("scope").value(scope.getName());
+            jsonWriter.name("stats");
+            writeStatsArray(jsonWriter, databaseManager, getStatNames(), page, scope);
+            jsonWriter.endObject();
+        });
+    }
+
+    /**
+     * Writes multiple views as a single JSON document. Statistics shown by more than one of the views are only
+     * read from the database and written once: the {@code views} array lists the statistic names of each view,
+     * and the {@code stats} array contains a page of the values of every distinct statistic.
+     *
+     * @param databaseManager the {@code DatabaseManager} to read the statistic values from
+     * @param views the views to write
+     * @param page the page of each statistic's values to write
+     * @param scope whether to write this server's values or the network-wide totals
+     * @return the UTF-8 encoded JSON document
+     */
+    public static byte[] createBulkJSON(DatabaseManager databaseManager, Collection<ServerIngameStatsJSONCreator> views,
+                                        DatabaseManager.StatPage page, DatabaseManager.StatScope scope) {
+        var distinctStatNames = new LinkedHashSet<String>();
+        return JSONBytes.write(jsonWriter -> {
+            jsonWriter.beginObject();
+            jsonWriter.name("scope").value(scope.getName());
+            jsonWriter.name("views");
+            writeViewsArray(jsonWriter, views, distinctStatNames);
+
+            jsonWriter.name("stats");
+            writeStatsArray(jsonWriter, databaseManager, distinctStatNames.toArray(String[]::new), page, scope);
+            jsonWriter.endObject();
+        });
+    }
+
+    /**
+     * Writes the aggregates of the statistics of multiple views as a single JSON document. Like for
+     * {@link #createBulkJSON}, the {@code views} array lists the statistic names of each view, and the {@code stats}
+     * array contains the count, sum, mean, minimum and maximum of every distinct statistic. The minimum, maximum
+     * and mean are {@code null} for statistics without any values.
+     *
+     * @param databaseManager the {@code DatabaseManager} to read the statistic aggregates from
+     * @param views the views to write
+     * @param scope whether to aggregate this server's values or the network-wide totals
+     * @return the UTF-8 encoded JSON document
+     */
+    public static byte[] createAggregatesJSON(DatabaseManager databaseManager, Collection<ServerIngameStatsJSONCreator> views,
+                                              DatabaseManager.StatScope scope) {
+        var distinctStatNames = new LinkedHashSet<String>();
+        return JSONBytes.write(jsonWriter -> {
+            jsonWriter.beginObject();
+            jsonWriter.name("scope").value(scope.getName());
+            jsonWriter.name("views");
+            writeViewsArray(jsonWriter, views, distinctStatNames);
+
+            var statNames = List.copyOf(distinctStatNames);
+            var statAggregates = databaseManager.getStatAggregates(statNames, scope);
+            jsonWriter.name("stats").beginArray();
+            for (int index = 0; index < statNames.size(); index++) {
+                var statAggregate = statAggregates.get(index);
+                jsonWriter.beginObject();
+                jsonWriter.name("stat").value(statNames.get(index));
+                jsonWriter.name("count").value(statAggregate.count());
+                jsonWriter.name("sum").value(statAggregate.sum());
+                if (statAggregate.count() > 0) {
+                    jsonWriter.name("mean").value(statAggregate.mean());
+                    jsonWriter.name("min").value(statAggregate.min());
+                    jsonWriter.name("max").value(statAggregate.max());
+                } else {
+                    jsonWriter.name("mean").nullValue();
+                    jsonWriter.name("min").nullValue();
+                    jsonWriter.name("max").nullValue();
+                }
+                jsonWriter.endObject();
+            }
+            jsonWriter.endArray();
+            jsonWriter.endObject();
+        });
+    }
+
+    /**
+     * Writes the statistic names of each view, and collects the distinct statistic names of all views.
+     */
+    private static void writeViewsArray(JsonWriter jsonWriter, Collection<ServerIngameStatsJSONCreator> views,
+                                        Set<String> distinctStatNames) throws IOException {
+        jsonWriter.beginArray();
+        for (var view : views) {
+            jsonWriter.beginObject();
+            jsonWriter.name("key").value(view.key);
+            jsonWriter.name("stats").beginArray();
+            for (var statName : view.getStatNames()) {
+                jsonWriter.value(statName);
+                distinctStatNames.add(statName);
+            }
+            jsonWriter.endArray();
+            jsonWriter.endObject();
+        }
+        jsonWriter.endArray();
+    }
+
+    private static void writeStatsArray(JsonWriter jsonWriter, DatabaseManager databaseManager,
+                                        String[] statNames, DatabaseManager.StatPage page, DatabaseManager.StatScope scope) throws IOException {
+        jsonWriter.beginArray();
+        var statsArrayWriter = new StatsArrayWriter(jsonWriter, statNames);
+        databaseManager.forEachStatValue(Arrays.asList(statNames), page, scope, statsArrayWriter);
+        statsArrayWriter.finish();
+        jsonWriter.endArray();
+    }
 
-        var statsArray = new JsonArray();
-        for (Stat<?> stat : stats) {
-            var playerStatMap = databaseManager.getStatForAllPlayers(stat);
+    /**
+     * Writes the elements of the {@code stats} array while statistic values are read from the database.
+     * Values arrive grouped by statistic in the order of the statistic names, so each statistic object is opened
+     * when its first value arrives, and statistics without any values are written with an empty {@code values} object.
+     */
+    private static final class StatsArrayWriter implements DatabaseManager.StatValueConsumer {
+        private final JsonWriter jsonWriter;
+        private final String[] statNames;
+        private int currentStatIndex = -1;
+
+        private StatsArrayWriter(JsonWriter jsonWriter, String[] statNames) {
+            this.jsonWriter = jsonWriter;
+            this.statNames = statNames;
+        }
 
-            var statValuesObject = new JsonObject();
-            playerStatMap.forEach((uuid, value) -> statValuesObject.addProperty(uuid.toString(), value));
+        @Override
+        public void accept(int statIndex, @NotNull String playerUUID, int value) {
+            try {
+                advanceTo(statIndex);
+                jsonWriter.name(playerUUID).value(value);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
 
-            var statInfoObject = new JsonObject();
-            statInfoObject.addProperty("stat", stat.getName());
-            statInfoObject.add("values", statValuesObject);
+        private void finish() throws IOException {
+            advanceTo(statNames.length - 1);
+            if (currentStatIndex >= 0) endStat();
+        }
 
-            statsArray.add(statInfoObject);
+        private void advanceTo(int statIndex) throws IOException {
+            while (currentStatIndex < statIndex) {
+                if (currentStatIndex >= 0) endStat();
+                beginStat(statNames[++currentStatIndex]);
+            }
         }
 
-        var jsonData = new JsonObject();
-        jsonData.addProperty("key", key);
-        jsonData.add("stats", statsArray);
+        private void beginStat(String statName) throws IOException {
+            jsonWriter.beginObject();
+            jsonWriter.name("stat").value(statName);
+            jsonWriter.name("values").beginObject();
+        }
 
-        return Response.builder()
-                .setJSONContent(jsonData.toString())
-                .setStatus(HttpURLConnection.HTTP_OK)
-                .build();
+        private void endStat() throws IOException {
+            jsonWriter.endObject();
+            jsonWriter.endObject();
+        }
     }
 
     public static final class GeneralCategory extends ServerIngameStatsJSONCreator {
@@ -199,8 +371,8 @@ public sealed abstract class ServerIngameStatsJSONCreator {
             super(extendPath(CATEGORY_KEY, path), stats);
         }
 
-        private ItemsCategory(List<String> path, Stat<?>... stats) {
-            super(extendPath(CATEGORY_KEY, path), stats);
+        private ItemsCategory(List<String> path, Supplier<String[]> statNamesFactory) {
+            super(extendPath(CATEGORY_KEY, path), statNamesFactory);
         }
 
         public static final ServerIngameStatsJSONCreator OVERVIEW = new ItemsCategory("overview",
@@ -211,21 +383,22 @@ public sealed abstract class ServerIngameStatsJSONCreator {
 
         public static final class SpecificItem extends ItemsCategory {
             private SpecificItem(Item item) {
-                super(extendPath("specific_item", Registries.ITEM, item), getApplicableStats(item));
+                super(extendPath("specific_item", Registries.ITEM, item), () -> getApplicableStatNames(item));
             }
 
-            private static Stat<?>[] getApplicableStats(Item item) {
-                var stats = new ArrayList<Stat<?>>(List.of(
-                        Stats.CRAFTED.getOrCreateStat(item),
-                        Stats.USED.getOrCreateStat(item),
-                        Stats.PICKED_UP.getOrCreateStat(item),
-                        Stats.DROPPED.getOrCreateStat(item),
-                        Stats.BROKEN.getOrCreateStat(item)
+            // the names are derived without Stats.X.getOrCreateStat, which isn't safe to call off the server thread
+            private static String[] getApplicableStatNames(Item item) {
+                var statNames = new ArrayList<>(List.of(
+                        Stat.getName(Stats.CRAFTED, item),
+                        Stat.getName(Stats.USED, item),
+                        Stat.getName(Stats.PICKED_UP, item),
+                        Stat.getName(Stats.DROPPED, item),
+                        Stat.getName(Stats.BROKEN, item)
                 ));
                 if (item instanceof BlockItem blockItem) {
-                    stats.add(Stats.MINED.getOrCreateStat(blockItem.getBlock()));
+                    statNames.add(Stat.getName(Stats.MINED, blockItem.getBlock()));
                 }
-                return stats.toArray(Stat<?>[]::new);
+                return statNames.toArray(String[]::new);
             }
 
             public static final List<? extends ServerIngameStatsJSONCreator> ITEMS = Registries.ITEM.stream().map(SpecificItem::new).toList();
@@ -239,8 +412,8 @@ public sealed abstract class ServerIngameStatsJSONCreator {
             super(extendPath(CATEGORY_KEY, path), stats);
         }
 
-        private MobsCategory(List<String> path, Stat<?>... stats) {
-            super(extendPath(CATEGORY_KEY, path), stats);
+        private MobsCategory(List<String> path, Supplier<String[]> statNamesFactory) {
+            super(extendPath(CATEGORY_KEY, path), statNamesFactory);
         }
 
         public static final ServerIngameStatsJSONCreator OVERVIEW = new MobsCategory("overview",
@@ -258,10 +431,10 @@ public sealed abstract class ServerIngameStatsJSONCreator {
 
         public static final class SpecificMob extends MobsCategory {
             private SpecificMob(EntityType<?> entityType) {
-                super(extendPath("specific_mob", Registries.ENTITY_TYPE, entityType),
-                        Stats.KILLED.getOrCreateStat(entityType),
-                        Stats.KILLED_BY.getOrCreateStat(entityType)
-                );
+                super(extendPath("specific_mob", Registries.ENTITY_TYPE, entityType), () -> new String[] {
+                        Stat.getName(Stats.KILLED, entityType),
+                        Stat.getName(Stats.KILLED_BY, entityType)
+                });
             }
 
             // TODO how to get only LivingEntities
@@ -269,43 +442,80 @@ public sealed abstract class ServerIngameStatsJSONCreator {
         }
     }
 
-    private static final List<ServerIngameStatsJSONCreator> ALL_VIEWS = new ArrayList<>();
+    /**
+     * Holds all views. The registry is built once when this class is first accessed, and class initialization
+     * guarantees that it is fully built and safely published before any thread can use it.
+     */
+    private static final class ViewRegistry {
+        private static final List<ServerIngameStatsJSONCreator> ALL_VIEWS = createAllViews();
+
+        private static final Map<String, ServerIngameStatsJSONCreator> VIEWS_BY_KEY = ALL_VIEWS.stream()
+                .collect(Collectors.toUnmodifiableMap(view -> view.key, Function.identity()));
+
+        /**
+         * The views sorted by key, for looking up all views whose keys start with a prefix.
+         */
+        private static final NavigableMap<String, ServerIngameStatsJSONCreator> VIEWS_BY_SORTED_KEY =
+                Collections.unmodifiableNavigableMap(new TreeMap<>(VIEWS_BY_KEY));
+
+        private static List<ServerIngameStatsJSONCreator> createAllViews() {
+            var allViews = new ArrayList<ServerIngameStatsJSONCreator>();
+
+            allViews.add(GeneralCategory.PLAYTIME);
+            allViews.add(GeneralCategory.DAMAGE_DEALT);
+            allViews.add(GeneralCategory.DAMAGE_TAKEN);
+            allViews.add(GeneralCategory.KILLS_AND_DEATHS);
+
+            allViews.add(MovementCategory.GROUND);
+            allViews.add(MovementCategory.AIR);
+            allViews.add(MovementCategory.WATER);
+            allViews.add(MovementCategory.BY_VEHICLE);
+
+            allViews.add(BlockInteractions.STORAGE_BLOCKS);
+            allViews.add(BlockInteractions.CRAFTING_BLOCKS);
+            allViews.add(BlockInteractions.SMELTING_BLOCKS);
+            allViews.add(BlockInteractions.REDSTONE_BLOCKS);
+            allViews.add(BlockInteractions.MUSIC_BLOCKS);
+            allViews.add(BlockInteractions.UTILITY_BLOCKS);
+            allViews.add(BlockInteractions.CAULDRON);
+            allViews.add(BlockInteractions.MISCELLANEOUS);
+
+            allViews.add(ItemsCategory.OVERVIEW);
+            allViews.addAll(ItemsCategory.SpecificItem.ITEMS);
+
+            allViews.add(MobsCategory.OVERVIEW);
+            allViews.add(MobsCategory.RAIDS);
+            allViews.add(MobsCategory.VILLAGERS);
+            allViews.addAll(MobsCategory.SpecificMob.MOBS);
+
+            return List.copyOf(allViews);
+        }
+    }
 
+    /**
+     * @return an immutable list of all views, in display order
+     */
     public static List<ServerIngameStatsJSONCreator> getAll() {
-        if (ALL_VIEWS.isEmpty()) {
-            ALL_VIEWS.add(GeneralCategory.PLAYTIME);
-            ALL_VIEWS.add(GeneralCategory.DAMAGE_DEALT);
-            ALL_VIEWS.add(GeneralCategory.DAMAGE_TAKEN);
-            ALL_VIEWS.add(GeneralCategory.KILLS_AND_DEATHS);
-
-            ALL_VIEWS.add(MovementCategory.GROUND);
-            ALL_VIEWS.add(MovementCategory.AIR);
-            ALL_VIEWS.add(MovementCategory.WATER);
-            ALL_VIEWS.add(MovementCategory.BY_VEHICLE);
-
-            ALL_VIEWS.add(BlockInteractions.STORAGE_BLOCKS);
-            ALL_VIEWS.add(BlockInteractions.CRAFTING_BLOCKS);
-            ALL_VIEWS.add(BlockInteractions.SMELTING_BLOCKS);
-            ALL_VIEWS.add(BlockInteractions.REDSTONE_BLOCKS);
-            ALL_VIEWS.add(BlockInteractions.MUSIC_BLOCKS);
-            ALL_VIEWS.add(BlockInteractions.UTILITY_BLOCKS);
-            ALL_VIEWS.add(BlockInteractions.CAULDRON);
-            ALL_VIEWS.add(BlockInteractions.MISCELLANEOUS);
-
-            ALL_VIEWS.add(ItemsCategory.OVERVIEW);
-            ALL_VIEWS.addAll(ItemsCategory.SpecificItem.ITEMS);
-
-            ALL_VIEWS.add(MobsCategory.OVERVIEW);
-            ALL_VIEWS.add(MobsCategory.RAIDS);
-            ALL_VIEWS.add(MobsCategory.VILLAGERS);
-            ALL_VIEWS.addAll(MobsCategory.SpecificMob.MOBS);
-        }
-        return ALL_VIEWS;
+        return ViewRegistry.ALL_VIEWS;
     }
 
+    /**
+     * Looks up a view by its key in constant time.
+     *
+     * @param key the key of the view
+     * @return an optional containing the view, or an empty optional if there is no view with this key
+     */
     public static Optional<ServerIngameStatsJSONCreator> getByKey(String key) {
-        return getAll().stream()
-                .filter(serverIngameStatsJSONCreator -> serverIngameStatsJSONCreator.key.equals(key))
-                .findAny();
+        return Optional.ofNullable(ViewRegistry.VIEWS_BY_KEY.get(key));
+    }
+
+    /**
+     * Looks up all views whose keys start with a prefix, such as {@code "movement."}.
+     *
+     * @param keyPrefix the prefix of the keys
+     * @return the views whose keys start with the prefix, sorted by key
+     */
+    public static Collection<ServerIngameStatsJSONCreator> getByKeyPrefix(String keyPrefix) {
+        return ViewRegistry.VIEWS_BY_SORTED_KEY.subMap(keyPrefix, true, keyPrefix + Character.MAX_VALUE, false).values();
     }
 }
@@ -0,0 +1,128 @@
+package io.github.kr8gz.plan_ingame_player_statistics_extension.web;
+
+import io.github.kr8gz.plan_ingame_player_statistics_extension.metrics.ExtensionMetrics;
+import io.github.kr8gz.plan_ingame_player_statistics_extension.metrics.Meter;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * A size-bounded cache of response contents that are only valid for a specific data version.
+ * Entries created for an older data version are treated as missing and replaced on the next {@link #put},
+ * and the least recently used entries are evicted once the cache holds too many entries or bytes.
+ * Contents larger than the byte bound by themselves are not cached at all. Contents are compressed once when they are cached,
+ * so that clients accepting gzip can be served without compressing the contents again on every request.
+ * Hits and misses are counted by the meters {@code web.cache.<name>.hits} and {@code web.cache.<name>.misses}.
+ * This class is thread-safe.
+ *
+ * @param <K> the type of the keys identifying cached responses
+ */
+final class VersionedResponseCache<K> {
+    /**
+     * Represents cached response contents.
+     *
+     * @param dataVersion the data version the contents were created for
+     * @param etag the entity tag identifying the contents, including the surrounding quotes
+     * @param content the UTF-8 encoded response contents
+     * @param gzippedContent the gzip-compressed response contents, or {@code null} if the contents are too small to be worth compressing
+     */
+    record Entry(long dataVersion, @NotNull String etag, @NotNull byte[] content, @Nullable byte[] gzippedContent) {
+        /**
+         * @return the number of bytes of the contents held by this entry
+         */
+        long size() {
+            return content.length + (gzippedContent != null ? gzippedContent.length : 0);
+        }
+    }
+
+    /**
+     * Contents smaller than this many bytes are not compressed, as the gzip header and the
+     * additional encoding step would outweigh the savings.
+     */
+    private static final int MIN_GZIP_SIZE = 1024;
+
+    private final Map<K, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private final int maxSize;
+    private final long maxBytes;
+    private long bytes;
+    private final Meter hits;
+    private final Meter misses;
+
+    /**
+     * Creates a new empty {@code VersionedResponseCache}.
+     *
+     * @param name the name of the cache in the metrics of this extension
+     * @param maxSize the maximum number of entries to keep
+     * @param maxBytes the maximum number of bytes of contents to keep, counting both the plain and the compressed contents
+     */
+    VersionedResponseCache(@NotNull String name, int maxSize, long maxBytes) {
+        this.maxSize = maxSize;
+        this.maxBytes = maxBytes;
+        this.hits = ExtensionMetrics.meter("web.cache." + name + ".hits");
+        this.misses = ExtensionMetrics.meter("web.cache." + name + ".misses");
+    }
+
+    /**
+     * Returns the cached entry for a key if it was created for the given data version.
+     *
+     * @param key the key of the entry
+     * @param dataVersion the current data version
+     * @return an optional containing the entry, or an empty optional if there is no entry for the current data version
+     */
+    synchronized Optional<Entry> get(@NotNull K key, long dataVersion) {
+        var entry = entries.get(key);
+        if (entry != null && entry.dataVersion() == dataVersion) {
+            hits.mark();
+            return Optional.of(entry);
+        }
+        misses.mark();
+        return Optional.empty();
+    }
+
+    /**
+     * Caches response contents for a key, replacing any existing entry, and evicts the least recently used entries
+     * until the cache is within its bounds again. If the entry alone exceeds the byte bound, it is returned without
+     * being cached, and any existing entry for the key is removed.
+     * The entity tag is derived from the data version and the key, so it changes whenever the data changes, and differs
+     * between responses served at the same URL for different keys, such as a randomly chosen view.
+     *
+     * @param key the key of the entry
+     * @param dataVersion the data version the contents were created for
+     * @param content the UTF-8 encoded response contents
+     * @return the new entry
+     */
+    Entry put(@NotNull K key, long dataVersion, @NotNull byte[] content) {
+        var gzippedContent = content.length >= MIN_GZIP_SIZE ? gzip(content) : null;
+        var entry = new Entry(dataVersion, "\"%x-%x\"".formatted(dataVersion, key.hashCode()), content, gzippedContent);
+        synchronized (this) {
+            var replacedEntry = entry.size() <= maxBytes ? entries.put(key, entry) : entries.remove(key);
+            if (replacedEntry != null) bytes -= replacedEntry.size();
+            if (entry.size() <= maxBytes) bytes += entry.size();
+
+            var iterator = entries.values().iterator();
+            while (entries.size() > maxSize || bytes > maxBytes) {
+                bytes -= iterator.next().size();
+                iterator.remove();
+            }
+        }
+        return entry;
+    }
+
+    private static byte[] gzip(byte[] content) {
+        var output = new ByteArrayOutputStream(content.length / 4);
+        try (var gzipOutput = new GZIPOutputStream(output)) {
+            gzipOutput.write(content);
+        } catch (IOException e) {
+            // writing to a byte array doesn't actually throw
+            throw new UncheckedIOException(e);
+        }
+        return output.toByteArray();
+    }
+}
@@ -0,0 +1,84 @@
+package io.github.kr8gz.plan_ingame_player_statistics_extension.database;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ColumnarStatStoreTest {
+    private static final int STAT_ID = 3;
+
+    private static ColumnarStatStore storeOf(int... values) {
+        var store = new ColumnarStatStore();
+        for (int playerId = 1; playerId <= values.length; playerId++) {
+            store.put(STAT_ID, playerId, values[playerId - 1]);
+        }
+        return store;
+    }
+
+    private static List<Integer> pagePlayerIds(ColumnarStatStore store, int offset, int limit, boolean ascending) {
+        var playerIds = new ArrayList<Integer>();
+        store.forEachValue(STAT_ID, new DatabaseManager.StatPage(offset, limit, ascending), (playerId, value) -> playerIds.add(playerId));
+        return playerIds;
+    }
+
+    @Test
+    void equalValuesShareARank() {
+        var store = storeOf(10, 20, 20, 5);
+
+        assertEquals(1, store.getRank(STAT_ID, 20));
+        assertEquals(3, store.getRank(STAT_ID, 10));
+        assertEquals(4, store.getRank(STAT_ID, 5));
+        assertEquals(5, store.getRank(STAT_ID, 0));
+        assertEquals(1, store.getRank(STAT_ID + 1, 100));
+
+        var ranks = new int[5];
+        for (int playerId = 1; playerId <= 4; playerId++) {
+            int currentPlayerId = playerId;
+            store.forEachRankedValue(playerId, (statId, value, rank) -> ranks[currentPlayerId] = rank);
+        }
+        assertArrayEquals(new int[] {0, 3, 1, 1, 4}, ranks);
+    }
+
+    @Test
+    void pagesAreSortedByValueAndThenByPlayerId() {
+        var store = storeOf(10, 20, 20, 5, 15);
+
+        assertEquals(List.of(3, 2, 5, 1, 4), pagePlayerIds(store, 0, Integer.MAX_VALUE, false));
+        assertEquals(List.of(4, 1, 5, 2, 3), pagePlayerIds(store, 0, Integer.MAX_VALUE, true));
+        assertEquals(List.of(5, 1), pagePlayerIds(store, 2, 2, false));
+        assertEquals(List.of(3), pagePlayerIds(store, 4, 10, true));
+        assertEquals(List.of(), pagePlayerIds(store, 5, 10, false));
+        assertEquals(List.of(), pagePlayerIds(store, Integer.MAX_VALUE, Integer.MAX_VALUE, false));
+    }
+
+    @Test
+    void updatesAndRemovalsKeepRanksAndAggregatesConsistent() {
+        var store = storeOf(10, 20, 30);
+        store.put(STAT_ID, 3, 5);
+        store.removePlayer(2);
+
+        assertEquals(10, store.get(STAT_ID, 1, -1));
+        assertEquals(-1, store.get(STAT_ID, 2, -1));
+        assertEquals(new DatabaseManager.StatAggregate(2, 15, 5, 10), store.getAggregate(STAT_ID));
+        assertEquals(List.of(1, 3), pagePlayerIds(store, 0, 10, false));
+        assertEquals(2, store.getRank(STAT_ID, 5));
+
+        store.clear();
+        assertEquals(DatabaseManager.StatAggregate.EMPTY, store.getAggregate(STAT_ID));
+    }
+
+    @Test
+    void distributionUsesNearestRankQuantiles() {
+        var store = storeOf(1, 2, 3, 4, 5, 6, 7, 8, 9, 10);
+        var distribution = store.getDistribution(STAT_ID, new double[] {0, 0.5, 0.9, 1});
+
+        assertEquals(10, distribution.count());
+        assertArrayEquals(new int[] {1, 5, 9, 10}, distribution.quantileValues());
+        // the buckets from the second on count the values from 1, 2, 4 and 8 up to twice that, exclusive
+        assertArrayEquals(new int[] {0, 1, 2, 4, 3}, Arrays.copyOf(distribution.bucketCounts(), 5));
+    }
+}
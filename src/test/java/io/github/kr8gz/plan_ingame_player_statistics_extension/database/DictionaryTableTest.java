@@ -0,0 +1,73 @@
+package io.github.kr8gz.plan_ingame_player_statistics_extension.database;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.OptionalInt;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DictionaryTableTest {
+    private Connection connection;
+    private DictionaryTable dictionary;
+
+    @BeforeEach
+    void createTable() throws SQLException {
+        connection = DriverManager.getConnection("jdbc:sqlite::memory:");
+        dictionary = new DictionaryTable("stat_names", new TableColumn("stat_name", "varchar(255)"), SQLDialect.SQLITE);
+        try (var statement = connection.createStatement()) {
+            statement.executeUpdate(dictionary.createTableSql());
+        }
+        connection.setAutoCommit(false);
+    }
+
+    @AfterEach
+    void closeDatabase() throws SQLException {
+        connection.close();
+    }
+
+    @Test
+    void cachesNewIdsOnlyWhenTold() throws SQLException {
+        var resolvedIds = dictionary.resolveIds(connection, List.of("jump", "walk"));
+        connection.commit();
+        assertEquals(resolvedIds.ids(), resolvedIds.newIds());
+        assertEquals(OptionalInt.empty(), dictionary.getId("jump"));
+
+        dictionary.cacheNewIds(resolvedIds);
+        assertEquals(OptionalInt.of(resolvedIds.getInt("jump")), dictionary.getId("jump"));
+        assertEquals(Optional.of("walk"), dictionary.getKey(resolvedIds.getInt("walk")));
+
+        // cached keys are resolved without accessing the database and aren't new anymore
+        var cachedIds = dictionary.resolveIds(connection, List.of("jump"));
+        assertEquals(Map.of("jump", resolvedIds.getInt("jump")), cachedIds.ids());
+        assertTrue(cachedIds.newIds().isEmpty());
+    }
+
+    @Test
+    void idsOfRolledBackInsertsAreNeverCached() throws SQLException {
+        int rolledBackId = dictionary.resolveIds(connection, List.of("jump")).getInt("jump");
+        connection.rollback();
+        assertEquals(OptionalInt.empty(), dictionary.getId("jump"));
+
+        // SQLite assigns the ID of the rolled back insert to the next key
+        var resolvedIds = dictionary.resolveIds(connection, List.of("walk"));
+        connection.commit();
+        dictionary.cacheNewIds(resolvedIds);
+        assertEquals(rolledBackId, resolvedIds.getInt("walk"));
+
+        assertEquals(Optional.of("walk"), dictionary.getKey(rolledBackId));
+        assertEquals(OptionalInt.empty(), dictionary.getId("jump"));
+
+        var reresolvedIds = dictionary.resolveIds(connection, List.of("jump"));
+        connection.commit();
+        assertNotEquals(rolledBackId, reresolvedIds.getInt("jump"));
+        assertEquals(Map.of("jump", reresolvedIds.getInt("jump")), reresolvedIds.newIds());
+    }
+}
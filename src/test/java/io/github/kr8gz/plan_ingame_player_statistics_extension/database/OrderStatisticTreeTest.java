@@ -0,0 +1,162 @@
+package io.github.kr8gz.plan_ingame_player_statistics_extension.database;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class OrderStatisticTreeTest {
+    private static OrderStatisticTree treeOf(long... values) {
+        var tree = new OrderStatisticTree();
+        for (long value : values) {
+            tree.add(value);
+        }
+        return tree;
+    }
+
+    private static List<Long> walk(OrderStatisticTree tree, int fromIndex, int count, boolean ascending) {
+        var result = new ArrayList<Long>();
+        tree.forEachInOrder(fromIndex, count, ascending, result::add);
+        return result;
+    }
+
+    @Test
+    void duplicateValuesAreCountedSeparately() {
+        var tree = treeOf(5, 5, 5, 3);
+
+        assertEquals(4, tree.size());
+        assertEquals(1, tree.countLessThan(5));
+        assertEquals(0, tree.countGreaterThan(5));
+        assertEquals(3, tree.select(0));
+        assertEquals(5, tree.select(1));
+        assertEquals(5, tree.select(3));
+        assertEquals(List.of(5L, 5L, 5L, 3L), walk(tree, 0, 4, false));
+
+        tree.remove(5);
+        assertEquals(3, tree.size());
+        assertEquals(List.of(3L, 5L, 5L), walk(tree, 0, 3, true));
+    }
+
+    @Test
+    void removingAbsentValueDoesNothing() {
+        var tree = new OrderStatisticTree();
+        tree.remove(1);
+        assertEquals(0, tree.size());
+
+        tree = treeOf(10, 20, 30);
+        tree.remove(15);
+        tree.remove(Long.MIN_VALUE);
+        tree.remove(Long.MAX_VALUE);
+        assertEquals(3, tree.size());
+        assertEquals(List.of(10L, 20L, 30L), walk(tree, 0, 3, true));
+
+        tree.remove(20);
+        tree.remove(20);
+        assertEquals(2, tree.size());
+        assertEquals(List.of(10L, 30L), walk(tree, 0, 2, true));
+    }
+
+    @Test
+    void tiedValuesShareRank() {
+        var tree = treeOf(10, 20, 20, 30);
+
+        // the rank of a value on a descending leaderboard is one more than the count of greater values
+        assertEquals(0, tree.countGreaterThan(30));
+        assertEquals(1, tree.countGreaterThan(20));
+        assertEquals(3, tree.countGreaterThan(10));
+        assertEquals(1, tree.countGreaterThan(25));
+        assertEquals(4, tree.countGreaterThan(Long.MIN_VALUE));
+    }
+
+    @Test
+    void selectAndCountAtEnds() {
+        var tree = treeOf(-7, 0, 42, 1000);
+
+        assertEquals(-7, tree.min());
+        assertEquals(1000, tree.max());
+        assertEquals(-7, tree.select(0));
+        assertEquals(1000, tree.select(tree.size() - 1));
+        assertThrows(IndexOutOfBoundsException.class, () -> tree.select(-1));
+        assertThrows(IndexOutOfBoundsException.class, () -> tree.select(tree.size()));
+
+        assertEquals(0, tree.countLessThan(-7));
+        assertEquals(0, tree.countLessThan(Long.MIN_VALUE));
+        assertEquals(3, tree.countLessThan(1000));
+        assertEquals(4, tree.countLessThan(1001));
+        assertEquals(4, tree.countLessThan(Long.MAX_VALUE));
+        assertEquals(0, tree.countGreaterThan(Long.MAX_VALUE));
+    }
+
+    @Test
+    void selectOnEmptyTreeThrows() {
+        var tree = new OrderStatisticTree();
+        assertThrows(IndexOutOfBoundsException.class, () -> tree.select(0));
+        assertEquals(0, tree.countLessThan(0));
+        assertEquals(0, tree.countGreaterThan(0));
+    }
+
+    @Test
+    void forEachInOrderWalksRangeOfPositions() {
+        var tree = treeOf(1, 2, 2, 3, 4, 5);
+
+        assertEquals(List.of(2L, 2L, 3L), walk(tree, 1, 3, true));
+        assertEquals(List.of(4L, 3L, 2L), walk(tree, 1, 3, false));
+        assertEquals(List.of(2L, 1L), walk(tree, 4, 10, false));
+        assertEquals(List.of(), walk(tree, 6, 10, true));
+        assertEquals(List.of(), walk(tree, 0, 0, true));
+        assertThrows(IndexOutOfBoundsException.class, () -> walk(tree, -1, 1, true));
+    }
+
+    @Test
+    void clearRemovesAllValues() {
+        var tree = treeOf(1, 2, 3);
+        tree.clear();
+        assertEquals(0, tree.size());
+
+        tree.add(4);
+        assertEquals(1, tree.size());
+        assertEquals(4, tree.select(0));
+    }
+
+    @Test
+    void matchesSortedListUnderRandomChanges() {
+        var random = new Random(0);
+        var tree = new OrderStatisticTree();
+        var expected = new ArrayList<Long>();
+
+        for (int step = 0; step < 20_000; step++) {
+            long value = random.nextInt(500);
+            if (random.nextInt(3) == 0) {
+                tree.remove(value);
+                expected.remove(value);
+            } else {
+                tree.add(value);
+                int index = Collections.binarySearch(expected, value);
+                expected.add(index < 0 ? -index - 1 : index, value);
+            }
+
+            if (step % 1000 == 0) {
+                assertEquals(expected.size(), tree.size());
+                assertEquals(expected, walk(tree, 0, expected.size(), true));
+            }
+        }
+
+        for (long value = -1; value <= 500; value++) {
+            int less = 0;
+            int greater = 0;
+            for (long expectedValue : expected) {
+                if (expectedValue < value) less++;
+                if (expectedValue > value) greater++;
+            }
+            assertEquals(less, tree.countLessThan(value));
+            assertEquals(greater, tree.countGreaterThan(value));
+        }
+        for (int index = 0; index < expected.size(); index++) {
+            assertEquals(expected.get(index), tree.select(index));
+        }
+    }
+}
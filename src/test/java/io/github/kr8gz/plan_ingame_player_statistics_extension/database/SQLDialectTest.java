@@ -0,0 +1,102 @@
+package io.github.kr8gz.plan_ingame_player_statistics_extension.database;
+
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SQLDialectTest {
+    private static final TableColumn PLAYER_ID_COLUMN = new TableColumn("player_id", "int");
+    private static final TableColumn STAT_ID_COLUMN = new TableColumn("stat_id", "int");
+    private static final TableColumn VALUE_COLUMN = new TableColumn("value", "int");
+    private static final TableColumn UPDATED_AT_COLUMN = new TableColumn("updated_at", "bigint");
+    private static final List<TableColumn> KEY_COLUMNS = List.of(PLAYER_ID_COLUMN, STAT_ID_COLUMN);
+
+    @Test
+    void mysqlUpsertUpdatesValueColumnsOnDuplicateKey() {
+        assertEquals("INSERT INTO stats (player_id, stat_id, value, updated_at) VALUES (?, ?, ?, ?)" +
+                        " ON DUPLICATE KEY UPDATE value = VALUES(value), updated_at = VALUES(updated_at)",
+                SQLDialect.MYSQL.upsertSql("stats", KEY_COLUMNS, List.of(VALUE_COLUMN, UPDATED_AT_COLUMN)));
+    }
+
+    @Test
+    void sqliteUpsertOnlyUpdatesChangedRows() {
+        assertEquals("INSERT INTO stats (player_id, stat_id, value, updated_at) VALUES (?, ?, ?, ?)" +
+                        " ON CONFLICT (player_id, stat_id) DO UPDATE SET value = excluded.value, updated_at = excluded.updated_at" +
+                        " WHERE value <> excluded.value OR updated_at <> excluded.updated_at",
+                SQLDialect.SQLITE.upsertSql("stats", KEY_COLUMNS, List.of(VALUE_COLUMN, UPDATED_AT_COLUMN)));
+    }
+
+    @Test
+    void mysqlIncrementAddsToSumColumnOnDuplicateKey() {
+        assertEquals("INSERT INTO totals (player_id, stat_id, value, updated_at) VALUES (?, ?, ?, ?)" +
+                        " ON DUPLICATE KEY UPDATE value = value + VALUES(value), updated_at = VALUES(updated_at)",
+                SQLDialect.MYSQL.incrementSql("totals", KEY_COLUMNS, VALUE_COLUMN, List.of(UPDATED_AT_COLUMN)));
+    }
+
+    @Test
+    void sqliteIncrementAddsToSumColumnOnConflict() {
+        assertEquals("INSERT INTO totals (player_id, stat_id, value, updated_at) VALUES (?, ?, ?, ?)" +
+                        " ON CONFLICT (player_id, stat_id) DO UPDATE SET value = value + excluded.value, updated_at = excluded.updated_at",
+                SQLDialect.SQLITE.incrementSql("totals", KEY_COLUMNS, VALUE_COLUMN, List.of(UPDATED_AT_COLUMN)));
+    }
+
+    @Test
+    void sqliteUpsertSkipsUnchangedRows() throws SQLException {
+        try (var connection = DriverManager.getConnection("jdbc:sqlite::memory:")) {
+            createTable(connection, "stats");
+            var upsertSql = SQLDialect.SQLITE.upsertSql("stats", KEY_COLUMNS, List.of(VALUE_COLUMN));
+
+            assertEquals(1, write(connection, upsertSql, 1, 2, 5));
+            assertEquals(0, write(connection, upsertSql, 1, 2, 5));
+            assertEquals(1, write(connection, upsertSql, 1, 2, 7));
+            assertEquals(7, readValue(connection, "stats", 1, 2));
+        }
+    }
+
+    @Test
+    void sqliteIncrementMaintainsSums() throws SQLException {
+        try (var connection = DriverManager.getConnection("jdbc:sqlite::memory:")) {
+            createTable(connection, "totals");
+            var incrementSql = SQLDialect.SQLITE.incrementSql("totals", KEY_COLUMNS, VALUE_COLUMN, List.of());
+
+            write(connection, incrementSql, 1, 2, 5);
+            write(connection, incrementSql, 1, 2, -2);
+            write(connection, incrementSql, 1, 3, 4);
+            assertEquals(3, readValue(connection, "totals", 1, 2));
+            assertEquals(4, readValue(connection, "totals", 1, 3));
+        }
+    }
+
+    private static void createTable(Connection connection, String tableName) throws SQLException {
+        try (var statement = connection.createStatement()) {
+            statement.executeUpdate("CREATE TABLE " + tableName + " (" +
+                    PLAYER_ID_COLUMN.withType() + ", " + STAT_ID_COLUMN.withType() + ", " + VALUE_COLUMN.withType() + ", " +
+                    "PRIMARY KEY(" + PLAYER_ID_COLUMN + ", " + STAT_ID_COLUMN + "))");
+        }
+    }
+
+    private static int write(Connection connection, String sql, int playerId, int statId, int value) throws SQLException {
+        try (var statement = connection.prepareStatement(sql)) {
+            statement.setInt(1, playerId);
+            statement.setInt(2, statId);
+            statement.setInt(3, value);
+            return statement.executeUpdate();
+        }
+    }
+
+    private static int readValue(Connection connection, String tableName, int playerId, int statId) throws SQLException {
+        try (var statement = connection.prepareStatement("SELECT value FROM " + tableName + " WHERE player_id = ? AND stat_id = ?")) {
+            statement.setInt(1, playerId);
+            statement.setInt(2, statId);
+            try (var resultSet = statement.executeQuery()) {
+                assertTrue(resultSet.next());
+                return resultSet.getInt(1);
+            }
+        }
+    }
+}
@@ -0,0 +1,191 @@
+package io.github.kr8gz.plan_ingame_player_statistics_extension.database;
+
+import com.djrapitops.plan.query.CommonQueries;
+import com.djrapitops.plan.query.QueryService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SchemaMigratorTest {
+    private Connection connection;
+    private QueryService queryService;
+    private final List<Integer> appliedVersions = new ArrayList<>();
+
+    @BeforeEach
+    void openDatabase() throws SQLException {
+        connection = DriverManager.getConnection("jdbc:sqlite::memory:");
+        queryService = new InMemoryQueryService(connection);
+    }
+
+    @AfterEach
+    void closeDatabase() throws SQLException {
+        connection.close();
+    }
+
+    private SchemaMigration recordingMigration(int version) {
+        return new SchemaMigration(version, "Migration " + version, connection -> appliedVersions.add(version));
+    }
+
+    @Test
+    void appliesMigrationsInOrderOfTheirVersions() throws Exception {
+        var migrator = new SchemaMigrator(SQLDialect.SQLITE, List.of(recordingMigration(3), recordingMigration(1), recordingMigration(2)));
+        migrator.migrate(queryService).get();
+
+        assertEquals(List.of(1, 2, 3), appliedVersions);
+    }
+
+    @Test
+    void appliesEachMigrationOnlyOnce() throws Exception {
+        new SchemaMigrator(SQLDialect.SQLITE, List.of(recordingMigration(1), recordingMigration(2))).migrate(queryService).get();
+        new SchemaMigrator(SQLDialect.SQLITE, List.of(recordingMigration(1), recordingMigration(2))).migrate(queryService).get();
+        assertEquals(List.of(1, 2), appliedVersions);
+
+        // a migration appended later only runs itself, even if there is a gap between the versions
+        new SchemaMigrator(SQLDialect.SQLITE, List.of(recordingMigration(1), recordingMigration(2), recordingMigration(5))).migrate(queryService).get();
+        assertEquals(List.of(1, 2, 5), appliedVersions);
+    }
+
+    @Test
+    void rollsBackAllMigrationsIfOneFails() throws Exception {
+        var failingMigration = new SchemaMigration(2, "Failing migration", connection -> {
+            throw new SQLException("migration failed");
+        });
+        var failingMigrator = new SchemaMigrator(SQLDialect.SQLITE, List.of(recordingMigration(1), failingMigration));
+        assertThrows(ExecutionException.class, () -> failingMigrator.migrate(queryService).get());
+
+        // the first migration wasn't recorded either, as both run in the same transaction
+        new SchemaMigrator(SQLDialect.SQLITE, List.of(recordingMigration(1), recordingMigration(2))).migrate(queryService).get();
+        assertEquals(List.of(1, 1, 2), appliedVersions);
+    }
+
+    @Test
+    void rejectsDuplicateAndNonPositiveVersions() {
+        assertThrows(IllegalArgumentException.class, () -> new SchemaMigrator(SQLDialect.SQLITE, List.of(recordingMigration(1), recordingMigration(1))));
+        assertThrows(IllegalArgumentException.class, () -> new SchemaMigrator(SQLDialect.SQLITE, List.of(recordingMigration(0))));
+    }
+
+    private static SchemaMigrator schemaMigrator() {
+        var dialect = SQLDialect.SQLITE;
+        return new SchemaMigrator(dialect, new SchemaMigrations(dialect,
+                new DictionaryTable(DatabaseManager.PLAYERS_TABLE, new TableColumn("player_uuid", "char(36)"), dialect),
+                new DictionaryTable(DatabaseManager.STAT_NAMES_TABLE, new TableColumn("stat_name", "varchar(255)"), dialect),
+                new DictionaryTable(DatabaseManager.SERVERS_TABLE, new TableColumn("server_uuid", "char(36)"), dialect),
+                UUID.randomUUID()).getMigrations());
+    }
+
+    @Test
+    void schemaMigrationsMigrateLegacyTableIntoServerPartition() throws Exception {
+        try (var statement = connection.createStatement()) {
+            statement.executeUpdate("CREATE TABLE plan_ingame_player_statistics (player_uuid char(36), stat_name varchar(255), value int)");
+            statement.executeUpdate("INSERT INTO plan_ingame_player_statistics VALUES ('" + UUID.randomUUID() + "', 'minecraft.custom:minecraft.jump', 42)");
+        }
+        schemaMigrator().migrate(queryService).get();
+
+        try (var statement = connection.createStatement();
+             var resultSet = statement.executeQuery("SELECT v.value, t.total FROM " + DatabaseManager.STAT_VALUES_TABLE + " v" +
+                     " JOIN " + DatabaseManager.SERVERS_TABLE + " s ON s.id = v.server_id" +
+                     " JOIN " + NetworkTotals.STAT_TOTALS_TABLE + " t ON t.player_id = v.player_id AND t.stat_id = v.stat_id")) {
+            assertTrue(resultSet.next());
+            assertEquals(42, resultSet.getInt(1));
+            assertEquals(42, resultSet.getLong(2));
+            assertFalse(resultSet.next());
+        }
+    }
+
+    @Test
+    void schemaMigrationsAreIdempotent() throws Exception {
+        var migrator = schemaMigrator();
+        migrator.migrate(queryService).get();
+
+        try (var statement = connection.createStatement()) {
+            statement.executeUpdate("INSERT INTO " + DatabaseManager.STAT_VALUES_TABLE + " (server_id, player_id, stat_id, value) VALUES (1, 1, 1, 42)");
+            // databases created before the schema version table existed run all migrations again
+            statement.executeUpdate(migrator.dropTableSql());
+        }
+        migrator.migrate(queryService).get();
+
+        try (var statement = connection.createStatement();
+             var resultSet = statement.executeQuery("SELECT value FROM " + DatabaseManager.STAT_VALUES_TABLE)) {
+            assertTrue(resultSet.next());
+            assertEquals(42, resultSet.getInt(1));
+            assertFalse(resultSet.next());
+        }
+    }
+
+    /**
+     * Executes statements on a single connection like Plan does, each in its own transaction,
+     * but on the calling thread, so that the tests don't need to wait for another thread.
+     */
+    private record InMemoryQueryService(Connection connection) implements QueryService {
+        @Override
+        public String getDBType() {
+            return "SQLite";
+        }
+
+        @Override
+        public <T> T query(String sql, ThrowingFunction<PreparedStatement, T> performQuery) {
+            try (var statement = connection.prepareStatement(sql)) {
+                return performQuery.apply(statement);
+            } catch (SQLException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        @Override
+        public Future<?> execute(String sql, ThrowingConsumer<PreparedStatement> performStatement) {
+            try {
+                connection.setAutoCommit(false);
+                try (var statement = connection.prepareStatement(sql)) {
+                    performStatement.accept(statement);
+                }
+                connection.commit();
+                return CompletableFuture.completedFuture(null);
+            } catch (SQLException e) {
+                try {
+                    connection.rollback();
+                } catch (SQLException rollbackException) {
+                    e.addSuppressed(rollbackException);
+                }
+                return CompletableFuture.failedFuture(e);
+            } finally {
+                try {
+                    connection.setAutoCommit(true);
+                } catch (SQLException ignored) {
+                }
+            }
+        }
+
+        @Override
+        public void subscribeToPlayerRemoveEvent(Consumer<UUID> eventListener) {
+        }
+
+        @Override
+        public void subscribeDataClearEvent(VoidFunction eventListener) {
+        }
+
+        @Override
+        public Optional<UUID> getServerUUID() {
+            return Optional.empty();
+        }
+
+        @Override
+        public CommonQueries getCommonQueries() {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
@@ -0,0 +1,131 @@
+package io.github.kr8gz.plan_ingame_player_statistics_extension.database;
+
+import net.minecraft.Bootstrap;
+import net.minecraft.SharedConstants;
+import net.minecraft.stat.ServerStatHandler;
+import net.minecraft.stat.Stat;
+import net.minecraft.stat.Stats;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class StatChangeTrackerTest {
+    private static Stat<?> jumpStat;
+    private static Stat<?> walkStat;
+    private static Stat<?> playTimeStat;
+
+    @BeforeAll
+    static void bootstrap() {
+        SharedConstants.createGameVersion();
+        Bootstrap.initialize();
+        jumpStat = Stats.CUSTOM.getOrCreateStat(Stats.JUMP);
+        walkStat = Stats.CUSTOM.getOrCreateStat(Stats.WALK_ONE_CM);
+        playTimeStat = Stats.CUSTOM.getOrCreateStat(Stats.PLAY_TIME);
+    }
+
+    /**
+     * Creates a {@link ServerStatHandler} for a new player without a statistics file, which is never read.
+     */
+    private static ServerStatHandler statHandler() {
+        return new ServerStatHandler(null, new File(UUID.randomUUID() + ".json"));
+    }
+
+    private static Set<StatChangeTracker.StatUpdate> collect(StatChangeTracker tracker, ServerStatHandler statHandler) {
+        return Set.copyOf(tracker.collectChanges(statHandler));
+    }
+
+    @Test
+    void collectsAllStatsOfNewPlayers() {
+        var tracker = new StatChangeTracker();
+        var statHandler = statHandler();
+        var playerUUID = StatChangeTracker.getPlayerUUID(statHandler);
+        statHandler.statMap.put(jumpStat, 3);
+        statHandler.statMap.put(walkStat, 0);
+
+        assertEquals(Set.of(
+                new StatChangeTracker.StatUpdate(playerUUID, jumpStat, 3),
+                new StatChangeTracker.StatUpdate(playerUUID, walkStat, 0)
+        ), collect(tracker, statHandler));
+    }
+
+    @Test
+    void collectsOnlyStatsChangedSinceTheyWereWritten() {
+        var tracker = new StatChangeTracker();
+        var statHandler = statHandler();
+        var playerUUID = StatChangeTracker.getPlayerUUID(statHandler);
+        statHandler.statMap.put(jumpStat, 3);
+        statHandler.statMap.put(walkStat, 100);
+        tracker.markWritten(tracker.collectChanges(statHandler));
+
+        assertEquals(Set.of(), collect(tracker, statHandler));
+
+        statHandler.statMap.put(walkStat, 250);
+        statHandler.statMap.put(playTimeStat, 20);
+        assertEquals(Set.of(
+                new StatChangeTracker.StatUpdate(playerUUID, walkStat, 250),
+                new StatChangeTracker.StatUpdate(playerUUID, playTimeStat, 20)
+        ), collect(tracker, statHandler));
+    }
+
+    @Test
+    void collectsUnconfirmedChangesAgain() {
+        var tracker = new StatChangeTracker();
+        var statHandler = statHandler();
+        var playerUUID = StatChangeTracker.getPlayerUUID(statHandler);
+        statHandler.statMap.put(jumpStat, 3);
+        tracker.markWritten(tracker.collectChanges(statHandler));
+
+        statHandler.statMap.put(jumpStat, 4);
+        var changes = tracker.collectChanges(statHandler);
+        assertEquals(List.of(new StatChangeTracker.StatUpdate(playerUUID, jumpStat, 4)), changes);
+
+        // the write of the change failed, so it was never marked as written
+        assertEquals(changes, tracker.collectChanges(statHandler));
+
+        tracker.markWritten(changes);
+        assertEquals(List.of(), tracker.collectChanges(statHandler));
+    }
+
+    @Test
+    void collectsAllStatsAgainAfterForgettingPlayer() {
+        var tracker = new StatChangeTracker();
+        var statHandler = statHandler();
+        statHandler.statMap.put(jumpStat, 3);
+        var changes = tracker.collectChanges(statHandler);
+        tracker.markWritten(changes);
+
+        tracker.forgetPlayer(StatChangeTracker.getPlayerUUID(statHandler));
+        // values written after the player was forgotten must not start tracking it again
+        tracker.markWritten(changes);
+
+        assertEquals(changes, tracker.collectChanges(statHandler));
+    }
+
+    @Test
+    void countsChangedAndSkippedRowsWhenCollecting() {
+        var tracker = new StatChangeTracker();
+        var statHandler = statHandler();
+        statHandler.statMap.put(jumpStat, 3);
+        statHandler.statMap.put(walkStat, 100);
+        tracker.markWritten(tracker.collectChanges(statHandler));
+        assertEquals(2, tracker.getRowsChanged());
+        assertEquals(0, tracker.getRowsSkipped());
+
+        statHandler.statMap.put(jumpStat, 4);
+        var changes = tracker.collectChanges(statHandler);
+        tracker.collectChanges(statHandler);
+        assertEquals(4, tracker.getRowsChanged());
+        assertEquals(2, tracker.getRowsSkipped());
+
+        // marking the changes as written, once they have been coalesced, doesn't count them again
+        tracker.markWritten(changes);
+        assertEquals(4, tracker.getRowsChanged());
+        assertEquals(2, tracker.getRowsSkipped());
+    }
+}
@@ -0,0 +1,135 @@
+package io.github.kr8gz.plan_ingame_player_statistics_extension.database;
+
+import net.minecraft.Bootstrap;
+import net.minecraft.SharedConstants;
+import net.minecraft.stat.Stat;
+import net.minecraft.stat.Stats;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class StatEventRingTest {
+    private static final UUID PLAYER_UUID = UUID.randomUUID();
+    private static Stat<?> stat;
+
+    @BeforeAll
+    static void bootstrap() {
+        SharedConstants.createGameVersion();
+        Bootstrap.initialize();
+        stat = Stats.CUSTOM.getOrCreateStat(Stats.JUMP);
+    }
+
+    private static List<Integer> drainValues(StatEventRing ring) {
+        var values = new ArrayList<Integer>();
+        ring.drain((position, playerUUID, stat, value) -> values.add(value));
+        return values;
+    }
+
+    @Test
+    void capacityMustBeAPowerOfTwo() {
+        assertThrows(IllegalArgumentException.class, () -> new StatEventRing(0));
+        assertThrows(IllegalArgumentException.class, () -> new StatEventRing(12));
+        assertDoesNotThrow(() -> new StatEventRing(16));
+    }
+
+    @Test
+    void drainsEventsInOfferOrderAcrossWraparound() {
+        var ring = new StatEventRing(4);
+        var positions = new ArrayList<Long>();
+        int nextValue = 0;
+
+        // three events per lap shift the slots by one each time, so every slot wraps around several times
+        for (int lap = 0; lap < 10; lap++) {
+            for (int i = 0; i < 3; i++) {
+                assertTrue(ring.offer(PLAYER_UUID, stat, nextValue++));
+            }
+            int firstValue = nextValue - 3;
+            var values = new ArrayList<Integer>();
+            ring.drain((position, playerUUID, drainedStat, value) -> {
+                positions.add(position);
+                assertEquals(PLAYER_UUID, playerUUID);
+                assertSame(stat, drainedStat);
+                values.add(value);
+            });
+            assertEquals(List.of(firstValue, firstValue + 1, firstValue + 2), values);
+        }
+
+        assertEquals(30, ring.getTailPosition());
+        for (int i = 0; i < positions.size(); i++) {
+            assertEquals(i, positions.get(i));
+        }
+    }
+
+    @Test
+    void rejectsEventsWhileFull() {
+        var ring = new StatEventRing(4);
+        for (int value = 0; value < 4; value++) {
+            assertTrue(ring.offer(PLAYER_UUID, stat, value));
+        }
+        assertFalse(ring.offer(PLAYER_UUID, stat, 4));
+        assertEquals(4, ring.getTailPosition());
+
+        assertEquals(List.of(0, 1, 2, 3), drainValues(ring));
+        assertTrue(ring.offer(PLAYER_UUID, stat, 5));
+        assertEquals(List.of(5), drainValues(ring));
+        assertEquals(List.of(), drainValues(ring));
+    }
+
+    @Test
+    void concurrentProducersDeliverEveryEventOnceInOrder() throws InterruptedException {
+        int producerCount = 4;
+        int eventsPerProducer = 10_000;
+        // far smaller than the number of events, so that producers keep wrapping around and finding the queue full
+        var ring = new StatEventRing(64);
+        var start = new CountDownLatch(1);
+
+        var producers = new ArrayList<Thread>();
+        for (int producer = 0; producer < producerCount; producer++) {
+            int producerIndex = producer;
+            var thread = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                for (int sequence = 0; sequence < eventsPerProducer; sequence++) {
+                    while (!ring.offer(PLAYER_UUID, stat, producerIndex * eventsPerProducer + sequence)) {
+                        Thread.yield();
+                    }
+                }
+            });
+            thread.start();
+            producers.add(thread);
+        }
+
+        int[] nextSequences = new int[producerCount];
+        long[] lastPosition = {-1};
+        int received = 0;
+        start.countDown();
+        while (received < producerCount * eventsPerProducer) {
+            received += ring.drain((position, playerUUID, drainedStat, value) -> {
+                assertEquals(lastPosition[0] + 1, position);
+                lastPosition[0] = position;
+
+                // each producer's events must arrive in the order it offered them, without gaps or duplicates
+                int producer = value / eventsPerProducer;
+                assertEquals(nextSequences[producer], value % eventsPerProducer);
+                nextSequences[producer]++;
+            });
+        }
+        for (var producer : producers) {
+            producer.join();
+        }
+
+        assertEquals(List.of(), drainValues(ring));
+        for (int nextSequence : nextSequences) {
+            assertEquals(eventsPerProducer, nextSequence);
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package io.github.kr8gz.plan_ingame_player_statistics_extension.database;
+
+import net.minecraft.Bootstrap;
+import net.minecraft.SharedConstants;
+import net.minecraft.stat.Stat;
+import net.minecraft.stat.Stats;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class StatWriteBufferTest {
+    private static final UUID PLAYER_UUID = UUID.randomUUID();
+    private static final UUID OTHER_PLAYER_UUID = UUID.randomUUID();
+    private static Stat<?> jumpStat;
+    private static Stat<?> walkStat;
+
+    @BeforeAll
+    static void bootstrap() {
+        SharedConstants.createGameVersion();
+        Bootstrap.initialize();
+        jumpStat = Stats.CUSTOM.getOrCreateStat(Stats.JUMP);
+        walkStat = Stats.CUSTOM.getOrCreateStat(Stats.WALK_ONE_CM);
+    }
+
+    private static StatChangeTracker.StatUpdate update(UUID playerUUID, Stat<?> stat, int value) {
+        return new StatChangeTracker.StatUpdate(playerUUID, stat, value);
+    }
+
+    @Test
+    void coalescesUpdatesOfTheSameStatistic() throws Exception {
+        var writes = new LinkedBlockingQueue<List<StatChangeTracker.StatUpdate>>();
+        var buffer = new StatWriteBuffer((statUpdates, fileStates) -> {
+            writes.add(statUpdates);
+            return CompletableFuture.completedFuture(null);
+        });
+
+        buffer.add(List.of(update(PLAYER_UUID, jumpStat, 1), update(PLAYER_UUID, walkStat, 10)));
+        buffer.add(List.of(update(PLAYER_UUID, jumpStat, 2), update(OTHER_PLAYER_UUID, jumpStat, 5)));
+        buffer.add(List.of(update(PLAYER_UUID, jumpStat, 3)));
+        assertEquals(3, buffer.size());
+
+        // the buffer is flushed as soon as it has been started
+        buffer.start();
+        assertEquals(List.of(
+                update(PLAYER_UUID, jumpStat, 3),
+                update(PLAYER_UUID, walkStat, 10),
+                update(OTHER_PLAYER_UUID, jumpStat, 5)
+        ), writes.poll(10, TimeUnit.SECONDS));
+        assertEquals(0, buffer.size());
+
+        buffer.close(10, TimeUnit.SECONDS);
+        assertNull(writes.poll());
+    }
+
+    @Test
+    void requeuesValuesOfFailedWritesUnlessNewerValuesWereAdded() throws Exception {
+        var failedWrite = new CountDownLatch(1);
+        var releaseFailure = new CountDownLatch(1);
+        var writes = new LinkedBlockingQueue<List<StatChangeTracker.StatUpdate>>();
+        var buffer = new StatWriteBuffer((statUpdates, fileStates) -> {
+            if (failedWrite.getCount() > 0) {
+                failedWrite.countDown();
+                try {
+                    releaseFailure.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return CompletableFuture.failedFuture(new IllegalStateException("write failed"));
+            }
+            writes.add(statUpdates);
+            return CompletableFuture.completedFuture(null);
+        });
+
+        buffer.add(List.of(update(PLAYER_UUID, jumpStat, 1), update(PLAYER_UUID, walkStat, 10)));
+        buffer.start();
+        assertTrue(failedWrite.await(10, TimeUnit.SECONDS));
+
+        // added while the failing write is in flight, so it must not be overwritten by the requeued older value
+        buffer.add(List.of(update(PLAYER_UUID, jumpStat, 2)));
+        releaseFailure.countDown();
+
+        // the buffer holds the requeued value of the other statistic once the failed write has been handled
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (buffer.size() < 2 && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(2, buffer.size());
+
+        buffer.close(10, TimeUnit.SECONDS);
+        var written = writes.poll(10, TimeUnit.SECONDS);
+        assertNotNull(written);
+        assertEquals(Map.of(jumpStat, 2, walkStat, 10), Map.of(
+                written.get(0).stat(), written.get(0).value(),
+                written.get(1).stat(), written.get(1).value()
+        ));
+        assertEquals(2, written.size());
+    }
+
+    @Test
+    void discardsValuesWhenClosedBeforeStarting() {
+        var buffer = new StatWriteBuffer((statUpdates, fileStates) -> fail("Nothing should be written"));
+        buffer.add(List.of(update(PLAYER_UUID, jumpStat, 1)));
+
+        buffer.close(10, TimeUnit.SECONDS);
+        assertEquals(0, buffer.size());
+        assertFalse(buffer.add(List.of(update(PLAYER_UUID, jumpStat, 2))));
+    }
+}
@@ -0,0 +1,76 @@
+package io.github.kr8gz.plan_ingame_player_statistics_extension.metrics;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HistogramTest {
+    private static Histogram histogramOf(double scale, long... values) {
+        var histogram = new Histogram("ms", scale);
+        for (long value : values) {
+            histogram.record(value);
+        }
+        return histogram;
+    }
+
+    @Test
+    void emptyHistogramReportsZeros() {
+        assertEquals(new Histogram.Snapshot("ms", 0, 0, 0, 0, 0, 0), histogramOf(1).snapshot());
+    }
+
+    @Test
+    void smallValuesAreRecordedExactly() {
+        var snapshot = histogramOf(1, 1, 2, 3, 4, 5, 6, 7, 7, 7, 7).snapshot();
+
+        assertEquals(10, snapshot.count());
+        assertEquals(4.9, snapshot.mean(), 1e-9);
+        assertEquals(5, snapshot.p50());
+        assertEquals(7, snapshot.p90());
+        assertEquals(7, snapshot.p99());
+        assertEquals(7, snapshot.max());
+    }
+
+    @Test
+    void percentilesAreUpperBoundsOfTheirBuckets() {
+        var values = new long[100];
+        for (int index = 0; index < values.length; index++) {
+            values[index] = index + 1;
+        }
+        var snapshot = histogramOf(1, values).snapshot();
+
+        // 50 is in the bucket from 48 to 51, and 90 in the bucket from 88 to 95
+        assertEquals(51, snapshot.p50());
+        assertEquals(95, snapshot.p90());
+        // 99 is in the bucket from 96 to 103, which is capped at the largest value
+        assertEquals(100, snapshot.p99());
+        assertEquals(50.5, snapshot.mean(), 1e-9);
+    }
+
+    @Test
+    void percentilesStayWithinBucketAccuracy() {
+        var snapshot = histogramOf(1, 1_000_000, 5_000_000_000L).snapshot();
+
+        assertTrue(snapshot.p50() >= 1_000_000 && snapshot.p50() <= 1_125_000, "p50 was " + snapshot.p50());
+        assertEquals(5_000_000_000L, snapshot.p99());
+    }
+
+    @Test
+    void valuesAreScaledAndNegativeValuesRecordedAsZero() {
+        var snapshot = histogramOf(0.5, -3, 4).snapshot();
+
+        assertEquals(2, snapshot.count());
+        assertEquals(1, snapshot.mean(), 1e-9);
+        assertEquals(0, snapshot.p50());
+        assertEquals(2, snapshot.p99());
+        assertEquals(2, snapshot.max());
+    }
+
+    @Test
+    void resetDiscardsAllValues() {
+        var histogram = histogramOf(1, 10, 20, 30);
+        histogram.reset();
+        histogram.record(3);
+
+        assertEquals(new Histogram.Snapshot("ms", 1, 3, 3, 3, 3, 3), histogram.snapshot());
+    }
+}
@@ -0,0 +1,74 @@
+package io.github.kr8gz.plan_ingame_player_statistics_extension.web;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class VersionedResponseCacheTest {
+    private static final long DATA_VERSION = 1;
+
+    // smaller than the minimum size for compression, so that the entry size is just the content length
+    private static byte[] contentOf(int size) {
+        return new byte[size];
+    }
+
+    @Test
+    void entriesOfOlderDataVersionsAreMissing() {
+        var cache = new VersionedResponseCache<String>("test", 10, 1000);
+        cache.put("a", DATA_VERSION, contentOf(100));
+
+        assertTrue(cache.get("a", DATA_VERSION).isPresent());
+        assertTrue(cache.get("a", DATA_VERSION + 1).isEmpty());
+    }
+
+    @Test
+    void leastRecentlyUsedEntriesAreEvictedByCount() {
+        var cache = new VersionedResponseCache<String>("test", 2, 1000);
+        cache.put("a", DATA_VERSION, contentOf(100));
+        cache.put("b", DATA_VERSION, contentOf(100));
+        cache.get("a", DATA_VERSION);
+        cache.put("c", DATA_VERSION, contentOf(100));
+
+        assertTrue(cache.get("a", DATA_VERSION).isPresent());
+        assertTrue(cache.get("b", DATA_VERSION).isEmpty());
+        assertTrue(cache.get("c", DATA_VERSION).isPresent());
+    }
+
+    @Test
+    void leastRecentlyUsedEntriesAreEvictedByBytes() {
+        var cache = new VersionedResponseCache<String>("test", 10, 1000);
+        cache.put("a", DATA_VERSION, contentOf(400));
+        cache.put("b", DATA_VERSION, contentOf(400));
+        cache.put("c", DATA_VERSION, contentOf(400));
+
+        assertTrue(cache.get("a", DATA_VERSION).isEmpty());
+        assertTrue(cache.get("b", DATA_VERSION).isPresent());
+        assertTrue(cache.get("c", DATA_VERSION).isPresent());
+    }
+
+    @Test
+    void replacedEntriesNoLongerCount() {
+        var cache = new VersionedResponseCache<String>("test", 10, 1000);
+        cache.put("a", DATA_VERSION, contentOf(400));
+        cache.put("b", DATA_VERSION, contentOf(400));
+        cache.put("b", DATA_VERSION + 1, contentOf(100));
+        cache.put("c", DATA_VERSION, contentOf(400));
+
+        assertTrue(cache.get("a", DATA_VERSION).isPresent());
+        assertTrue(cache.get("b", DATA_VERSION + 1).isPresent());
+        assertTrue(cache.get("c", DATA_VERSION).isPresent());
+    }
+
+    @Test
+    void contentsLargerThanTheByteBoundAreNotCached() {
+        var cache = new VersionedResponseCache<String>("test", 10, 1000);
+        cache.put("a", DATA_VERSION, contentOf(400));
+        cache.put("b", DATA_VERSION, contentOf(100));
+
+        var entry = cache.put("a", DATA_VERSION + 1, new byte[2000]);
+
+        assertEquals(2000, entry.content().length);
+        assertTrue(cache.get("a", DATA_VERSION + 1).isEmpty());
+        assertTrue(cache.get("b", DATA_VERSION).isPresent());
+    }
+}